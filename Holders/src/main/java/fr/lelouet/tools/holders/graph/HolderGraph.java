@@ -0,0 +1,293 @@
+package fr.lelouet.tools.holders.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import fr.lelouet.tools.holders.impl.ObjHolderSimple;
+
+/**
+ * a snapshot of the graph of the holders connected to some holders : the
+ * holders they follow, the holders that follow them, and so on.
+ * <p>
+ * The graph only contains the holders still alive. It can be exported with
+ * {@link #toDot()} to be rendered with graphviz, or with {@link #toJson()}.
+ * </p>
+ */
+public class HolderGraph {
+
+	/**
+	 * a holder in the graph
+	 */
+	public static class Node {
+
+		private final int id;
+
+		private final String name;
+
+		private final String type;
+
+		private final int depth;
+
+		private final int followers;
+
+		private final int size;
+
+		private final long changes;
+
+		private final double changeRate;
+
+		Node(int id, ObjHolderSimple<?> holder) {
+			this.id = id;
+			name = holder.getName();
+			Class<?> c = holder.getClass();
+			type = c.getSimpleName().isEmpty() ? c.getName() : c.getSimpleName();
+			depth = holder.getDepth();
+			followers = holder.followers();
+			size = holder.contentSize();
+			changes = holder.changeCount();
+			changeRate = holder.changeRate();
+		}
+
+		/**
+		 *
+		 * @return the index of this in the nodes of the graph
+		 */
+		public int id() {
+			return id;
+		}
+
+		/**
+		 *
+		 * @return the name of the holder, or null
+		 */
+		public String name() {
+			return name;
+		}
+
+		/**
+		 *
+		 * @return the class of the holder
+		 */
+		public String type() {
+			return type;
+		}
+
+		public int depth() {
+			return depth;
+		}
+
+		/**
+		 *
+		 * @return the number of followers of the holder, including the ones that
+		 *         are not holders.
+		 */
+		public int followers() {
+			return followers;
+		}
+
+		/**
+		 *
+		 * @return the number of items the holder contains, or -1 if it does not
+		 *         hold a collection.
+		 */
+		public int size() {
+			return size;
+		}
+
+		public long changes() {
+			return changes;
+		}
+
+		/**
+		 *
+		 * @return the average number of changes per second since the holder was
+		 *         created
+		 */
+		public double changeRate() {
+			return changeRate;
+		}
+
+	}
+
+	/**
+	 * a holder following another one
+	 */
+	public static class Edge {
+
+		private final int from;
+
+		private final int to;
+
+		Edge(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 *
+		 * @return the id of the followed holder
+		 */
+		public int from() {
+			return from;
+		}
+
+		/**
+		 *
+		 * @return the id of the following holder
+		 */
+		public int to() {
+			return to;
+		}
+
+	}
+
+	private final List<Node> nodes;
+
+	private final List<Edge> edges;
+
+	private HolderGraph(List<Node> nodes, List<Edge> edges) {
+		this.nodes = Collections.unmodifiableList(nodes);
+		this.edges = Collections.unmodifiableList(edges);
+	}
+
+	/**
+	 * explore the holders connected to some holders.
+	 *
+	 * @param holders
+	 *          the holders to start the exploration from
+	 * @return a new graph
+	 */
+	public static HolderGraph of(ObjHolderSimple<?>... holders) {
+		Map<ObjHolderSimple<?>, Integer> ids = new IdentityHashMap<>();
+		List<ObjHolderSimple<?>> visited = new ArrayList<>();
+		Deque<ObjHolderSimple<?>> toVisit = new ArrayDeque<>();
+		for (ObjHolderSimple<?> h : holders) {
+			if (ids.putIfAbsent(h, visited.size()) == null) {
+				visited.add(h);
+				toVisit.add(h);
+			}
+		}
+		List<Edge> edges = new ArrayList<>();
+		while (!toVisit.isEmpty()) {
+			ObjHolderSimple<?> h = toVisit.poll();
+			for (ObjHolderSimple<?> linked : h.parents()) {
+				if (ids.putIfAbsent(linked, visited.size()) == null) {
+					visited.add(linked);
+					toVisit.add(linked);
+				}
+			}
+			for (ObjHolderSimple<?> linked : h.children()) {
+				if (ids.putIfAbsent(linked, visited.size()) == null) {
+					visited.add(linked);
+					toVisit.add(linked);
+				}
+				edges.add(new Edge(ids.get(h), ids.get(linked)));
+			}
+		}
+		List<Node> nodes = new ArrayList<>(visited.size());
+		for (int i = 0; i < visited.size(); i++) {
+			nodes.add(new Node(i, visited.get(i)));
+		}
+		return new HolderGraph(nodes, edges);
+	}
+
+	public List<Node> nodes() {
+		return nodes;
+	}
+
+	public List<Edge> edges() {
+		return edges;
+	}
+
+	/**
+	 *
+	 * @return the graph in the DOT language
+	 */
+	public String toDot() {
+		StringBuilder sb = new StringBuilder("digraph holders {\n");
+		for (Node n : nodes) {
+			StringBuilder label = new StringBuilder();
+			if (n.name() != null) {
+				label.append(n.name()).append('\n');
+			}
+			label.append(n.type());
+			if (n.size() >= 0) {
+				label.append("\nsize=").append(n.size());
+			}
+			label.append("\nchanges=").append(n.changes())
+			.append(String.format(Locale.ROOT, " (%.2f/s)", n.changeRate()));
+			sb.append("\tn").append(n.id()).append(" [label=\"").append(escape(label.toString())).append("\"];\n");
+		}
+		for (Edge e : edges) {
+			sb.append("\tn").append(e.from()).append(" -> n").append(e.to()).append(";\n");
+		}
+		return sb.append("}\n").toString();
+	}
+
+	/**
+	 *
+	 * @return the graph as a JSON object, with a list of nodes and a list of
+	 *         edges referring to the ids of the nodes.
+	 */
+	public String toJson() {
+		StringBuilder sb = new StringBuilder("{\"nodes\":[");
+		for (int i = 0; i < nodes.size(); i++) {
+			Node n = nodes.get(i);
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append("{\"id\":").append(n.id())
+			.append(",\"name\":").append(n.name() == null ? "null" : "\"" + escape(n.name()) + "\"")
+			.append(",\"type\":\"").append(escape(n.type())).append('"')
+			.append(",\"depth\":").append(n.depth())
+			.append(",\"followers\":").append(n.followers())
+			.append(",\"size\":").append(n.size())
+			.append(",\"changes\":").append(n.changes())
+			.append(",\"changeRate\":").append(String.format(Locale.ROOT, "%.3f", n.changeRate()))
+			.append('}');
+		}
+		sb.append("],\"edges\":[");
+		for (int i = 0; i < edges.size(); i++) {
+			Edge e = edges.get(i);
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append("{\"from\":").append(e.from()).append(",\"to\":").append(e.to()).append('}');
+		}
+		return sb.append("]}").toString();
+	}
+
+	/**
+	 * escape a string to be put between double quotes, in DOT or JSON
+	 */
+	static String escape(String s) {
+		StringBuilder sb = new StringBuilder(s.length());
+		for (char c : s.toCharArray()) {
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+}
@@ -1,9 +1,13 @@
 package fr.lelouet.tools.holders.impl;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.ToDoubleFunction;
@@ -38,87 +42,93 @@ import fr.lelouet.tools.holders.interfaces.numbers.LongHolder;
  */
 public abstract class AObjHolder<U> implements ObjHolder<U> {
 
+	/**
+	 * make a holder derived from this follow this.
+	 *
+	 * @param <H>
+	 *          the type of the derived holder
+	 * @param ret
+	 *          the derived holder
+	 * @param update
+	 *          sets the value of the derived holder from a value of this
+	 * @return ret
+	 */
+	protected <H extends ObjHolderSimple<?>> H derive(H ret, Consumer<U> update) {
+		follow(update, ret);
+		return ret;
+	}
+
 	@Override
 	public <V> ObjHolder<V> map(Function<U, V> mapper) {
 		ObjHolderSimple<V> ret = new ObjHolderSimple<>();
-		follow(v -> ret.set(mapper.apply(v)), ret);
-		return ret;
+		return derive(ret, v -> ret.set(mapper.apply(v)));
 	}
 
 	@Override
 	public BoolHolder test(Predicate<U> test) {
 		BoolHolderImpl ret = new BoolHolderImpl();
-		follow((newValue) -> ret.set(test.test(newValue)), ret);
-		return ret;
+		return derive(ret, newValue -> ret.set(test.test(newValue)));
 	}
 
 	@Override
 	public IntHolder mapInt(ToIntFunction<U> mapper) {
 		IntHolderImpl ret = new IntHolderImpl();
-		follow(newValue -> ret.set(mapper.applyAsInt(newValue)), ret);
-		return ret;
+		return derive(ret, newValue -> ret.set(mapper.applyAsInt(newValue)));
 	}
 
 	@Override
 	public LongHolder mapLong(ToLongFunction<U> mapper) {
 		LongHolderImpl ret = new LongHolderImpl();
-		follow((newValue) -> ret.set(mapper.applyAsLong(newValue)), ret);
-		return ret;
+		return derive(ret, newValue -> ret.set(mapper.applyAsLong(newValue)));
 	}
 
 	@Override
 	public FloatHolder mapFloat(ToDoubleFunction<U> mapper) {
 		FloatHolderImpl ret = new FloatHolderImpl();
-		follow((newValue) -> ret.set((float) mapper.applyAsDouble(newValue)), ret);
-		return ret;
+		return derive(ret, newValue -> ret.set((float) mapper.applyAsDouble(newValue)));
 	}
 
 	@Override
 	public DoubleHolder mapDouble(ToDoubleFunction<U> mapper) {
 		DoubleHolderImpl ret = new DoubleHolderImpl();
-		follow((newValue) -> ret.set(mapper.applyAsDouble(newValue)), ret);
-		return ret;
+		return derive(ret, newValue -> ret.set(mapper.applyAsDouble(newValue)));
 	}
 
 	@Override
 	public <K> ListHolder<K> mapList(Function<U, List<K>> mapper) {
 		ListHolderImpl<K> ret = new ListHolderImpl<>();
-		follow((newValue) -> {
+		return derive(ret, newValue -> {
 			List<K> newlist = mapper.apply(newValue);
 			ret.set(newlist);
-		}, ret);
-		return ret;
+		});
 	}
 
 	@Override
 	public <K, V> MapHolder<K, V> mapMap(Function<U, Map<K, V>> mapper) {
 		MapHolderImpl<K, V> ret = new MapHolderImpl<>();
-		follow((newValue) -> {
+		return derive(ret, newValue -> {
 			Map<K, V> newlist = mapper.apply(newValue);
 			ret.set(newlist);
-		}, ret);
-		return ret;
+		});
 	}
 
 	@Override
 	public <V> ListHolder<V> toList(Function<U, Iterable<V>> generator) {
 		ListHolderImpl<V> ret = new ListHolderImpl<>();
-		follow((newValue) -> {
+		return derive(ret, newValue -> {
 			List<V> newlist = StreamSupport.stream(generator.apply(newValue).spliterator(), false)
 					.collect(Collectors.toList());
 			ret.set(newlist);
-		}, ret);
-		return ret;
+		});
 	}
 
 	@Override
 	public <V> SetHolder<V> toSet(Function<U, Iterable<V>> generator) {
 		SetHolderImpl<V> ret = new SetHolderImpl<>();
-		follow((newValue) -> {
+		return derive(ret, newValue -> {
 			Set<V> newlist = StreamSupport.stream(generator.apply(newValue).spliterator(), false).collect(Collectors.toSet());
 			ret.set(newlist);
-		}, ret);
-		return ret;
+		});
 	}
 
 	@Override
@@ -126,6 +136,26 @@ public abstract class AObjHolder<U> implements ObjHolder<U> {
 		return ObjHolder.combine(this, other, ObjHolderSimple::new, mapper);
 	}
 
+	@Override
+	public ObjHolder<U> debounce(Duration quiet, ScheduledExecutorService scheduler) {
+		return Coalescer.debounce(this, quiet, scheduler);
+	}
+
+	@Override
+	public ObjHolder<U> throttle(Duration window, ScheduledExecutorService scheduler) {
+		return Coalescer.throttle(this, window, scheduler);
+	}
+
+	@Override
+	public ObjHolder<U> sample(Duration period, ScheduledExecutorService scheduler) {
+		return Coalescer.sample(this, period, scheduler);
+	}
+
+	@Override
+	public ObjHolder<U> latestOnExecutor(Executor executor) {
+		return Coalescer.latestOn(this, executor);
+	}
+
 	@Override
 	public <V> ObjHolder<V> unPack(Function<U, ObjHolder<V>> unpacker) {
 		return ObjHolder.unPack(this, ObjHolderSimple::new, unpacker);
@@ -0,0 +1,258 @@
+package fr.lelouet.tools.holders.impl;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import fr.lelouet.tools.holders.interfaces.ObjHolder;
+
+/**
+ * follows a holder, and transmits the values it receives to a new holder at a
+ * limited rate : the values received in a burst are coalesced into the last
+ * one.
+ * <p>
+ * The state of the coalescer is only modified while synchronized on this, but
+ * the new holder is set outside of that lock, so that a source never waits for
+ * the holders derived from the new one. The values are still set in the order
+ * they were emitted : one thread at a time sets them, and the values emitted
+ * meanwhile are set by that thread, only the last one if several were emitted.
+ * </p>
+ *
+ * @param <U>
+ *          the type of the values
+ */
+abstract class Coalescer<U> implements Consumer<U> {
+
+	final ObjHolderSimple<U> ret = new ObjHolderSimple<>();
+
+	/** last value received */
+	protected U latest;
+
+	/** true when the latest value is not emitted yet */
+	protected boolean pending = false;
+
+	/** last value emitted and not set yet */
+	private U outgoing;
+
+	private boolean hasOutgoing = false;
+
+	/** true while a thread sets the emitted values */
+	private boolean draining = false;
+
+	/**
+	 * follow the source, while the new holder is kept alive.
+	 *
+	 * @return this
+	 */
+	Coalescer<U> follow(ObjHolder<U> source) {
+		source.follow(this, ret);
+		return this;
+	}
+
+	@Override
+	public void accept(U value) {
+		boolean emit;
+		synchronized (this) {
+			latest = value;
+			pending = true;
+			emit = received();
+		}
+		if (emit) {
+			emit();
+		}
+	}
+
+	/**
+	 * called when a value is received, while synchronized on this.
+	 *
+	 * @return true to emit the value now.
+	 */
+	protected abstract boolean received();
+
+	/**
+	 * set the latest value in the new holder if it is not yet. Must be called
+	 * while NOT synchronized on this.
+	 */
+	protected void emit() {
+		synchronized (this) {
+			if (!pending) {
+				return;
+			}
+			pending = false;
+			outgoing = latest;
+			hasOutgoing = true;
+			if (draining) {
+				return;
+			}
+			draining = true;
+		}
+		while (true) {
+			U value;
+			synchronized (this) {
+				if (!hasOutgoing) {
+					draining = false;
+					return;
+				}
+				value = outgoing;
+				outgoing = null;
+				hasOutgoing = false;
+			}
+			ret.set(value);
+		}
+	}
+
+	private static long nanos(Duration duration) {
+		return Math.max(0, duration.toNanos());
+	}
+
+	/**
+	 * transmits a value once no other value has been received for a delay
+	 */
+	static <U> ObjHolderSimple<U> debounce(ObjHolder<U> source, Duration quiet, ScheduledExecutorService scheduler) {
+		return debounce(source, quiet, scheduler, System::nanoTime);
+	}
+
+	/**
+	 * debounce with a given clock. Only one task is scheduled at a time : when it
+	 * runs before the end of the quiet delay of the last value, it is scheduled
+	 * again for the remaining delay.
+	 *
+	 * @param clock
+	 *          the time in nanoseconds, as used by the scheduler
+	 */
+	static <U> ObjHolderSimple<U> debounce(ObjHolder<U> source, Duration quiet, ScheduledExecutorService scheduler,
+			LongSupplier clock) {
+		long delay = nanos(quiet);
+		return new Coalescer<U>() {
+
+			/** time the last value was received */
+			private long last;
+
+			/** true while a task is scheduled */
+			private boolean armed = false;
+
+			@Override
+			protected boolean received() {
+				last = clock.getAsLong();
+				if (!armed) {
+					armed = true;
+					scheduler.schedule(this::check, delay, TimeUnit.NANOSECONDS);
+				}
+				return false;
+			}
+
+			private void check() {
+				synchronized (this) {
+					long remaining = last + delay - clock.getAsLong();
+					if (remaining > 0) {
+						scheduler.schedule(this::check, remaining, TimeUnit.NANOSECONDS);
+						return;
+					}
+					armed = false;
+				}
+				emit();
+			}
+		}.follow(source).ret;
+	}
+
+	/**
+	 * transmits the first value immediately, then at most one value per window,
+	 * the last value received during a window being transmitted at its end.
+	 */
+	static <U> ObjHolderSimple<U> throttle(ObjHolder<U> source, Duration window, ScheduledExecutorService scheduler) {
+		long delay = nanos(window);
+		return new Coalescer<U>() {
+
+			private boolean open = false;
+
+			@Override
+			protected boolean received() {
+				if (open) {
+					return false;
+				}
+				openWindow();
+				return true;
+			}
+
+			private void openWindow() {
+				open = true;
+				scheduler.schedule(this::close, delay, TimeUnit.NANOSECONDS);
+			}
+
+			private void close() {
+				synchronized (this) {
+					if (!pending) {
+						open = false;
+						return;
+					}
+					openWindow();
+				}
+				emit();
+			}
+		}.follow(source).ret;
+	}
+
+	/**
+	 * transmits the last value received, periodically. The periodic task is
+	 * cancelled once the new holder is garbage collected.
+	 */
+	static <U> ObjHolderSimple<U> sample(ObjHolder<U> source, Duration period, ScheduledExecutorService scheduler) {
+		long delay = Math.max(1, nanos(period));
+		Coalescer<U> coalescer = new Coalescer<U>() {
+
+			@Override
+			protected boolean received() {
+				return false;
+			}
+		}.follow(source);
+		// the task only keeps the coalescer weakly, so it does not keep the new
+		// holder alive.
+		WeakReference<Coalescer<U>> ref = new WeakReference<>(coalescer);
+		ScheduledFuture<?>[] task = new ScheduledFuture<?>[1];
+		synchronized (task) {
+			task[0] = scheduler.scheduleAtFixedRate(() -> {
+				Coalescer<U> c = ref.get();
+				if (c == null) {
+					synchronized (task) {
+						task[0].cancel(false);
+					}
+					return;
+				}
+				c.emit();
+			}, delay, delay, TimeUnit.NANOSECONDS);
+		}
+		return coalescer.ret;
+	}
+
+	/**
+	 * transmits the values on an executor. When values are received while a
+	 * transmission is waiting for the executor, only the last one is
+	 * transmitted.
+	 */
+	static <U> ObjHolderSimple<U> latestOn(ObjHolder<U> source, Executor executor) {
+		return new Coalescer<U>() {
+
+			private boolean submitted = false;
+
+			@Override
+			protected boolean received() {
+				if (!submitted) {
+					submitted = true;
+					executor.execute(() -> {
+						synchronized (this) {
+							submitted = false;
+						}
+						emit();
+					});
+				}
+				return false;
+			}
+		}.follow(source).ret;
+	}
+
+}
@@ -0,0 +1,178 @@
+package fr.lelouet.tools.holders.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Predicate;
+
+import fr.lelouet.tools.lambdaref.references.IRef;
+
+/**
+ * array-backed store of the followers of a holder.
+ * <p>
+ * The followers are kept in an array that is never modified once published :
+ * adding or removing a follower copies the array and publishes the copy with a
+ * CAS. Dispatching a value only requires a {@link #snapshot()} of the array,
+ * which can be iterated without lock while other threads register or remove
+ * followers.
+ * </p>
+ * <p>
+ * This is intended for the usual case where the followers are iterated much
+ * more often than they are modified.
+ * </p>
+ *
+ * @param <L>
+ *          the type of the followers, typically a Consumer
+ */
+public class CopyOnWriteFollowers<L> {
+
+	@SuppressWarnings("rawtypes")
+	private static final IRef[] EMPTY = new IRef[0];
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<CopyOnWriteFollowers, IRef[]> REFS = AtomicReferenceFieldUpdater
+	.newUpdater(CopyOnWriteFollowers.class, IRef[].class, "refs");
+
+	@SuppressWarnings("unchecked")
+	private volatile IRef<L>[] refs = EMPTY;
+
+	/**
+	 *
+	 * @return the current array of references. This array must not be modified.
+	 *         The references it contains may have been cleared.
+	 */
+	public IRef<L>[] snapshot() {
+		return refs;
+	}
+
+	/** the array of the last {@link #dispatch()} */
+	@SuppressWarnings("unchecked")
+	private volatile IRef<L>[] dispatched = EMPTY;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<CopyOnWriteFollowers, IRef[]> DISPATCHED = AtomicReferenceFieldUpdater
+	.newUpdater(CopyOnWriteFollowers.class, IRef[].class, "dispatched");
+
+	/**
+	 * snapshot the followers to transmit them a value. The holder must dispatch
+	 * its values inside its monitor, so that a follower added concurrently can
+	 * then check with {@link #dispatched(IRef)} whether it received the last
+	 * value.
+	 *
+	 * @return the current array of references, see {@link #snapshot()}
+	 */
+	public IRef<L>[] dispatch() {
+		IRef<L>[] ret = refs;
+		dispatched = ret;
+		return ret;
+	}
+
+	/**
+	 *
+	 * @param ref
+	 *          a reference added to this
+	 * @return true if the reference was in the array of the last
+	 *         {@link #dispatch()}
+	 */
+	public boolean dispatched(IRef<L> ref) {
+		for (IRef<L> r : dispatched) {
+			if (r == ref) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * add a reference at the end of the followers.
+	 *
+	 * @param ref
+	 *          not null reference to the follower.
+	 */
+	public void add(IRef<L> ref) {
+		IRef<L>[] old, copy;
+		do {
+			old = refs;
+			copy = Arrays.copyOf(old, old.length + 1);
+			copy[old.length] = ref;
+		} while (!REFS.compareAndSet(this, old, copy));
+	}
+
+	/**
+	 * remove all the references to a follower, as well as the cleared
+	 * references.
+	 *
+	 * @param follower
+	 *          the follower to remove
+	 * @return true if a reference was removed.
+	 */
+	public boolean remove(L follower) {
+		return removeIf(ref -> {
+			L l = ref.get();
+			return l == null || l.equals(follower);
+		});
+	}
+
+	/**
+	 * remove the references that have been cleared.
+	 *
+	 * @return true if a reference was removed.
+	 */
+	public boolean removeCollected() {
+		return removeIf(ref -> ref.get() == null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <L> IRef<L>[] newArray(int size) {
+		return (IRef<L>[]) new IRef<?>[size];
+	}
+
+	@SuppressWarnings("unchecked")
+	protected boolean removeIf(Predicate<IRef<L>> filter) {
+		IRef<L>[] old, copy;
+		do {
+			old = refs;
+			copy = newArray(old.length);
+			int kept = 0;
+			for (IRef<L> ref : old) {
+				if (!filter.test(ref)) {
+					copy[kept++] = ref;
+				}
+			}
+			if (kept == old.length) {
+				return false;
+			}
+			copy = kept == 0 ? EMPTY : Arrays.copyOf(copy, kept);
+		} while (!REFS.compareAndSet(this, old, copy));
+		// don't keep the references removed in the last dispatch
+		IRef<L>[] last, filtered;
+		do {
+			last = dispatched;
+			filtered = newArray(last.length);
+			int kept = 0;
+			for (IRef<L> ref : last) {
+				if (!filter.test(ref)) {
+					filtered[kept++] = ref;
+				}
+			}
+			if (kept == last.length) {
+				break;
+			}
+			filtered = kept == 0 ? EMPTY : Arrays.copyOf(filtered, kept);
+		} while (!DISPATCHED.compareAndSet(this, last, filtered));
+		return true;
+	}
+
+	/**
+	 *
+	 * @return the number of references stored, including the cleared ones that
+	 *         were not removed yet.
+	 */
+	public int size() {
+		return refs.length;
+	}
+
+	public boolean isEmpty() {
+		return refs.length == 0;
+	}
+
+}
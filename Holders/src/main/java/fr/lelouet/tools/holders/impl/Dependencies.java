@@ -0,0 +1,112 @@
+package fr.lelouet.tools.holders.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * the dependencies of a holder to the holders that follow it, or from it to the
+ * holders it follows.
+ * <p>
+ * A dependency only keeps weakly the two holders and the listener that links
+ * them, and disappears once one of them is collected or the listener is
+ * unfollowed. The dependencies that disappeared are removed when the list is
+ * read, or when it doubled its size since the last removal.
+ * </p>
+ */
+class Dependencies {
+
+	static final class Dependency {
+
+		final WeakReference<ObjHolderSimple<?>> parent;
+
+		final WeakReference<ObjHolderSimple<?>> child;
+
+		final WeakReference<Object> listener;
+
+		volatile boolean removed = false;
+
+		Dependency(ObjHolderSimple<?> parent, ObjHolderSimple<?> child, Object listener) {
+			this.parent = new WeakReference<>(parent);
+			this.child = new WeakReference<>(child);
+			this.listener = new WeakReference<>(listener);
+		}
+
+		boolean alive() {
+			return !removed && parent.get() != null && child.get() != null && listener.get() != null;
+		}
+
+	}
+
+	private final ArrayList<Dependency> list = new ArrayList<>(0);
+
+	/** size of the list after the last removal of the dead dependencies */
+	private int pruned = 0;
+
+	synchronized void add(Dependency dependency) {
+		if (list.size() >= 2 * pruned + 8) {
+			prune();
+		}
+		list.add(dependency);
+	}
+
+	/**
+	 * mark as removed the dependencies through a listener.
+	 *
+	 * @return the children of the dependencies removed that are still alive.
+	 */
+	synchronized List<ObjHolderSimple<?>> removeListener(Object listener) {
+		List<ObjHolderSimple<?>> ret = null;
+		for (Dependency d : list) {
+			if (!d.removed && d.listener.get() == listener) {
+				d.removed = true;
+				ObjHolderSimple<?> child = d.child.get();
+				if (child != null) {
+					if (ret == null) {
+						ret = new ArrayList<>(1);
+					}
+					ret.add(child);
+				}
+			}
+		}
+		return ret == null ? Collections.emptyList() : ret;
+	}
+
+	private void prune() {
+		list.removeIf(d -> !d.alive());
+		pruned = list.size();
+	}
+
+	/**
+	 *
+	 * @param children
+	 *          true to get the children of the dependencies, false to get their
+	 *          parents
+	 * @return the holders of the dependencies that are still alive, without
+	 *         duplicates.
+	 */
+	synchronized List<ObjHolderSimple<?>> holders(boolean children) {
+		prune();
+		List<ObjHolderSimple<?>> ret = new ArrayList<>();
+		for (Iterator<Dependency> it = list.iterator(); it.hasNext();) {
+			Dependency d = it.next();
+			ObjHolderSimple<?> h = (children ? d.child : d.parent).get();
+			if (h != null && !containsSame(ret, h)) {
+				ret.add(h);
+			}
+		}
+		return ret;
+	}
+
+	private static boolean containsSame(List<?> list, Object o) {
+		for (Object e : list) {
+			if (e == o) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
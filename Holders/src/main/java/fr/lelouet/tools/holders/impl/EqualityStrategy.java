@@ -0,0 +1,84 @@
+package fr.lelouet.tools.holders.impl;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * decides if a value set in a holder is the same as the value it holds, in
+ * which case the holder does not transmit it.
+ * <p>
+ * The strategies differ by their cost : the comparison of two large
+ * collections with {@link #equality()} checks all their items, while
+ * {@link #identity()} only checks the references.
+ * </p>
+ *
+ * @param <U>
+ *          the type of the values
+ */
+@FunctionalInterface
+public interface EqualityStrategy<U> {
+
+	/**
+	 *
+	 * @param previous
+	 *          the value hold
+	 * @param next
+	 *          the value set
+	 * @return true if the value set must not be transmitted.
+	 */
+	boolean same(U previous, U next);
+
+	/**
+	 *
+	 * @return a strategy that only considers the same instance as the same
+	 *         value.
+	 */
+	static <U> EqualityStrategy<U> identity() {
+		return (previous, next) -> previous == next;
+	}
+
+	/**
+	 *
+	 * @return a strategy that compares the values with
+	 *         {@link Object#equals(Object)}
+	 */
+	static <U> EqualityStrategy<U> equality() {
+		return Objects::equals;
+	}
+
+	/**
+	 *
+	 * @return a strategy that compares the hashcodes of the values before
+	 *         comparing them with {@link Object#equals(Object)}. Useful when the
+	 *         values cache their hashcode.
+	 */
+	static <U> EqualityStrategy<U> hashThenEquals() {
+		return (previous, next) -> previous == next
+				|| previous != null && next != null && previous.hashCode() == next.hashCode() && previous.equals(next);
+	}
+
+	/**
+	 *
+	 * @param stamp
+	 *          the version of a value, that changes when the value is modified.
+	 * @return a strategy that only compares the versions of the values.
+	 */
+	static <U> EqualityStrategy<U> version(ToLongFunction<? super U> stamp) {
+		return (previous, next) -> previous == next
+				|| previous != null && next != null && stamp.applyAsLong(previous) == stamp.applyAsLong(next);
+	}
+
+	/**
+	 *
+	 * @param comparator
+	 *          comparator of the values
+	 * @return a strategy that considers the values the comparator finds equal as
+	 *         the same.
+	 */
+	static <U> EqualityStrategy<U> comparing(Comparator<? super U> comparator) {
+		return (previous, next) -> previous == next
+				|| previous != null && next != null && comparator.compare(previous, next) == 0;
+	}
+
+}
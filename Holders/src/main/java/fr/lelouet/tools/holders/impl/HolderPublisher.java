@@ -0,0 +1,191 @@
+package fr.lelouet.tools.holders.impl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import fr.lelouet.tools.holders.interfaces.ObjHolder;
+
+/**
+ * publishes the values of a holder to {@link Flow.Subscriber}s.
+ * <p>
+ * Each subscriber receives the current value of the holder, then its next
+ * values, as long as it requested them. When values are set faster than a
+ * subscriber requests them, only the last one is kept for this subscriber, so
+ * no value is buffered beyond the last one. The publication never completes,
+ * and the subscription stays active until it is cancelled, even if the
+ * subscriber does not keep it.
+ * </p>
+ * <p>
+ * The values are delivered on an executor, by default the
+ * {@link ForkJoinPool#commonPool()}, so that a slow subscriber never blocks
+ * the holder. With a direct executor like <code>Runnable::run</code>, the
+ * values are delivered in the thread that sets them, once it released the
+ * monitor of the holder, or in the thread that requests them : a slow
+ * subscriber with demand then delays the thread modifying the holder.
+ * </p>
+ *
+ * @param <U>
+ *          the type of the values
+ */
+public class HolderPublisher<U> implements Flow.Publisher<U> {
+
+	private final ObjHolder<U> source;
+
+	private final Executor executor;
+
+	/**
+	 *
+	 * @param source
+	 *          the holder to publish
+	 * @param executor
+	 *          the executor to deliver the values on.
+	 */
+	public HolderPublisher(ObjHolder<U> source, Executor executor) {
+		this.source = source;
+		this.executor = executor;
+	}
+
+	/**
+	 * publish the values of a holder on the {@link ForkJoinPool#commonPool()}.
+	 *
+	 * @param source
+	 *          the holder to publish
+	 */
+	public HolderPublisher(ObjHolder<U> source) {
+		this(source, ForkJoinPool.commonPool());
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super U> subscriber) {
+		ConflatingSubscription subscription = new ConflatingSubscription(subscriber);
+		// the listener is kept by the source until the subscription is cancelled.
+		// It is added first, so that a subscription cancelled in onSubscribe
+		// removes it. It only stores the values until they are requested.
+		source.follow(subscription.listener);
+		subscriber.onSubscribe(subscription);
+	}
+
+	private class ConflatingSubscription implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super U> subscriber;
+
+		private final Consumer<U> listener = this::received;
+
+		/** number of values requested and not delivered */
+		private long requested = 0;
+
+		/** last value received and not delivered yet */
+		private U latest = null;
+
+		private boolean hasValue = false;
+
+		/** true while a delivery loop is scheduled or running */
+		private boolean draining = false;
+
+		private boolean cancelled = false;
+
+		/** error to signal to the subscriber instead of the values */
+		private Throwable error = null;
+
+		ConflatingSubscription(Flow.Subscriber<? super U> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		private void received(U value) {
+			synchronized (this) {
+				if (cancelled) {
+					return;
+				}
+				latest = value;
+				hasValue = true;
+			}
+			schedule();
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				// signaled by the delivery loop, so never concurrently with onNext
+				synchronized (this) {
+					if (cancelled || error != null) {
+						return;
+					}
+					error = new IllegalArgumentException("non-positive request " + n);
+				}
+				source.unfollow(listener);
+				schedule();
+				return;
+			}
+			synchronized (this) {
+				if (cancelled) {
+					return;
+				}
+				requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			synchronized (this) {
+				cancelled = true;
+				latest = null;
+				hasValue = false;
+			}
+			source.unfollow(listener);
+		}
+
+		/**
+		 * start the delivery loop, unless it is already running.
+		 */
+		private void schedule() {
+			synchronized (this) {
+				if (draining || cancelled || error == null && (!hasValue || requested == 0)) {
+					return;
+				}
+				draining = true;
+			}
+			executor.execute(this::drain);
+		}
+
+		/**
+		 * deliver the last value while it is requested, or the error of an invalid
+		 * request. A value received or a request made during the delivery, even
+		 * from the subscriber, is handled by this loop.
+		 */
+		private void drain() {
+			while (true) {
+				U value = null;
+				Throwable failure = null;
+				synchronized (this) {
+					if (!cancelled && error != null) {
+						failure = error;
+						cancelled = true;
+						latest = null;
+						hasValue = false;
+						draining = false;
+					} else if (cancelled || !hasValue || requested == 0) {
+						draining = false;
+						return;
+					} else {
+						value = latest;
+						latest = null;
+						hasValue = false;
+						if (requested != Long.MAX_VALUE) {
+							requested--;
+						}
+					}
+				}
+				if (failure != null) {
+					subscriber.onError(failure);
+					return;
+				}
+				subscriber.onNext(value);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,115 @@
+package fr.lelouet.tools.holders.impl;
+
+import java.util.concurrent.Flow;
+
+import fr.lelouet.tools.holders.interfaces.RWObjHolder;
+import lombok.Getter;
+
+/**
+ * sets the values received from a {@link Flow.Publisher} in a holder.
+ * <p>
+ * The values are requested by batches : a new batch is only requested once the
+ * values of the previous one have been set, so a publisher faster than the
+ * propagation of the values in the holder is slowed down instead of buffering
+ * them.
+ * </p>
+ *
+ * @param <U>
+ *          the type of the values
+ */
+public class HolderSubscriber<U> implements Flow.Subscriber<U> {
+
+	private final RWObjHolder<U> target;
+
+	private final long batch;
+
+	private Flow.Subscription subscription = null;
+
+	/** number of values of the current batch not received yet */
+	private long remaining = 0;
+
+	/** the error that terminated the publication, if any */
+	@Getter
+	private volatile Throwable error = null;
+
+	/** true once the publication is terminated */
+	@Getter
+	private volatile boolean done = false;
+
+	/**
+	 *
+	 * @param target
+	 *          the holder to set the values in
+	 * @param batch
+	 *          the number of values to request at once, at least 1.
+	 */
+	public HolderSubscriber(RWObjHolder<U> target, long batch) {
+		if (batch < 1) {
+			throw new IllegalArgumentException("batch must be positive, got " + batch);
+		}
+		this.target = target;
+		this.batch = batch;
+	}
+
+	/**
+	 * request the values one by one.
+	 *
+	 * @param target
+	 *          the holder to set the values in
+	 */
+	public HolderSubscriber(RWObjHolder<U> target) {
+		this(target, 1);
+	}
+
+	@Override
+	public synchronized void onSubscribe(Flow.Subscription subscription) {
+		if (this.subscription != null) {
+			subscription.cancel();
+			return;
+		}
+		this.subscription = subscription;
+		remaining = batch;
+		subscription.request(batch);
+	}
+
+	@Override
+	public void onNext(U item) {
+		target.set(item);
+		Flow.Subscription toRequest = null;
+		synchronized (this) {
+			if (--remaining == 0 && !done) {
+				remaining = batch;
+				toRequest = subscription;
+			}
+		}
+		if (toRequest != null) {
+			toRequest.request(batch);
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		error = throwable;
+		done = true;
+	}
+
+	@Override
+	public void onComplete() {
+		done = true;
+	}
+
+	/**
+	 * stop receiving the values. The holder keeps the last value received.
+	 */
+	public void cancel() {
+		Flow.Subscription s;
+		synchronized (this) {
+			done = true;
+			s = subscription;
+		}
+		if (s != null) {
+			s.cancel();
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package fr.lelouet.tools.holders.impl;
+
+import java.util.Arrays;
+
+/**
+ * the objects a holder keeps alive for the holders it follows.
+ * <p>
+ * A holder that follows another one through a weak reference must keep the
+ * listener, and the followed holder, reachable as long as itself is. The pairs
+ * (listener, source) are stored flat in a single array that only grows when
+ * full, and shrinks when the pairs are released, so that a holder that follows
+ * and unfollows sources repeatedly keeps a bounded memory.
+ * </p>
+ */
+class KeepAlive {
+
+	private static final Object[] EMPTY = {};
+
+	/** listener at even index, source (or null) at the following odd index */
+	private Object[] pairs = EMPTY;
+
+	private int size = 0;
+
+	/**
+	 * keep a listener and its source alive.
+	 *
+	 * @param listener
+	 *          the listener registered on the source
+	 * @param source
+	 *          the holder the listener follows, or null to only keep the
+	 *          listener
+	 */
+	synchronized void add(Object listener, Object source) {
+		if (size == pairs.length) {
+			pairs = Arrays.copyOf(pairs, Math.max(4, size * 2));
+		}
+		pairs[size++] = listener;
+		pairs[size++] = source;
+	}
+
+	/**
+	 * stop keeping alive the pairs of this listener and source, compared by
+	 * identity.
+	 *
+	 * @return true if a pair was released.
+	 */
+	synchronized boolean release(Object listener, Object source) {
+		int kept = 0;
+		for (int i = 0; i < size; i += 2) {
+			if (pairs[i] != listener || pairs[i + 1] != source) {
+				pairs[kept++] = pairs[i];
+				pairs[kept++] = pairs[i + 1];
+			}
+		}
+		if (kept == size) {
+			return false;
+		}
+		Arrays.fill(pairs, kept, size, null);
+		size = kept;
+		if (size == 0) {
+			pairs = EMPTY;
+		} else if (size <= pairs.length / 4) {
+			pairs = Arrays.copyOf(pairs, size * 2);
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @return the number of pairs kept alive.
+	 */
+	synchronized int size() {
+		return size / 2;
+	}
+
+}
@@ -15,7 +15,7 @@ public class NotNullObjHolderImpl<U> extends ObjHolderSimple<U> {
 	}
 
 	@Override
-	public synchronized void set(U newitem) {
+	public void set(U newitem) {
 		if(newitem==null) {
 			throw new UnsupportedOperationException("null item forbidden");
 		}
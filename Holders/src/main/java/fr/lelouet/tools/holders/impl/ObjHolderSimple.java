@@ -1,21 +1,51 @@
 package fr.lelouet.tools.holders.impl;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 import fr.lelouet.tools.holders.interfaces.ObjHolder;
 import fr.lelouet.tools.holders.interfaces.RWObjHolder;
+import fr.lelouet.tools.holders.metrics.HolderMetrics;
+import fr.lelouet.tools.holders.metrics.HolderMetricsRegistry;
 import fr.lelouet.tools.lambdaref.references.HardRef;
 import fr.lelouet.tools.lambdaref.references.IRef;
+import fr.lelouet.tools.lambdaref.references.Scope;
 import fr.lelouet.tools.lambdaref.references.UsualRef;
 import fr.lelouet.tools.lambdaref.references.WeakRef;
+import fr.lelouet.tools.synchronization.SerialExecutor;
 import lombok.Getter;
 import lombok.Setter;
 
 /**
  * an implementation that contains the item to return and the list of listeners;
+ * <p>
+ * The listeners are stored in a {@link CopyOnWriteFollowers}, so that following
+ * and unfollowing never wait for a {@link #set(Object)} to propagate its value.
+ * The calls to set are still synchronized on this, but they only store the
+ * value and queue its transmission to the followers present. The transmissions
+ * are run once the monitor is released, one after the other and in the order
+ * the values were set : a follower never runs inside the monitor of this, and
+ * a thread that sets a value while another one is transmitting only queues it.
+ * </p>
+ * <p>
+ * By default the values are transmitted in the thread that sets them. An
+ * executor can be given with {@link #setExecutor(Executor)} to transmit them
+ * asynchronously instead.
+ * </p>
  */
 public class ObjHolderSimple<U> extends AObjHolder<U> implements RWObjHolder<U>, Consumer<Object> {
 
@@ -29,6 +59,7 @@ public class ObjHolderSimple<U> extends AObjHolder<U> implements RWObjHolder<U>,
 	private CountDownLatch dataReceivedLatch = new CountDownLatch(1);
 
 	public void waitData() {
+		refresh();
 		try {
 			dataReceivedLatch.await();
 		} catch (InterruptedException e) {
@@ -36,8 +67,15 @@ public class ObjHolderSimple<U> extends AObjHolder<U> implements RWObjHolder<U>,
 		}
 	}
 
+	/**
+	 * set to true before the first value is transmitted. This is volatile so that
+	 * a follower registering concurrently with a first {@link #set(Object)}
+	 * either sees the value, or is seen by the transmission.
+	 */
+	private volatile boolean dataAvailable = false;
+
 	public boolean isDataAvailable() {
-		return dataReceivedLatch.getCount() == 0;
+		return dataAvailable;
 	}
 
 	protected U item;
@@ -45,50 +83,416 @@ public class ObjHolderSimple<U> extends AObjHolder<U> implements RWObjHolder<U>,
 	@Override
 	public U get() {
 		waitData();
+		return current();
+	}
+
+	/**
+	 * the value to transmit. Subclasses that store their value in another field
+	 * than {@link #item} override this.
+	 *
+	 * @return the current value, without waiting for it to be available.
+	 */
+	protected U current() {
 		return item;
 	}
 
-	private final LinkedList<IRef<Consumer<U>>> followers = new LinkedList<>();
+	private final CopyOnWriteFollowers<Consumer<U>> followers = new CopyOnWriteFollowers<>();
 
 	private static final boolean USEWEAKREF = true;
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The registration does not lock this. Only when data is already available,
+	 * the monitor is acquired to queue the current value, so that this value
+	 * can't be received after a value set later. The value is not sent again if
+	 * the last transmission already included the follower.
+	 * </p>
+	 */
 	@Override
-	public synchronized ObjHolder<U> follow(Consumer<U> cons, Consumer<Object> holder) {
+	public ObjHolder<U> follow(Consumer<U> cons, Consumer<Object> holder) {
+		IRef<Consumer<U>> ref = register(followers, cons, holder);
+		// a set() that made the data available after this check will see the
+		// follower in its snapshot.
+		if (dataAvailable) {
+			synchronized (this) {
+				// a set() running while the follower was added may have sent it the
+				// value already.
+				if (!followers.dispatched(ref)) {
+					U value = current();
+					propagate(() -> cons.accept(value));
+				}
+			}
+			publish();
+		}
+		return this;
+	}
+
+	/**
+	 * add a follower to a list of followers of this, and keep it alive as long
+	 * as the holder is.
+	 *
+	 * @param <L>
+	 *          the type of follower
+	 * @param list
+	 *          the followers of this to add the follower to
+	 * @param cons
+	 *          the follower
+	 * @param holder
+	 *          the holder the follower modifies, or a {@link Scope} to keep it
+	 *          until the scope is disposed, or null to keep it, and this, until
+	 *          it is unfollowed.
+	 * @return the reference added to the list.
+	 */
+	protected <L> IRef<L> register(CopyOnWriteFollowers<L> list, L cons, Consumer<Object> holder) {
+		IRef<L> ref = attach(list, cons, holder);
+		// an update may have been kept while the follower was added.
+		refresh();
+		return ref;
+	}
+
+	/**
+	 * add a follower as {@link #register(CopyOnWriteFollowers, Object, Consumer)}
+	 * does, without running the update a lazy holder may have kept. Can be called
+	 * inside the monitor of this, in which case the caller must call
+	 * {@link #refresh()} once the monitor is released : the update reads the
+	 * holder this is derived from, whose monitor must not be acquired while
+	 * holding the one of this.
+	 *
+	 * @param <L>
+	 *          the type of follower
+	 * @param list
+	 *          the followers of this to add the follower to
+	 * @param cons
+	 *          the follower
+	 * @param holder
+	 *          the holder the follower modifies, or a {@link Scope}, or null.
+	 * @return the reference added to the list.
+	 */
+	protected <L> IRef<L> attach(CopyOnWriteFollowers<L> list, L cons, Consumer<Object> holder) {
+		if (holder instanceof ObjHolderSimple) {
+			ObjHolderSimple<?> child = (ObjHolderSimple<?>) holder;
+			child.deeperThan(depth);
+			Dependencies.Dependency dependency = new Dependencies.Dependency(this, child, cons);
+			dependents.add(dependency);
+			child.dependencies.add(dependency);
+		}
+		IRef<L> ref;
 		if (holder == null) {
-			followers.add(new HardRef<>(cons));
-			IRef.hard(this);
+			ref = new UsualRef<>(cons);
+			pin(Scope.GLOBAL, cons);
 		} else {
 			if (USEWEAKREF) {
-				holder.accept(new Object[] { cons, this });
-				followers.add(new WeakRef<>(cons));
+				if (holder instanceof ObjHolderSimple) {
+					((ObjHolderSimple<?>) holder).keepAlive.add(cons, this);
+				} else if (holder instanceof Scope) {
+					pin((Scope) holder, cons);
+				} else {
+					holder.accept(new Object[] { cons, this });
+				}
+				ref = new WeakRef<>(cons);
 			} else {
-				followers.add(new UsualRef<>(cons));
+				ref = new UsualRef<>(cons);
 			}
 		}
-		if (dataReceivedLatch.getCount() == 0) {
-			cons.accept(item);
+		list.add(ref);
+		return ref;
+	}
+
+	/**
+	 * remove a follower added with
+	 * {@link #register(CopyOnWriteFollowers, Object, Consumer)}
+	 *
+	 * @param <L>
+	 *          the type of follower
+	 * @param list
+	 *          the followers of this to remove the follower from
+	 * @param cons
+	 *          the follower
+	 */
+	protected <L> void unregister(CopyOnWriteFollowers<L> list, L cons) {
+		list.remove(cons);
+		synchronized (pins) {
+			for (Iterator<WeakReference<HardRef<Object[]>>> it = pins.iterator(); it.hasNext();) {
+				HardRef<Object[]> pin = it.next().get();
+				if (pin == null) {
+					it.remove();
+				} else if (pin.get()[0] == cons) {
+					pin.dispose();
+					it.remove();
+				}
+			}
+			pruned = pins.size();
+		}
+		for (ObjHolderSimple<?> child : dependents.removeListener(cons)) {
+			child.keepAlive.release(cons, this);
 		}
-		return this;
 	}
 
 	@Override
-	public synchronized void unfollow(Consumer<U> cons) {
-		followers.removeIf(ref -> {
-			Consumer<U> h = ref.get();
-			return h == null || h.equals(cons);
-		});
+	public void unfollow(Consumer<U> cons) {
+		unregister(followers, cons);
+	}
+
+	/**
+	 * decides if a value set is the same as the value hold, in which case it is
+	 * not transmitted. The primitive values of the number holders are always
+	 * compared directly.
+	 */
+	@Getter
+	@Setter
+	private EqualityStrategy<? super U> equality = defaultEquality();
+
+	/**
+	 *
+	 * @return the strategy used when none is set.
+	 */
+	protected EqualityStrategy<? super U> defaultEquality() {
+		return EqualityStrategy.equality();
 	}
 
 	@Override
-	public synchronized void set(U newitem) {
-		// if there was already a value set, and we set to this same value, don't
-		// propagate.
-		if (isDataAvailable() && (newitem == item || newitem != null && newitem.equals(item))) {
-			return ;
-		}
-		item = newitem;
-		transmitToListeners();
+	public void set(U newitem) {
+		synchronized (this) {
+			// if there was already a value set, and we set to this same value, don't
+			// propagate.
+			if (isDataAvailable() && equality.same(item, newitem)) {
+				suppressed();
+				return;
+			}
+			item = newitem;
+			changed();
+		}
+		publish();
+	}
+
+	/**
+	 * make the new value available and queue its transmission, unless a batch is
+	 * opened. Must be called inside a synchronized call, once the new value is
+	 * stored ; the caller must then call {@link #publish()} once it released the
+	 * monitor.
+	 */
+	protected void changed() {
+		changeCount++;
+		if (HolderMetricsRegistry.isEnabled()) {
+			countChange();
+		}
+		dataAvailable = true;
+		if (!Propagation.defer(this)) {
+			transmitToListeners();
+		}
 		dataReceivedLatch.countDown();
+		if (!derived.isEmpty()) {
+			synchronized (publications) {
+				if (!outdating) {
+					outdating = true;
+					publications.add(outdateDerived);
+				}
+			}
+		}
+	}
+
+	//
+	// publication of the values, outside of the monitor
+	//
+
+	/**
+	 * the transmissions queued inside the monitor of this, to run once it is
+	 * released, in that order. Guarded by itself.
+	 */
+	private final ArrayDeque<Runnable> publications = new ArrayDeque<>();
+
+	/** true while a thread runs the publications */
+	private boolean publishing = false;
+
+	/** true while the outdating of the derived holders is queued */
+	private boolean outdating = false;
+
+	private final Runnable outdateDerived = () -> {
+		synchronized (publications) {
+			outdating = false;
+		}
+		outdateDerived();
+	};
+
+	/**
+	 * run the transmissions queued by the modifications of this. Must be called
+	 * by the modifications once they released the monitor of this ; does nothing
+	 * if the monitor is still held, since the outermost call then publishes.
+	 * <p>
+	 * Only one thread runs the transmissions of this at a time : when another
+	 * thread is already running them, it also runs the ones queued by this
+	 * thread, and this returns immediately. A transmission that throws does not
+	 * prevent the next ones : the first exception is thrown once the queue is
+	 * empty, with the next ones suppressed in it.
+	 * </p>
+	 */
+	protected void publish() {
+		if (Thread.holdsLock(this)) {
+			return;
+		}
+		synchronized (publications) {
+			if (publishing || publications.isEmpty()) {
+				return;
+			}
+			publishing = true;
+		}
+		Throwable failure = null;
+		while (true) {
+			Runnable next;
+			synchronized (publications) {
+				next = publications.poll();
+				if (next == null) {
+					publishing = false;
+					break;
+				}
+			}
+			try {
+				Propagation.run(next);
+			} catch (RuntimeException | Error e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		if (failure != null) {
+			throw (RuntimeException) failure;
+		}
+	}
+
+	/**
+	 * when true, the holders derived from this by {@link #map(Function)},
+	 * {@link #test(Predicate)}, {@link #mapInt(ToIntFunction)},
+	 * {@link #toList(Function)} and the like are lazy : they are only marked as
+	 * outdated when this changes, and compute their value when it is requested or
+	 * when they are followed. The holders derived from a lazy holder are lazy
+	 * too.
+	 * <p>
+	 * Must be set before the holders are derived.
+	 * </p>
+	 */
+	@Getter
+	@Setter
+	private boolean lazy = false;
+
+	/** the outdating of the lazy holders derived from this */
+	private final CopyOnWriteFollowers<Runnable> derived = new CopyOnWriteFollowers<>();
+
+	@Override
+	protected <H extends ObjHolderSimple<?>> H derive(H ret, Consumer<U> update) {
+		if (!lazy) {
+			return super.derive(ret, update);
+		}
+		ret.setLazy(true);
+		Runnable pull = () -> {
+			long changes;
+			do {
+				refresh();
+				changes = changeCount;
+				// the outdating of ret up to now is covered by the value read next
+				((ObjHolderSimple<?>) ret).outdated = null;
+				update.accept(get());
+				// a value set in this meanwhile may have been overwritten
+			} while (changes != changeCount);
+		};
+		Runnable outdate = () -> ret.updateLazily(pull);
+		register(derived, outdate, ret);
+		if (isDataAvailable()) {
+			outdate.run();
+		}
+		return ret;
+	}
+
+	/**
+	 * update of the value not applied yet, see {@link #updateLazily(Runnable)}
+	 */
+	private volatile Runnable outdated = null;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<ObjHolderSimple, Runnable> OUTDATED = AtomicReferenceFieldUpdater
+	.newUpdater(ObjHolderSimple.class, Runnable.class, "outdated");
+
+	/**
+	 * update this from the lazy holder it is derived from.
+	 * <p>
+	 * When this has followers, or no value yet, the update is applied
+	 * immediately. Otherwise it is kept, and only applied when the value of this
+	 * is requested or a follower is added ; the lazy holders derived from this
+	 * are then outdated too. So a derived holder no more followed stops
+	 * computing its value.
+	 * </p>
+	 * <p>
+	 * The update reads the holder this is derived from, so neither it nor the
+	 * outdating of the derived holders is run inside the monitor of this.
+	 * </p>
+	 *
+	 * @param update
+	 *          the update, that sets the new value of this.
+	 */
+	protected void updateLazily(Runnable update) {
+		boolean kept;
+		synchronized (this) {
+			kept = isDataAvailable() && followers() == 0;
+			if (kept) {
+				if (OUTDATED.getAndSet(this, update) != null) {
+					return;
+				}
+			} else {
+				outdated = null;
+			}
+		}
+		if (kept) {
+			outdateDerived();
+		} else {
+			update.run();
+		}
+	}
+
+	/**
+	 * apply the update kept by {@link #updateLazily(Runnable)}, if any, outside
+	 * the monitor of this. The update is taken atomically, so only one thread
+	 * applies it, and applied again if this was outdated meanwhile.
+	 */
+	protected void refresh() {
+		Runnable update;
+		while (outdated != null && (update = OUTDATED.getAndSet(this, null)) != null) {
+			update.run();
+		}
+	}
+
+	private void outdateDerived() {
+		IRef<Runnable>[] snapshot = derived.snapshot();
+		if (snapshot.length == 0) {
+			return;
+		}
+		boolean collected = false;
+		for (IRef<Runnable> ref : snapshot) {
+			Runnable outdate = ref.get();
+			if (outdate == null) {
+				collected = true;
+			} else {
+				outdate.run();
+			}
+		}
+		if (collected) {
+			derived.removeCollected();
+		}
+	}
+
+	/**
+	 * transmit the item after a batch was closed, see
+	 * {@link Propagation#batch(Runnable)}
+	 */
+	void transmitDeferred() {
+		synchronized (this) {
+			transmitToListeners();
+		}
+		publish();
 	}
 
 	@Override
@@ -103,35 +507,337 @@ public class ObjHolderSimple<U> extends AObjHolder<U> implements RWObjHolder<U>,
 	private String name = null;
 
 	/**
-	 * transmit the item to the listeners. Should be called inside a synchronized
-	 * call.
+	 *
+	 * @return the metrics of this, or null when the instrumentation is disabled
+	 *         or this has no name. See {@link HolderMetricsRegistry}
+	 */
+	protected HolderMetrics metrics() {
+		if (!HolderMetricsRegistry.isEnabled()) {
+			return null;
+		}
+		String n = name;
+		return n == null ? null : HolderMetricsRegistry.get(n);
+	}
+
+	private void countChange() {
+		HolderMetrics metrics = metrics();
+		if (metrics != null) {
+			metrics.changed();
+		}
+	}
+
+	/**
+	 * count a value set that was the same as the value hold, when the
+	 * instrumentation is enabled.
+	 */
+	protected void suppressed() {
+		HolderMetrics metrics = metrics();
+		if (metrics != null) {
+			metrics.suppressed();
+		}
+	}
+
+	/**
+	 * depth of this in the graph of holders : 0 for a holder that follows no
+	 * other, otherwise greater than the depth of the holders it follows. Used by
+	 * the {@link Propagation} to update the holders in topological order.
+	 */
+	@Getter
+	private volatile int depth = 0;
+
+	/**
+	 * ensure this is deeper than a holder it follows, and that the holders
+	 * following this are still deeper than it.
+	 * <p>
+	 * The holders are deepened iteratively, so a long chain does not overflow the
+	 * stack. In a graph without cycle, the holders reached are at most as deep as
+	 * the number of holders reached, so a holder that needs to be deeper follows
+	 * a cycle, and is not deepened further.
+	 * </p>
+	 *
+	 * @param parentDepth
+	 *          the depth of the followed holder
+	 */
+	protected void deeperThan(int parentDepth) {
+		if (!deepen(this, parentDepth + 1)) {
+			return;
+		}
+		Set<ObjHolderSimple<?>> reached = Collections.newSetFromMap(new IdentityHashMap<>());
+		reached.add(this);
+		ArrayDeque<ObjHolderSimple<?>> todo = new ArrayDeque<>();
+		todo.add(this);
+		while (!todo.isEmpty()) {
+			ObjHolderSimple<?> parent = todo.poll();
+			int childDepth = parent.depth + 1;
+			if (childDepth > parentDepth + 1 + reached.size()) {
+				// cycle in the graph
+				continue;
+			}
+			for (ObjHolderSimple<?> child : parent.children()) {
+				if (deepen(child, childDepth)) {
+					reached.add(child);
+					todo.add(child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * set the depth of a holder to at least a value
+	 *
+	 * @return true if the depth of the holder was increased
+	 */
+	private static boolean deepen(ObjHolderSimple<?> holder, int minDepth) {
+		for (int d; (d = holder.depth) < minDepth;) {
+			if (DEPTH.compareAndSet(holder, d, minDepth)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<ObjHolderSimple> DEPTH = AtomicIntegerFieldUpdater
+	.newUpdater(ObjHolderSimple.class, "depth");
+
+	/**
+	 * executor to transmit the values on, or null to transmit them in the thread
+	 * that sets them.
+	 */
+	private SerialExecutor executor = null;
+
+	/**
+	 * make this transmit its values to its followers asynchronously.
+	 * <p>
+	 * The values are transmitted on the executor one after the other, in the
+	 * order they were set, so any executor can be used, including one that
+	 * creates a virtual thread per task. {@link #set(Object)} then only costs the
+	 * submission of the transmission, and {@link #get()} returns the new value
+	 * immediately, while the followers receive it later.<br />
+	 * The holders derived from this one are set from the executor's thread, so
+	 * giving an executor to the source holders of a graph is enough for the
+	 * whole graph to be updated on that executor.
+	 * </p>
+	 * <p>
+	 * This should be called before this is followed, since the values already
+	 * submitted to a previous executor are not reordered with the new ones.
+	 * </p>
+	 *
+	 * @param executor
+	 *          the executor to run the transmissions on, or null to transmit in
+	 *          the thread calling set.
+	 */
+	public synchronized void setExecutor(Executor executor) {
+		this.executor = executor == null ? null : new SerialExecutor(executor);
+	}
+
+	/**
+	 *
+	 * @return true when the values are transmitted on an executor.
+	 */
+	public boolean isAsync() {
+		return executor != null;
+	}
+
+	/**
+	 * queue a transmission to followers, to run by {@link #publish()} or on the
+	 * executor if there is one. Must be called inside a synchronized call, so
+	 * that the transmissions are queued in the order of the values.
+	 *
+	 * @param transmission
+	 *          the transmission of a value, that must not read the fields of this
+	 *          since they can be modified before it runs.
+	 */
+	protected void propagate(Runnable transmission) {
+		if (executor == null) {
+			synchronized (publications) {
+				publications.add(transmission);
+			}
+		} else {
+			executor.execute(transmission);
+		}
+	}
+
+	/**
+	 * queue the transmission of the item to the listeners. Must be called inside
+	 * a synchronized call.
+	 * <p>
+	 * The listeners are those present when the transmission is queued. Listeners
+	 * can follow or unfollow this while the item is transmitted, and the
+	 * listeners that have been garbage collected are removed afterwards.
+	 * </p>
 	 */
 	protected void transmitToListeners() {
-		for (Iterator<IRef<Consumer<U>>> it = followers.iterator(); it.hasNext();) {
-			Consumer<U> cons = it.next().get();
+		Runnable transmission = transmission();
+		if (transmission == null) {
+			return;
+		}
+		HolderMetrics metrics = metrics();
+		if (metrics != null) {
+			Runnable measured = transmission;
+			int listeners = followers();
+			transmission = () -> {
+				long start = System.nanoTime();
+				measured.run();
+				metrics.transmitted(listeners, System.nanoTime() - start);
+			};
+		}
+		if (executor == null) {
+			propagate(transmission);
+		} else {
+			Runnable submitted = transmission;
+			executor.execute(() -> Propagation.run(submitted));
+		}
+	}
+
+	/**
+	 * create a transmission of the current value to the current followers, to be
+	 * run later, once the monitor is released or on the executor.
+	 *
+	 * @return a new transmission, or null if there is no follower.
+	 */
+	protected Runnable transmission() {
+		IRef<Consumer<U>>[] snapshot = followers.dispatch();
+		if (snapshot.length == 0) {
+			return null;
+		}
+		U value = current();
+		return () -> transmit(snapshot, value);
+	}
+
+	private void transmit(IRef<Consumer<U>>[] snapshot, U value) {
+		boolean collected = false;
+		for (IRef<Consumer<U>> ref : snapshot) {
+			Consumer<U> cons = ref.get();
 			if (cons == null) {
-				it.remove();
+				collected = true;
 			} else {
-				cons.accept(item);
+				cons.accept(value);
 			}
 		}
+		if (collected) {
+			followers.removeCollected();
+		}
 	}
 
 	public int followers() {
 		return followers.size();
 	}
 
+	//
+	// dependency graph
+	//
+
+	/** the dependencies to the holders following this */
+	private final Dependencies dependents = new Dependencies();
+
+	/** the dependencies to the holders this follows */
+	private final Dependencies dependencies = new Dependencies();
+
+	/**
+	 * number of modifications of the value. Only incremented inside the monitor
+	 * of this, volatile so that it can be read without lock.
+	 */
+	private volatile long changeCount = 0;
+
+	private final long created = System.nanoTime();
+
+	/**
+	 *
+	 * @return the holders that follow this, and are still alive.
+	 */
+	public List<ObjHolderSimple<?>> children() {
+		return dependents.holders(true);
+	}
+
+	/**
+	 *
+	 * @return the holders this follows, and are still alive.
+	 */
+	public List<ObjHolderSimple<?>> parents() {
+		return dependencies.holders(false);
+	}
+
+	/**
+	 *
+	 * @return the number of modifications of the value of this since its
+	 *         creation.
+	 */
+	public long changeCount() {
+		return changeCount;
+	}
+
+	/**
+	 *
+	 * @return the average number of modifications per second since the creation
+	 *         of this.
+	 */
+	public double changeRate() {
+		double seconds = (System.nanoTime() - created) / 1e9;
+		return seconds <= 0 ? 0 : changeCount / seconds;
+	}
+
+	/**
+	 *
+	 * @return the number of items in the value, or -1 if this does not hold a
+	 *         collection.
+	 */
+	public int contentSize() {
+		return -1;
+	}
+
 	//
 	// consumer<Object>
 	//
 
-	private final transient LinkedList<Object> stored = new LinkedList<>();
+	/**
+	 * the references, held by a {@link Scope}, that keep this and its listeners
+	 * alive until they are unfollowed. They are only weakly referenced here, so
+	 * the listeners of a disposed scope can be collected.
+	 */
+	private final transient ArrayList<WeakReference<HardRef<Object[]>>> pins = new ArrayList<>(0);
+
+	/** size of the pins after the last removal of the disposed ones */
+	private transient int pruned = 0;
 
+	/**
+	 * keep a listener, and this, alive until the listener is unfollowed or the
+	 * scope is disposed.
+	 */
+	private void pin(Scope scope, Object cons) {
+		HardRef<Object[]> pin = scope.hold(new Object[] { cons, this });
+		synchronized (pins) {
+			if (pins.size() >= 2 * pruned + 8) {
+				pins.removeIf(w -> w.get() == null);
+				pruned = pins.size();
+			}
+			pins.add(new WeakReference<>(pin));
+		}
+	}
+
+	/** the listeners, and their sources, this keeps alive */
+	private final transient KeepAlive keepAlive = new KeepAlive();
+
+	/**
+	 * keep an object alive as long as this holder is. A pair {listener, source}
+	 * is released when the listener is unfollowed from the source.
+	 */
 	@Override
 	public void accept(Object t) {
-		synchronized (stored) {
-			stored.add(t);
+		if (t instanceof Object[] && ((Object[]) t).length == 2) {
+			Object[] pair = (Object[]) t;
+			keepAlive.add(pair[0], pair[1]);
+		} else {
+			keepAlive.add(t, null);
 		}
 	}
 
+	/**
+	 *
+	 * @return the number of objects this keeps alive for the holders it follows.
+	 */
+	public int keptAlive() {
+		return keepAlive.size();
+	}
+
 }
@@ -0,0 +1,330 @@
+package fr.lelouet.tools.holders.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * glitch-free propagation of a change in a graph of holders.
+ * <p>
+ * Each {@link ObjHolderSimple} has a depth, which is 0 for a source and greater
+ * than the depth of any holder it follows. When a holder transmits a new value,
+ * a propagation is opened in the thread. The holders that depend on several
+ * other holders (eg {@link fr.lelouet.tools.holders.interfaces.ObjHolder#combine
+ * combine} or {@link fr.lelouet.tools.holders.interfaces.ObjHolder#reduce
+ * reduce}) don't recompute their value when one of them changes, but
+ * {@link #schedule(Object, Runnable) schedule} that recomputation instead. Once
+ * the transmission is done, the scheduled recomputations are run by increasing
+ * depth, each one only once.
+ * </p>
+ * <p>
+ * As a result, in a diamond A -&gt; B, A -&gt; C, (B,C) -&gt; D, a change of A
+ * recomputes D once, after both B and C are updated.
+ * </p>
+ * <p>
+ * Several holders can also be modified as a single change with
+ * {@link #batch(Runnable)} : the holders set in the batch keep their new value,
+ * but only transmit it when the batch is committed. All the transmissions are
+ * then done in the same propagation, so a holder that depends on several
+ * modified holders is only recomputed once.
+ * </p>
+ * <p>
+ * Each thread reuses the same propagation, whose pending updates are stored in
+ * arrays : propagating a change does not allocate once the arrays are large
+ * enough.
+ * </p>
+ */
+public final class Propagation {
+
+	private static final ThreadLocal<Propagation> CURRENT = ThreadLocal.withInitial(Propagation::new);
+
+	private static final ThreadLocal<Batch> BATCH = new ThreadLocal<>();
+
+	/**
+	 * a batch of modifications, opened with {@link Propagation#openBatch()}. The
+	 * holders set while the batch is opened in its thread only transmit their
+	 * value when it is closed.
+	 */
+	public static final class Batch implements AutoCloseable {
+
+		/** number of times the batch was opened and not closed */
+		private int opened = 1;
+
+		private final List<ObjHolderSimple<?>> deferred = new ArrayList<>();
+
+		private final Set<ObjHolderSimple<?>> deferredSet = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		private Batch() {
+		}
+
+		/**
+		 * close this batch. If this was the outermost batch of the thread, the
+		 * holders set in the batch transmit their value.
+		 * <p>
+		 * A follower that throws an exception does not prevent the other holders
+		 * from transmitting their value : the first exception is thrown once all
+		 * the holders are transmitted, with the next ones suppressed in it.
+		 * </p>
+		 */
+		@Override
+		public void close() {
+			if (--opened > 0) {
+				return;
+			}
+			BATCH.remove();
+			List<Throwable> failures = new ArrayList<>(0);
+			try {
+				run(() -> {
+					for (ObjHolderSimple<?> holder : deferred) {
+						try {
+							holder.transmitDeferred();
+						} catch (RuntimeException | Error e) {
+							failures.add(e);
+						}
+					}
+				});
+			} catch (RuntimeException | Error e) {
+				failures.add(e);
+			}
+			if (!failures.isEmpty()) {
+				Throwable first = failures.get(0);
+				for (Throwable other : failures.subList(1, failures.size())) {
+					first.addSuppressed(other);
+				}
+				if (first instanceof Error) {
+					throw (Error) first;
+				}
+				throw (RuntimeException) first;
+			}
+		}
+
+	}
+
+	/** true while a change is propagated in the thread */
+	private boolean running = false;
+
+	// the pending updates are a binary heap over three arrays, ordered by depth
+	// then by order of scheduling.
+
+	private Runnable[] updates = new Runnable[16];
+
+	private int[] depths = new int[16];
+
+	private long[] orders = new long[16];
+
+	private int size = 0;
+
+	/** the updates in the pending heap, to only schedule them once */
+	private final Set<Runnable> scheduled = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	private long order = 0;
+
+	private Propagation() {
+	}
+
+	/**
+	 *
+	 * @return true if the current thread is propagating a change.
+	 */
+	public static boolean isPropagating() {
+		return CURRENT.get().running;
+	}
+
+	/**
+	 * run a transmission of value. If no propagation is opened in the thread, a
+	 * new one is opened and the updates scheduled by the transmission are run
+	 * before returning.
+	 *
+	 * @param transmission
+	 *          the transmission of a value to followers.
+	 */
+	public static void run(Runnable transmission) {
+		Propagation propagation = CURRENT.get();
+		if (propagation.running) {
+			transmission.run();
+			return;
+		}
+		propagation.running = true;
+		try {
+			transmission.run();
+			propagation.drain();
+		} finally {
+			propagation.clear();
+		}
+	}
+
+	/**
+	 * open a batch in the current thread, or reuse the one already opened. It
+	 * must be closed, typically with a try-with-resource.
+	 *
+	 * @return the batch, to close once the modifications are done.
+	 */
+	public static Batch openBatch() {
+		Batch batch = BATCH.get();
+		if (batch == null) {
+			batch = new Batch();
+			BATCH.set(batch);
+		} else {
+			batch.opened++;
+		}
+		return batch;
+	}
+
+	/**
+	 * run modifications of holders as a single change. The holders set by the
+	 * modifications hold their new value, but they only transmit it once all the
+	 * modifications are done. Then each holder that depends on them is updated
+	 * once.
+	 *
+	 * @param modifications
+	 *          the calls to set on holders.
+	 */
+	@SuppressWarnings("try")
+	public static void batch(Runnable modifications) {
+		try (Batch ignored = openBatch()) {
+			modifications.run();
+		}
+	}
+
+	/**
+	 * defer the transmission of a holder's value if a batch is opened in the
+	 * thread.
+	 *
+	 * @param holder
+	 *          the holder that received a new value
+	 * @return true if the transmission is deferred to the close of the batch,
+	 *         false if the holder must transmit its value now.
+	 */
+	static boolean defer(ObjHolderSimple<?> holder) {
+		Batch batch = BATCH.get();
+		if (batch == null) {
+			return false;
+		}
+		if (batch.deferredSet.add(holder)) {
+			batch.deferred.add(holder);
+		}
+		return true;
+	}
+
+	/**
+	 * schedule the update of a holder. If the current thread is propagating a
+	 * change, the update is run once the holders of lower depth are updated, and
+	 * only once even if it is scheduled several times. Otherwise it is run
+	 * immediately.
+	 *
+	 * @param target
+	 *          the holder that is updated, to get its depth.
+	 * @param update
+	 *          the update to run. The same instance must be used for a given
+	 *          holder.
+	 */
+	public static void schedule(Object target, Runnable update) {
+		Propagation propagation = CURRENT.get();
+		if (!propagation.running) {
+			update.run();
+		} else {
+			propagation.add(depth(target), update);
+		}
+	}
+
+	/**
+	 *
+	 * @param holder
+	 *          any object
+	 * @return the depth of the holder if it is an {@link ObjHolderSimple}, 0
+	 *         otherwise.
+	 */
+	public static int depth(Object holder) {
+		return holder instanceof ObjHolderSimple ? ((ObjHolderSimple<?>) holder).getDepth() : 0;
+	}
+
+	private void add(int depth, Runnable update) {
+		if (!scheduled.add(update)) {
+			return;
+		}
+		if (size == updates.length) {
+			updates = Arrays.copyOf(updates, size * 2);
+			depths = Arrays.copyOf(depths, size * 2);
+			orders = Arrays.copyOf(orders, size * 2);
+		}
+		long o = order++;
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!before(depth, o, parent)) {
+				break;
+			}
+			move(parent, i);
+			i = parent;
+		}
+		updates[i] = update;
+		depths[i] = depth;
+		orders[i] = o;
+	}
+
+	/**
+	 *
+	 * @return true if an update of given depth and order must be run before the
+	 *         update at given index of the heap.
+	 */
+	private boolean before(int depth, long order, int index) {
+		return depth != depths[index] ? depth < depths[index] : order < orders[index];
+	}
+
+	private void move(int from, int to) {
+		updates[to] = updates[from];
+		depths[to] = depths[from];
+		orders[to] = orders[from];
+	}
+
+	/** remove and return the first update of the heap */
+	private Runnable poll() {
+		Runnable first = updates[0];
+		int last = --size;
+		Runnable update = updates[last];
+		int depth = depths[last];
+		long o = orders[last];
+		updates[last] = null;
+		if (last == 0) {
+			return first;
+		}
+		int i = 0;
+		for (int child; (child = 2 * i + 1) < size;) {
+			if (child + 1 < size && before(depths[child + 1], orders[child + 1], child)) {
+				child++;
+			}
+			if (before(depth, o, child)) {
+				break;
+			}
+			move(child, i);
+			i = child;
+		}
+		updates[i] = update;
+		depths[i] = depth;
+		orders[i] = o;
+		return first;
+	}
+
+	private void drain() {
+		while (size > 0) {
+			Runnable next = poll();
+			scheduled.remove(next);
+			next.run();
+		}
+	}
+
+	/** end the propagation, also when an update threw an exception */
+	private void clear() {
+		running = false;
+		if (size > 0) {
+			Arrays.fill(updates, 0, size, null);
+			size = 0;
+			scheduled.clear();
+		}
+		order = 0;
+	}
+
+}
@@ -1,5 +1,6 @@
 package fr.lelouet.tools.holders.impl.collections;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -7,28 +8,53 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import fr.lelouet.tools.holders.impl.EqualityStrategy;
 import fr.lelouet.tools.holders.impl.ObjHolderSimple;
+import fr.lelouet.tools.holders.impl.Propagation;
+import fr.lelouet.tools.holders.impl.numbers.BoolHolderImpl;
+import fr.lelouet.tools.holders.impl.numbers.DoubleHolderImpl;
+import fr.lelouet.tools.holders.impl.numbers.IntHolderImpl;
+import fr.lelouet.tools.holders.impl.numbers.LongHolderImpl;
 import fr.lelouet.tools.holders.interfaces.ObjHolder;
+import fr.lelouet.tools.holders.interfaces.collections.CollectionDelta;
+import fr.lelouet.tools.holders.interfaces.collections.CollectionDelta.Change;
 import fr.lelouet.tools.holders.interfaces.collections.CollectionHolder;
 import fr.lelouet.tools.holders.interfaces.collections.ListHolder;
+import fr.lelouet.tools.holders.interfaces.collections.MapHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.BoolHolder;
+import fr.lelouet.tools.holders.interfaces.numbers.DoubleHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.IntHolder;
+import fr.lelouet.tools.holders.interfaces.numbers.LongHolder;
+import fr.lelouet.tools.lambdaref.references.IRef;
 import lombok.Getter;
 import lombok.experimental.Accessors;
 
 /**
+ * common implementation of list and set holders.
+ * <p>
+ * Besides being set a whole new collection, the holder can be modified item by
+ * item. Those modifications are applied to a modifiable copy of the
+ * collection, which is only copied again once it has been read (by
+ * {@link #get()} or a follower). The followers added with
+ * {@link #followChanges(Consumer, Consumer)} receive the modifications as
+ * {@link CollectionDelta}, without the collection being copied.
+ * </p>
  *
  * @param <U>
  *          The type of object hold inside
@@ -41,7 +67,7 @@ implements CollectionHolder<U, C> {
 	private static final Logger logger = LoggerFactory.getLogger(ACollectionHolder.class);
 
 	public ACollectionHolder(C item) {
-		super(item);
+		set(item);
 	}
 
 	public ACollectionHolder() {
@@ -50,31 +76,528 @@ implements CollectionHolder<U, C> {
 	/** change the collection hold with an empty one. */
 	public abstract void setEmpty();
 
+	//
+	// modification of the data
+	//
+
+	private final CopyOnWriteData<C> data = new CopyOnWriteData<>(this::modifiableCopy, this::unmodifiableView);
+
+	/**
+	 *
+	 * @param source
+	 *          a collection, or null
+	 * @return a new modifiable collection containing the items of source.
+	 */
+	protected abstract C modifiableCopy(C source);
+
+	/**
+	 *
+	 * @param data
+	 *          a collection
+	 * @return an unmodifiable view of that collection.
+	 */
+	protected abstract C unmodifiableView(C data);
+
+	/**
+	 *
+	 * @return true if the changes of this have an index.
+	 */
+	protected abstract boolean isOrdered();
+
+	@Override
+	protected C current() {
+		return data.current();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The collections are only compared by reference, since comparing their
+	 * items costs as much as transmitting them.
+	 * </p>
+	 */
+	@Override
+	protected EqualityStrategy<? super C> defaultEquality() {
+		return EqualityStrategy.identity();
+	}
+
+	@Override
+	public void set(C newitem) {
+		synchronized (this) {
+			C previous = data.content();
+			if (isDataAvailable() && getEquality().same(data.compared(), newitem)) {
+				suppressed();
+				return;
+			}
+			C view = newitem == null ? null : unmodifiableView(newitem);
+			data.set(newitem, view);
+			recordReplace(isDataAvailable() ? previous : null, view);
+			changed();
+		}
+		publish();
+	}
+
+	/**
+	 * modify the collection hold. The caller must be synchronized on this, and
+	 * {@link #recordAdd(int, Object) record} the changes made before calling
+	 * {@link #changed()}.
+	 *
+	 * @param <R>
+	 *          type of the result
+	 * @param modification
+	 *          the modification to apply to the modifiable collection.
+	 * @return the result of the modification
+	 */
+	protected <R> R edit(Function<C, R> modification) {
+		return data.edit(modification);
+	}
+
+	/**
+	 * query the collection hold, without creating a view of it.
+	 *
+	 * @param <R>
+	 *          type of the result
+	 * @param query
+	 *          the query over the collection, which must not keep it.
+	 * @param noData
+	 *          the result when this has no data.
+	 * @return the result of the query
+	 */
+	protected <R> R read(Function<C, R> query, R noData) {
+		return data.read(query, noData);
+	}
+
+	private final ChangeRecorder<Change<U>, CollectionDelta<U>> changes = new ChangeRecorder<>(CollectionDelta::new);
+
+	/**
+	 *
+	 * @return true if some followers of the changes are present.
+	 */
+	protected boolean hasChangeFollowers() {
+		return changes.hasFollowers();
+	}
+
+	/**
+	 * record the addition of an item, to transmit it to the followers of the
+	 * changes. Must be called while synchronized on this.
+	 *
+	 * @param index
+	 *          the index of the item, or -1 if this is not ordered.
+	 * @param added
+	 *          the item
+	 */
+	protected void recordAdd(int index, U added) {
+		changes.record(new Change<>(true, index, added));
+	}
+
+	/**
+	 * record the removal of an item, to transmit it to the followers of the
+	 * changes. Must be called while synchronized on this.
+	 *
+	 * @param index
+	 *          the index the item had, or -1 if this is not ordered.
+	 * @param removed
+	 *          the item
+	 */
+	protected void recordRemove(int index, U removed) {
+		changes.record(new Change<>(false, index, removed));
+	}
+
+	/**
+	 * record the replacement of the whole collection. By default the followers
+	 * of the changes will reset their state.
+	 *
+	 * @param previous
+	 *          the previous collection, or null if this had no data.
+	 * @param next
+	 *          the new collection
+	 */
+	protected void recordReplace(C previous, C next) {
+		changes.reset();
+	}
+
+	@Override
+	public ACollectionHolder<U, C> followChanges(Consumer<CollectionDelta<U>> listener,
+			Consumer<Object> holder) {
+		synchronized (this) {
+			// the follower must be added with the first delta, so that it does not
+			// receive a change before it.
+			attach(changes.followers, listener, holder);
+			changes.followerAdded();
+			if (isDataAvailable()) {
+				CollectionDelta<U> initial = CollectionDelta.reset(current());
+				propagate(() -> listener.accept(initial));
+			}
+		}
+		refresh();
+		publish();
+		return this;
+	}
+
+	@Override
+	public void unfollowChanges(Consumer<CollectionDelta<U>> listener) {
+		unregister(changes.followers, listener);
+	}
+
+	@Override
+	public int contentSize() {
+		return read(Collection::size, -1);
+	}
+
+	@Override
+	public int followers() {
+		return super.followers() + changes.followers.size();
+	}
+
+	@Override
+	protected Runnable transmission() {
+		Runnable whole = super.transmission();
+		IRef<Consumer<CollectionDelta<U>>>[] snapshot = changes.followers.snapshot();
+		CollectionDelta<U> delta = changes.take(() -> CollectionDelta.reset(current()));
+		if (delta == null) {
+			return whole;
+		}
+		return () -> {
+			changes.transmit(snapshot, delta);
+			if (whole != null) {
+				whole.run();
+			}
+		};
+	}
+
+	//
+	// derived holders
+	//
+
 	@Getter(lazy = true)
 	@Accessors(fluent = true)
-	private final IntHolder size = mapInt(Collection::size);
+	private final IntHolder size = makeSize();
+
+	protected IntHolder makeSize() {
+		IntHolderImpl ret = new IntHolderImpl();
+		int[] size = new int[1];
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				size[0] = delta.content().size();
+			} else {
+				for (Change<U> change : delta.changes()) {
+					size[0] += change.isAdd() ? 1 : -1;
+				}
+			}
+			ret.set(size[0]);
+		}, ret);
+		return ret;
+	}
 
 	@Getter(lazy = true)
 	@Accessors(fluent = true)
-	private final BoolHolder isEmpty = test(Collection::isEmpty);
+	private final BoolHolder isEmpty = makeIsEmpty();
+
+	protected BoolHolder makeIsEmpty() {
+		BoolHolderImpl ret = new BoolHolderImpl();
+		size().followInt(s -> ret.set(s == 0), ret);
+		return ret;
+	}
+
+	//
+	// aggregates
+	//
+
+	@Override
+	public IntHolder sumInt(ToIntFunction<? super U> mapper) {
+		IntHolderImpl ret = new IntHolderImpl();
+		int[] sum = new int[1];
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				sum[0] = 0;
+				for (U u : delta.content()) {
+					sum[0] += mapper.applyAsInt(u);
+				}
+			} else {
+				for (Change<U> change : delta.changes()) {
+					int value = mapper.applyAsInt(change.item());
+					sum[0] += change.isAdd() ? value : -value;
+				}
+			}
+			ret.set(sum[0]);
+		}, ret);
+		return ret;
+	}
+
+	@Override
+	public LongHolder sumLong(ToLongFunction<? super U> mapper) {
+		LongHolderImpl ret = new LongHolderImpl();
+		long[] sum = new long[1];
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				sum[0] = 0;
+				for (U u : delta.content()) {
+					sum[0] += mapper.applyAsLong(u);
+				}
+			} else {
+				for (Change<U> change : delta.changes()) {
+					long value = mapper.applyAsLong(change.item());
+					sum[0] += change.isAdd() ? value : -value;
+				}
+			}
+			ret.set(sum[0]);
+		}, ret);
+		return ret;
+	}
+
+	/**
+	 * sum of doubles, compensated (Kahan) so that adding and removing many
+	 * values does not accumulate rounding errors.
+	 */
+	private static class DoubleSum {
+
+		double sum = 0, compensation = 0;
+
+		void add(double value) {
+			double y = value - compensation;
+			double t = sum + y;
+			compensation = t - sum - y;
+			sum = t;
+		}
+
+		void clear() {
+			sum = 0;
+			compensation = 0;
+		}
+
+	}
 
+	@Override
+	public DoubleHolder sumDouble(ToDoubleFunction<? super U> mapper) {
+		DoubleHolderImpl ret = new DoubleHolderImpl();
+		DoubleSum sum = new DoubleSum();
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				sum.clear();
+				for (U u : delta.content()) {
+					sum.add(mapper.applyAsDouble(u));
+				}
+			} else {
+				for (Change<U> change : delta.changes()) {
+					double value = mapper.applyAsDouble(change.item());
+					sum.add(change.isAdd() ? value : -value);
+				}
+			}
+			ret.set(sum.sum);
+		}, ret);
+		return ret;
+	}
+
+	@Override
+	public IntHolder count(Predicate<? super U> predicate) {
+		IntHolderImpl ret = new IntHolderImpl();
+		int[] count = new int[1];
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				count[0] = 0;
+				for (U u : delta.content()) {
+					if (predicate.test(u)) {
+						count[0]++;
+					}
+				}
+			} else {
+				for (Change<U> change : delta.changes()) {
+					if (predicate.test(change.item())) {
+						count[0] += change.isAdd() ? 1 : -1;
+					}
+				}
+			}
+			ret.set(count[0]);
+		}, ret);
+		return ret;
+	}
+
+	@Override
+	public DoubleHolder average(ToDoubleFunction<? super U> mapper) {
+		DoubleHolderImpl ret = new DoubleHolderImpl();
+		DoubleSum sum = new DoubleSum();
+		int[] count = new int[1];
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				sum.clear();
+				count[0] = 0;
+				for (U u : delta.content()) {
+					sum.add(mapper.applyAsDouble(u));
+					count[0]++;
+				}
+			} else {
+				for (Change<U> change : delta.changes()) {
+					double value = mapper.applyAsDouble(change.item());
+					sum.add(change.isAdd() ? value : -value);
+					count[0] += change.isAdd() ? 1 : -1;
+				}
+			}
+			ret.set(count[0] == 0 ? Double.NaN : sum.sum / count[0]);
+		}, ret);
+		return ret;
+	}
+
+	@Override
+	public ObjHolder<U> min(Comparator<? super U> comparator) {
+		return extremum(comparator, true);
+	}
+
+	@Override
+	public ObjHolder<U> max(Comparator<? super U> comparator) {
+		return extremum(comparator, false);
+	}
+
+	/**
+	 * keep the items in a {@link SortedIndex} and hold its first or last item.
+	 */
+	protected ObjHolder<U> extremum(Comparator<? super U> comparator, boolean lowest) {
+		ObjHolderSimple<U> ret = new ObjHolderSimple<>();
+		SortedIndex<U> index = new SortedIndex<>(comparator);
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				index.clear();
+				for (U u : delta.content()) {
+					index.insert(u);
+				}
+			} else {
+				for (Change<U> change : delta.changes()) {
+					if (change.isAdd()) {
+						index.insert(change.item());
+					} else if (index.remove(change.item()) < 0) {
+						throw new IllegalStateException("removed item " + change.item() + " was not present");
+					}
+				}
+			}
+			ret.set(index.size() == 0 ? null : index.get(lowest ? 0 : index.size() - 1));
+		}, ret);
+		return ret;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The mapper is only applied to the items added. When this is not ordered,
+	 * the mapped items are added at the end of the returned list.
+	 * </p>
+	 */
 	@Override
 	public <K> ListHolderImpl<K> mapItems(Function<U, K> mapper) {
 		ListHolderImpl<K> ret = new ListHolderImpl<>();
-		follow((o) -> {
-			List<K> mappedList = o.stream().map(mapper).collect(Collectors.toList());
-			ret.set(mappedList);
+		boolean ordered = isOrdered();
+		// when not ordered, the mapping of each item, to remove it
+		Map<U, K> mapped = new HashMap<>();
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				mapped.clear();
+				List<K> mappedList = new ArrayList<>(delta.content().size());
+				for (U u : delta.content()) {
+					K k = mapper.apply(u);
+					mappedList.add(k);
+					if (!ordered) {
+						mapped.put(u, k);
+					}
+				}
+				ret.set(mappedList);
+				return;
+			}
+			Propagation.batch(() -> {
+				for (Change<U> change : delta.changes()) {
+					if (ordered) {
+						if (change.isAdd()) {
+							ret.add(change.index(), mapper.apply(change.item()));
+						} else {
+							ret.remove(change.index());
+						}
+					} else if (change.isAdd()) {
+						K k = mapper.apply(change.item());
+						mapped.put(change.item(), k);
+						ret.add(k);
+					} else {
+						ret.remove(mapped.remove(change.item()));
+					}
+				}
+			});
 		}, ret);
 		return ret;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The groups are maintained from the changes of this by a {@link Grouping}.
+	 * Only the groups that receive or lose an item are replaced by a new list, the
+	 * other groups keep their list. The lists are immutable and share most of
+	 * their structure with the previous list of their group, so a change costs
+	 * O(log²(n)) whatever the size of its group.
+	 * </p>
+	 */
+	@Override
+	public <K> MapHolder<K, List<U>> grouping(Function<U, K> indexer) {
+		MapHolderImpl<K, List<U>> ret = new MapHolderImpl<>();
+		Grouping<U, K> grouping = new Grouping<>(indexer, isOrdered());
+		followChanges(delta -> {
+			Set<K> modified = new LinkedHashSet<>();
+			if (grouping.apply(delta, modified)) {
+				Map<K, List<U>> groups = new HashMap<>();
+				for (K key : grouping.keys()) {
+					groups.put(key, grouping.items(key));
+				}
+				ret.set(groups);
+				return;
+			}
+			Propagation.batch(() -> {
+				for (K key : modified) {
+					List<U> items = grouping.items(key);
+					if (items.isEmpty()) {
+						ret.remove(key);
+					} else {
+						ret.put(key, items);
+					}
+				}
+			});
+		}, ret);
+		return ret;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The items are kept in a {@link SortedIndex}, so each item added or removed
+	 * only costs O(log(n)) comparisons to find its place in the returned list,
+	 * instead of sorting again the whole collection. The items equal for the
+	 * comparator are in the order of the source on a reset, and an item added
+	 * later is placed after its equals. An item modified in place, then replaced
+	 * in this, is removed from its former place and added at its new place.
+	 * </p>
+	 */
 	@Override
 	public ListHolder<U> sorted(Comparator<U> comparator) {
 		ListHolderImpl<U> ret = new ListHolderImpl<>();
-		follow((o) -> {
-			List<U> sortedList = new ArrayList<>(o);
-			Collections.sort(sortedList, comparator);
-			ret.set(sortedList);
+		SortedIndex<U> index = new SortedIndex<>(comparator);
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				List<U> sortedList = new ArrayList<>(delta.content());
+				Collections.sort(sortedList, comparator);
+				index.clear();
+				for (U u : sortedList) {
+					index.insert(u);
+				}
+				ret.set(sortedList);
+				return;
+			}
+			Propagation.batch(() -> {
+				for (Change<U> change : delta.changes()) {
+					if (change.isAdd()) {
+						ret.add(index.insert(change.item()), change.item());
+					} else {
+						int rank = index.remove(change.item());
+						if (rank < 0) {
+							throw new IllegalStateException("removed item " + change.item() + " was not present");
+						}
+						ret.remove(rank);
+					}
+				}
+			});
 		}, ret);
 		return ret;
 	}
@@ -105,75 +628,234 @@ implements CollectionHolder<U, C> {
 	}
 
 	/**
-	 * Keep data about a converted element of a obsevableCollection that is
-	 * flattened.<br />
-	 * More precisely, keeps the converted collection, the last received data, the
-	 * internal listeners added.<br />
-	 * Provides {@link #received() a method} to test if the data has been received
-	 * yet, and {@link #last() another one} to get that data. There are two
-	 * methods because "null" may be a possible data. <br />
-	 * Also provides {@link #addListener() a method} to add a runnable as a
-	 * listener whenever data is received. This method should be called out of
-	 * sync block if the runnable uses a sync block (the listener can be called
-	 * inside the add). {@link #removeListener() Another method} removes that
-	 * listeners, for when the converted element is removed from the flattened
-	 * collection.
+	 * maintains the list flattened from this.
+	 * <p>
+	 * Each distinct item of this (by identity, because if the items are
+	 * collections their hash changes) is converted once into a segment, that
+	 * follows the changes of the converted collection. The segments are kept in
+	 * the order they were created, with their sizes in a
+	 * {@link WeightedSequence}, so the position of a segment in the flattened
+	 * list is found in O(log(n)) and a change in a converted collection only
+	 * modifies its own segment of the list.
+	 * </p>
+	 * <p>
+	 * While some converted collections have not received data, the flattened
+	 * list is not modified. It is built again once they all have.
+	 * </p>
 	 *
 	 * @param <V>
 	 *          converted type
 	 * @param <C2>
 	 *          converted collection type.
 	 */
-	private class ObsFlattenData<V, C2 extends Collection<V>> {
+	private class Flattener<V, C2 extends Collection<V>> {
 
-		private CollectionHolder<V, C2> observed = null;
+		private class Segment {
 
-		private C2 lastReceived = null;
+			/** order of creation, to find the position of the segment */
+			final long serial;
 
-		private boolean received = false;
+			final CollectionHolder<V, C2> observed;
 
-		private Consumer<C2> listener;
+			final Consumer<CollectionDelta<V>> listener = this::onDelta;
 
-		private Runnable updater;
+			/** number of occurrences of the item in this */
+			int occurrences = 1;
 
-		private String debug = null;
+			/** the items of the converted collection, null until received */
+			List<V> items = null;
 
-		public ObsFlattenData(CollectionHolder<V, C2> observed, Runnable updater, String debug) {
-			this.observed = observed;
-			this.updater = updater;
-			this.debug = debug;
-			listener = this::onDataReceived;
+			boolean removed = false;
+
+			Segment(long serial, CollectionHolder<V, C2> observed) {
+				this.serial = serial;
+				this.observed = observed;
+			}
+
+			void onDelta(CollectionDelta<V> delta) {
+				synchronized (Flattener.this) {
+					if (removed || items == null && !delta.isReset()) {
+						return;
+					}
+					int rank = positions.lowerBound(this);
+					if (delta.isReset()) {
+						List<V> next = new ArrayList<>(delta.content());
+						if (items == null) {
+							pending--;
+						}
+						items = next;
+						int previousSize = sizes.set(rank, next.size());
+						int offset = (int) sizes.prefix(rank);
+						if (upToDate()) {
+							ret.replace(offset, offset + previousSize, next);
+						}
+					} else {
+						int offset = (int) sizes.prefix(rank);
+						Propagation.batch(() -> {
+							for (Change<V> change : delta.changes()) {
+								int index = change.index();
+								if (change.isAdd()) {
+									if (index < 0) {
+										index = items.size();
+									}
+									items.add(index, change.item());
+									if (upToDate()) {
+										ret.add(offset + index, change.item());
+									}
+								} else {
+									if (index < 0) {
+										index = items.indexOf(change.item());
+									}
+									items.remove(index);
+									if (upToDate()) {
+										ret.remove(offset + index);
+									}
+								}
+							}
+						});
+						sizes.set(rank, items.size());
+					}
+					flush();
+				}
+			}
 
 		}
 
-		protected void onDataReceived(C2 newCol) {
-			received = true;
-			if (debug != null) {
-				logger.debug(debug + " flatten partial received new collection " + newCol + " had "
-						+ (lastReceived == null ? "null" : lastReceived));
+		final ListHolderImpl<V> ret = new ListHolderImpl<>();
+
+		final Function<U, CollectionHolder<V, C2>> mapper;
+
+		final String debug;
+
+		final IdentityHashMap<U, Segment> segments = new IdentityHashMap<>();
+
+		final SortedIndex<Segment> positions = new SortedIndex<>(Comparator.comparingLong(s -> s.serial));
+
+		/** the number of items of each segment, in the order of the segments */
+		final WeightedSequence sizes = new WeightedSequence();
+
+		long nextSerial = 0;
+
+		/** number of segments that did not receive their collection yet */
+		int pending = 0;
+
+		/** true when ret does not contain the items of the segments */
+		boolean outdated = true;
+
+		Flattener(Function<U, CollectionHolder<V, C2>> mapper, String debug) {
+			this.mapper = mapper;
+			this.debug = debug;
+		}
+
+		/**
+		 *
+		 * @return true if ret can be modified to follow a modification of the
+		 *         segments. Otherwise it is marked outdated.
+		 */
+		boolean upToDate() {
+			if (pending > 0) {
+				outdated = true;
 			}
-			lastReceived = newCol;
-			updater.run();
+			return !outdated;
 		}
 
 		/**
-		 * must be called AFTER the storing, so out of constructor otherwise may be
-		 * called within a sync and thus create deadlock
+		 * build again ret if it is outdated and all the segments have received
+		 * their collection
 		 */
-		public void addListener() {
-			observed.follow(listener);
+		void flush() {
+			if (pending > 0) {
+				if (debug != null) {
+					logger.debug(debug + " flatten missing " + pending + " collections reception");
+				}
+				return;
+			}
+			if (!outdated) {
+				return;
+			}
+			List<V> newlist = new ArrayList<>((int) sizes.total());
+			for (int i = 0; i < positions.size(); i++) {
+				newlist.addAll(positions.get(i).items);
+			}
+			if (debug != null) {
+				logger.debug(debug + " flatten got all collections, propagating data " + newlist);
+			}
+			outdated = false;
+			ret.set(newlist);
 		}
 
-		public void removeListener() {
-			observed.unfollow(listener);
+		void onSource(CollectionDelta<U> delta) {
+			List<Segment> added = new ArrayList<>();
+			synchronized (this) {
+				Propagation.batch(() -> {
+					if (delta.isReset()) {
+						IdentityHashMap<U, int[]> occurrences = new IdentityHashMap<>();
+						for (U u : delta.content()) {
+							occurrences.computeIfAbsent(u, o -> new int[1])[0]++;
+						}
+						for (Iterator<Map.Entry<U, Segment>> it = segments.entrySet().iterator(); it.hasNext();) {
+							Map.Entry<U, Segment> e = it.next();
+							int[] count = occurrences.get(e.getKey());
+							if (count == null) {
+								it.remove();
+								removeSegment(e.getValue());
+							} else {
+								e.getValue().occurrences = count[0];
+							}
+						}
+						for (U u : delta.content()) {
+							if (!segments.containsKey(u)) {
+								added.add(addSegment(u, occurrences.get(u)[0]));
+							}
+						}
+					} else {
+						for (Change<U> change : delta.changes()) {
+							Segment segment = segments.get(change.item());
+							if (change.isAdd()) {
+								if (segment == null) {
+									added.add(addSegment(change.item(), 1));
+								} else {
+									segment.occurrences++;
+								}
+							} else if (segment != null && --segment.occurrences == 0) {
+								segments.remove(change.item());
+								removeSegment(segment);
+							}
+						}
+					}
+				});
+			}
+			// out of the sync, as the collections can transmit their data from
+			// another thread.
+			for (Segment segment : added) {
+				segment.observed.followChanges(segment.listener, ret);
+			}
+			synchronized (this) {
+				flush();
+			}
 		}
 
-		public boolean received() {
-			return received;
+		Segment addSegment(U item, int occurrences) {
+			Segment segment = new Segment(nextSerial++, mapper.apply(item));
+			segment.occurrences = occurrences;
+			segments.put(item, segment);
+			positions.insert(segment);
+			sizes.add(0);
+			pending++;
+			return segment;
 		}
 
-		public C2 last() {
-			return lastReceived;
+		void removeSegment(Segment segment) {
+			segment.removed = true;
+			segment.observed.unfollowChanges(segment.listener);
+			int rank = positions.remove(segment);
+			int size = sizes.remove(rank);
+			if (segment.items == null) {
+				pending--;
+			} else if (size > 0 && upToDate()) {
+				int offset = (int) sizes.prefix(rank);
+				ret.replace(offset, offset + size, Collections.emptyList());
+			}
 		}
 
 	}
@@ -185,193 +867,487 @@ implements CollectionHolder<U, C> {
 
 	public <V, C2 extends Collection<V>> ListHolder<V> flatten(Function<U, CollectionHolder<V, C2>> mapper,
 			String debuger) {
-		ListHolderImpl<V> ret = new ListHolderImpl<>();
+		Flattener<V, C2> flattener = new Flattener<>(mapper, debuger);
+		followChanges(flattener::onSource, flattener.ret);
+		return flattener.ret;
+	}
+
+	/**
+	 * maintains the list unpacked from this.
+	 * <p>
+	 * Each item of this has a slot, that follows the holder the item is mapped
+	 * to. Only the slots of the items added or removed are created or
+	 * unfollowed, and a value received only replaces the item of its slot in the
+	 * unpacked list. The slots are the nodes of a {@link WeightedSequence}, in
+	 * the order of the items, with a weight of 1 once they received their value :
+	 * the position of a slot is found in O(log(n)) from the slot, and its
+	 * position in the unpacked list is the number of received slots before it.
+	 * </p>
+	 * <p>
+	 * While some holders have not received data, the unpacked list is not
+	 * modified. It is built again once they all have.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          the type of the items unpacked
+	 */
+	private class Unpacker<K> {
+
+		private class Slot extends WeightedSequence.Node {
+
+			final U item;
+
+			final ObjHolder<K> observed;
+
+			final Consumer<K> listener = this::onValue;
+
+			K value = null;
+
+			boolean removed = false;
+
+			Slot(U item, ObjHolder<K> observed) {
+				super(0);
+				this.item = item;
+				this.observed = observed;
+			}
+
+			boolean received() {
+				return weight() == 1;
+			}
+
+			void onValue(K k) {
+				synchronized (Unpacker.this) {
+					if (removed) {
+						return;
+					}
+					value = k;
+					int index = slots.index(this);
+					if (received()) {
+						if (upToDate()) {
+							ret.replace((int) slots.prefix(index), k);
+						}
+					} else {
+						pending--;
+						slots.set(index, 1);
+						if (upToDate()) {
+							ret.add((int) slots.prefix(index), k);
+						}
+					}
+					flush();
+				}
+			}
+
+		}
+
+		final ListHolderImpl<K> ret = new ListHolderImpl<>();
+
+		final Function<U, ObjHolder<K>> mapper;
+
+		/**
+		 * the slots, in the order of the items in the unpacked list, with a weight
+		 * of 1 if they received their value, 0 otherwise
+		 */
+		final WeightedSequence slots = new WeightedSequence();
+
+		/** the slot of each item, when this is not ordered */
+		final Map<U, Slot> unordered = new HashMap<>();
+
+		/** number of slots that did not receive their value yet */
+		int pending = 0;
+
+		/** true when ret does not contain the values of the slots */
+		boolean outdated = true;
+
+		Unpacker(Function<U, ObjHolder<K>> mapper) {
+			this.mapper = mapper;
+		}
 
 		/**
-		 * for each item of the collection, the known corresponding obsmapholder we
-		 * are listening <br />
-		 * We use identity hashmap because if the keys are collections, that can
-		 * lead to issues.
+		 *
+		 * @return true if ret can be modified to follow a modification of the
+		 *         slots. Otherwise it is marked outdated.
 		 */
-		IdentityHashMap<U, ObsFlattenData<V, C2>> mappedvalues = new IdentityHashMap<>();
-		ArrayList<U> order = new ArrayList<>();
+		boolean upToDate() {
+			if (pending > 0) {
+				outdated = true;
+			}
+			return !outdated;
+		}
 
 		/**
-		 * try to merge the known collections, if they are all we need .Synced over
-		 * mappedValues, so not to be called within another sync
+		 * build again ret if it is outdated and all the slots have received their
+		 * value
 		 */
-		Runnable tryUpdate = () -> {
-			synchronized (mappedvalues) {
-				if (mappedvalues.values().stream().filter(fl -> !fl.received()).findAny().isEmpty()) {
-					// all the mapped values hold data
-					List<V> newlist = order.stream().flatMap(key -> mappedvalues.get(key).last().stream())
-							.collect(Collectors.toList());
-					if (debuger != null) {
-						logger.debug(debuger + " flatten got all collections, propagating data " + newlist);
+		@SuppressWarnings("unchecked")
+		void flush() {
+			if (pending > 0 || !outdated) {
+				return;
+			}
+			List<K> newlist = new ArrayList<>(slots.size());
+			slots.forEach(slot -> newlist.add(((Slot) slot).value));
+			outdated = false;
+			ret.set(newlist);
+		}
+
+		void onSource(CollectionDelta<U> delta) {
+			List<Slot> added = new ArrayList<>();
+			synchronized (this) {
+				Propagation.batch(() -> {
+					if (delta.isReset()) {
+						reset(delta.content(), added);
+						return;
 					}
-					ret.set(newlist);
-				} else {
-					// some data did not produce a collection yet.
-					if (debuger != null) {
-						logger.debug(debuger + " flatten missing collections reception");
+					for (Change<U> change : delta.changes()) {
+						int index = change.index();
+						if (change.isAdd()) {
+							Slot slot = new Slot(change.item(), mapper.apply(change.item()));
+							if (index < 0) {
+								index = slots.size();
+								unordered.put(change.item(), slot);
+							}
+							slots.insert(index, slot);
+							pending++;
+							added.add(slot);
+						} else {
+							if (index < 0) {
+								Slot slot = unordered.remove(change.item());
+								if (slot == null) {
+									continue;
+								}
+								index = slots.index(slot);
+							}
+							remove(index);
+						}
 					}
-				}
+				});
 			}
-		};
+			// out of the sync, as the holders can transmit their data from another
+			// thread.
+			for (Slot slot : added) {
+				slot.observed.follow(slot.listener, ret);
+			}
+			synchronized (this) {
+				flush();
+			}
+		}
 
-		follow(c -> {
-			Collection<U> toRemove, toAdd;
-			synchronized (mappedvalues) {
-				if (mappedvalues.keySet().equals(c)) {
-					return;
+		@SuppressWarnings("unchecked")
+		void remove(int index) {
+			Slot slot = (Slot) slots.node(index);
+			slot.removed = true;
+			slot.observed.unfollow(slot.listener);
+			slots.remove(index);
+			if (!slot.received()) {
+				pending--;
+			} else if (upToDate()) {
+				ret.remove((int) slots.prefix(index));
+			}
+		}
+
+		/**
+		 * set the slots for a new content. The slots of the items still present are
+		 * kept.
+		 */
+		@SuppressWarnings("unchecked")
+		void reset(Collection<U> content, List<Slot> added) {
+			Map<U, ArrayDeque<Slot>> previous = new HashMap<>();
+			slots.forEach(node -> {
+				Slot slot = (Slot) node;
+				previous.computeIfAbsent(slot.item, u -> new ArrayDeque<>()).add(slot);
+			});
+			slots.clear();
+			unordered.clear();
+			pending = 0;
+			for (U u : content) {
+				ArrayDeque<Slot> kept = previous.get(u);
+				Slot slot = kept == null ? null : kept.poll();
+				if (slot == null) {
+					slot = new Slot(u, mapper.apply(u));
+					added.add(slot);
 				}
-				toRemove = new ArrayList<>(mappedvalues.keySet());
-				toRemove.removeAll(c);
-				toAdd = new ArrayList<>(c);
-				toAdd.removeAll(mappedvalues.keySet());
-			}
-			for (U u : toRemove) {
-				synchronized (mappedvalues) {
-					ObsFlattenData<V, C2> holder = mappedvalues.remove(u);
-					holder.removeListener();
-					for (Iterator<U> it = order.iterator(); it.hasNext();) {
-						if (it.next() == u) {
-							it.remove();
-						}
-					}
+				if (!isOrdered()) {
+					unordered.put(u, slot);
+				}
+				slots.insert(slots.size(), slot);
+				if (!slot.received()) {
+					pending++;
 				}
 			}
-			for (U u : toAdd) {
-				CollectionHolder<V, C2> converted = mapper.apply(u);
-				ObsFlattenData<V, C2> holder = new ObsFlattenData<>(converted, tryUpdate, debuger);
-				synchronized (mappedvalues) {
-					mappedvalues.put(u, holder);
-					for (Iterator<U> it = order.iterator(); it.hasNext();) {
-						if (it.next() == u) {
-							it.remove();
-						}
-					}
-					order.add(u);
+			for (ArrayDeque<Slot> removed : previous.values()) {
+				for (Slot slot : removed) {
+					slot.removed = true;
+					slot.observed.unfollow(slot.listener);
 				}
-				holder.addListener();
 			}
-			tryUpdate.run();
-		}, ret);
-		return ret;
+			outdated = true;
+		}
+
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only the items added to this are mapped and their holder followed, and only
+	 * the holders of the items removed are unfollowed. The unpacked list is
+	 * modified item by item.
+	 * </p>
+	 */
 	@Override
 	public <K> CollectionHolder<K, ?> unpackItems(Function<U, ObjHolder<K>> mapper) {
-		ListHolderImpl<K> ret = new ListHolderImpl<>();
-		Object lock = new Object();
-		List<ObjHolder<K>> holders = new ArrayList<>();
-		List<Consumer<K>> followers = new ArrayList<>();
-		List<Boolean> receipt = new ArrayList<>();
-		List<K> received = new ArrayList<>();
-		Runnable update = () -> {
-			synchronized (lock) {
-				for (boolean b : receipt) {
-					if (!b) {
+		Unpacker<K> unpacker = new Unpacker<>(mapper);
+		followChanges(unpacker::onSource, unpacker.ret);
+		return unpacker.ret;
+	}
+
+	/**
+	 * receiver of the modifications of a collection derived from the items of
+	 * this.
+	 *
+	 * @param <U>
+	 *          the type of the items
+	 */
+	protected static interface ItemSink<U> {
+
+		/** replace all the items */
+		void set(List<U> items);
+
+		/** insert an item at a position */
+		void insert(int index, U item);
+
+		/** remove the item at a position */
+		void remove(int index, U item);
+
+	}
+
+	/**
+	 * maintains the items of this accepted by an observable predicate.
+	 * <p>
+	 * Each distinct item of this has an entry, that follows the predicate of the
+	 * item. The entries are kept in the order they were created, with 1 in a
+	 * {@link WeightedSequence} for the accepted ones, so a predicate flipping
+	 * only inserts or removes its item, at a position found in O(log(n)).
+	 * </p>
+	 * <p>
+	 * While some predicates have not received data, the filtered items are not
+	 * modified. They are set again once they all have.
+	 * </p>
+	 */
+	private class WhenFilter {
+
+		private class Entry {
+
+			/** order of creation, to find the position of the entry */
+			final long serial;
+
+			final U item;
+
+			final BoolHolder predicate;
+
+			final Consumer<Boolean> listener = this::onPredicate;
+
+			/** number of occurrences of the item in this */
+			int occurrences = 1;
+
+			boolean received = false;
+
+			boolean accepted = false;
+
+			boolean removed = false;
+
+			Entry(long serial, U item, BoolHolder predicate) {
+				this.serial = serial;
+				this.item = item;
+				this.predicate = predicate;
+			}
+
+			void onPredicate(Boolean b) {
+				synchronized (WhenFilter.this) {
+					if (removed) {
+						return;
+					}
+					boolean accept = b != null && b;
+					if (!received) {
+						received = true;
+						pending--;
+					} else if (accept == accepted) {
 						return;
 					}
+					if (accept != accepted) {
+						accepted = accept;
+						int rank = positions.lowerBound(this);
+						accepteds.set(rank, accept ? 1 : 0);
+						if (upToDate()) {
+							int index = (int) accepteds.prefix(rank);
+							if (accept) {
+								target.insert(index, item);
+							} else {
+								target.remove(index, item);
+							}
+						}
+					}
+					flush();
 				}
-				ret.set(new ArrayList<>(received));
 			}
-		};
-		follow(l -> {
-			ObjHolder<K>[] mapped = l.stream().map(mapper).toArray(ObjHolder[]::new);
-			synchronized (lock) {
-				for (int i = 0; i < holders.size(); i++) {
-					holders.get(i).unfollow(followers.get(i));
+
+		}
+
+		final Function<? super U, BoolHolder> filterer;
+
+		final ItemSink<U> target;
+
+		final Consumer<Object> holder;
+
+		final Map<U, Entry> entries = new HashMap<>();
+
+		final SortedIndex<Entry> positions = new SortedIndex<>(Comparator.comparingLong(e -> e.serial));
+
+		/** for each entry, 1 if its item is accepted, 0 otherwise */
+		final WeightedSequence accepteds = new WeightedSequence();
+
+		long nextSerial = 0;
+
+		/** number of entries that did not receive their predicate yet */
+		int pending = 0;
+
+		/** true when the target does not contain the accepted items */
+		boolean outdated = true;
+
+		WhenFilter(Function<? super U, BoolHolder> filterer, ItemSink<U> target, Consumer<Object> holder) {
+			this.filterer = filterer;
+			this.target = target;
+			this.holder = holder;
+		}
+
+		/**
+		 *
+		 * @return true if the target can be modified to follow a modification of
+		 *         the entries. Otherwise it is marked outdated.
+		 */
+		boolean upToDate() {
+			if (pending > 0) {
+				outdated = true;
+			}
+			return !outdated;
+		}
+
+		/**
+		 * set again the target if it is outdated and all the entries have received
+		 * their predicate
+		 */
+		void flush() {
+			if (pending > 0 || !outdated) {
+				return;
+			}
+			List<U> accepted = new ArrayList<>((int) accepteds.total());
+			for (int i = 0; i < positions.size(); i++) {
+				Entry entry = positions.get(i);
+				if (entry.accepted) {
+					accepted.add(entry.item);
 				}
-				holders.clear();
-				receipt.clear();
-				followers.clear();
-				received.clear();
-				for (int i = 0; i < mapped.length; i++) {
-					ObjHolder<K> h = mapped[i];
-					receipt.add(false);
-					holders.add(h);
-					received.add(null);
-					int fj = i;
-					Consumer<K> c = k -> {
-						synchronized (lock) {
-							receipt.set(fj, true);
-							received.set(fj, k);
+			}
+			outdated = false;
+			target.set(accepted);
+		}
+
+		void onSource(CollectionDelta<U> delta) {
+			List<Entry> added = new ArrayList<>();
+			synchronized (this) {
+				Propagation.batch(() -> {
+					if (delta.isReset()) {
+						Map<U, int[]> occurrences = new HashMap<>();
+						for (U u : delta.content()) {
+							occurrences.computeIfAbsent(u, o -> new int[1])[0]++;
 						}
-						update.run();
-					};
-					followers.add(c);
-				}
+						for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+							Entry entry = it.next();
+							int[] count = occurrences.get(entry.item);
+							if (count == null) {
+								it.remove();
+								removeEntry(entry);
+							} else {
+								entry.occurrences = count[0];
+							}
+						}
+						for (U u : delta.content()) {
+							if (!entries.containsKey(u)) {
+								added.add(addEntry(u, occurrences.get(u)[0]));
+							}
+						}
+					} else {
+						for (Change<U> change : delta.changes()) {
+							Entry entry = entries.get(change.item());
+							if (change.isAdd()) {
+								if (entry == null) {
+									added.add(addEntry(change.item(), 1));
+								} else {
+									entry.occurrences++;
+								}
+							} else if (entry != null && --entry.occurrences == 0) {
+								entries.remove(change.item());
+								removeEntry(entry);
+							}
+						}
+					}
+				});
 			}
-			for (int i = 0; i < mapped.length; i++) {
-				holders.get(i).follow(followers.get(i), ret);
+			// out of the sync, as the predicates can transmit their data from another
+			// thread.
+			for (Entry entry : added) {
+				entry.predicate.follow(entry.listener, holder);
 			}
-		});
-		return ret;
+			synchronized (this) {
+				flush();
+			}
+		}
+
+		Entry addEntry(U item, int occurrences) {
+			Entry entry = new Entry(nextSerial++, item, filterer.apply(item));
+			entry.occurrences = occurrences;
+			entries.put(item, entry);
+			positions.insert(entry);
+			accepteds.add(0);
+			pending++;
+			return entry;
+		}
+
+		void removeEntry(Entry entry) {
+			entry.removed = true;
+			entry.predicate.unfollow(entry.listener);
+			int rank = positions.remove(entry);
+			accepteds.remove(rank);
+			if (!entry.received) {
+				pending--;
+			} else if (entry.accepted && upToDate()) {
+				target.remove((int) accepteds.prefix(rank), entry.item);
+			}
+		}
+
 	}
 
 	/**
-	 * filter and applies the values
+	 * filter the items of this with an observable predicate.
+	 * <p>
+	 * Only the predicates of the items added are created and followed, and only
+	 * those of the items removed are unfollowed. When a predicate changes, only
+	 * its item is inserted in or removed from the target.
+	 * </p>
 	 *
-	 * @param onNewValue
-	 *          handler of the values that are accepted
+	 * @param target
+	 *          receives the modifications of the accepted items
 	 * @param filterer
 	 *          the function to follow the elements
+	 * @param holder
+	 *          keeps the listeners alive, typically the filtered collection
 	 */
-	protected void filterWhen(Consumer<Stream<U>> onNewValue, Function<? super U, BoolHolder> filterer,
+	protected void filterWhen(ItemSink<U> target, Function<? super U, BoolHolder> filterer,
 			Consumer<Object> holder) {
-		Map<U, BoolHolder> filters = new LinkedHashMap<>();
-		Map<U, Boolean> elementsPredicate = new LinkedHashMap<>();
-		Map<U, Consumer<Boolean>> listeners = new HashMap<>();
-		Runnable update = () -> {
-			synchronized (elementsPredicate) {
-				if (elementsPredicate.size() == filters.size()) {
-					Stream<U> filteredStream = elementsPredicate.entrySet().stream().filter(e -> e.getValue())
-							.map(e -> e.getKey());
-					onNewValue.accept(filteredStream);
-				}
-			}
-		};
-		follow(c -> {
-			synchronized (filters) {
-				// first add the elements that are to be added
-				for (U u : c) {
-					if (!filters.containsKey(u)) {
-						BoolHolder predicate = filterer.apply(u);
-						filters.put(u, predicate);
-						Consumer<Boolean> cons = b -> {
-							elementsPredicate.put(u, b);
-							update.run();
-						};
-						listeners.put(u, cons);
-						predicate.follow(cons, holder);
-					}
-				}
-				// then remove the elements that need to be removed.
-				List<U> removed = filters.keySet().stream().filter(u -> !c.contains(u)).collect(Collectors.toList());
-				if (!removed.isEmpty()) {
-					synchronized (elementsPredicate) {
-						for (U u : removed) {
-							BoolHolder filter = filters.remove(u);
-							filter.unfollow(listeners.get(u));
-							filters.remove(u);
-							elementsPredicate.remove(u);
-						}
-					}
-					update.run();
-				}
-				if (c.isEmpty()) {
-					update.run();
-				}
-			}
-		}, holder);
+		WhenFilter filter = new WhenFilter(filterer, target, holder);
+		followChanges(filter::onSource, holder);
 	}
 
 	@Override
 	public int hashCode() {
-		return isDataAvailable() ? 0 : get().hashCode();
+		return isDataAvailable() ? get().hashCode() : 0;
 	}
 
 	@Override
@@ -0,0 +1,124 @@
+package fr.lelouet.tools.holders.impl.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import fr.lelouet.tools.holders.impl.CopyOnWriteFollowers;
+import fr.lelouet.tools.lambdaref.references.IRef;
+
+/**
+ * the followers of the changes of a holder, and the changes not transmitted
+ * to them yet. Must be used while synchronized on the holder.
+ *
+ * @param <C>
+ *          the type of a single change
+ * @param <D>
+ *          the type of delta transmitted to the followers
+ */
+class ChangeRecorder<C, D> {
+
+	final CopyOnWriteFollowers<Consumer<D>> followers = new CopyOnWriteFollowers<>();
+
+	private final Function<List<C>, D> toDelta;
+
+	private List<C> pending = new ArrayList<>();
+
+	/** true when the followers must reset their state */
+	private boolean reset = false;
+
+	/**
+	 *
+	 * @param toDelta
+	 *          creates the delta from a list of changes
+	 */
+	ChangeRecorder(Function<List<C>, D> toDelta) {
+		this.toDelta = toDelta;
+	}
+
+	boolean hasFollowers() {
+		return !followers.isEmpty();
+	}
+
+	/**
+	 * record a change.
+	 */
+	void record(C change) {
+		if (reset) {
+			return;
+		}
+		if (!hasFollowers()) {
+			// no need to keep the changes, a follower added later receives the whole
+			// content.
+			reset();
+			return;
+		}
+		pending.add(change);
+	}
+
+	/**
+	 * make the followers reset their state at next transmission.
+	 */
+	void reset() {
+		reset = true;
+		pending.clear();
+	}
+
+	/**
+	 * must be called when a follower is added and receives the current content,
+	 * that already contains the pending changes.
+	 */
+	void followerAdded() {
+		if (!pending.isEmpty()) {
+			reset();
+		}
+	}
+
+	/**
+	 * take the pending changes.
+	 *
+	 * @param resetDelta
+	 *          creates a reset delta with the current content
+	 * @return the delta to transmit to the followers, or null if there is no
+	 *         follower or change.
+	 */
+	D take(Supplier<D> resetDelta) {
+		if (!hasFollowers()) {
+			reset = false;
+			pending.clear();
+			return null;
+		}
+		if (reset) {
+			reset = false;
+			pending.clear();
+			return resetDelta.get();
+		}
+		if (pending.isEmpty()) {
+			return null;
+		}
+		D ret = toDelta.apply(pending);
+		pending = new ArrayList<>();
+		return ret;
+	}
+
+	/**
+	 * transmit a delta to the followers present when it was taken
+	 */
+	void transmit(IRef<Consumer<D>>[] snapshot, D delta) {
+		boolean collected = false;
+		for (IRef<Consumer<D>> ref : snapshot) {
+			Consumer<D> cons = ref.get();
+			if (cons == null) {
+				collected = true;
+			} else {
+				cons.accept(delta);
+			}
+		}
+		if (collected) {
+			followers.removeCollected();
+		}
+	}
+
+}
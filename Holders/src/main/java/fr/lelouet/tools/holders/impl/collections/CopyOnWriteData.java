@@ -0,0 +1,154 @@
+package fr.lelouet.tools.holders.impl.collections;
+
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * the content of a holder that can be modified in place.
+ * <p>
+ * The modifications are applied to a modifiable copy of the content, and the
+ * value given to the readers is an unmodifiable view of that copy. Once a view
+ * has been given, the copy is shared with it, so the next modification copies
+ * it again. Several modifications without a read in between only copy the
+ * content once.
+ * </p>
+ * <p>
+ * The view, the copy and the content last set are only accessed in the monitor
+ * of this. The modifications must also be synchronized by the holder, so that
+ * the changes they record are in the same order as the modifications.
+ * </p>
+ *
+ * @param <T>
+ *          the type of content, eg a list
+ */
+class CopyOnWriteData<T> {
+
+	/** creates a modifiable copy of a content, or an empty one from null */
+	private final UnaryOperator<T> copy;
+
+	/** creates an unmodifiable view of a content */
+	private final UnaryOperator<T> view;
+
+	/** the value given to the readers, or null if only the data is present */
+	private volatile T item = null;
+
+	/**
+	 * the modifiable content, or null if the data is only in the item.
+	 */
+	private T data = null;
+
+	/**
+	 * true when the item is a view of the data, so the data must be copied before
+	 * being modified.
+	 */
+	private boolean shared = false;
+
+	/**
+	 * the content last set, while it is not modified. Compared to the contents
+	 * set instead of its unmodifiable view, so that setting it again is ignored
+	 * with the {@link fr.lelouet.tools.holders.impl.EqualityStrategy#identity()}
+	 * strategy.
+	 */
+	private T source = null;
+
+	/**
+	 *
+	 * @param copy
+	 *          creates a modifiable copy of a content, or an empty one from null
+	 * @param view
+	 *          creates an unmodifiable view of a content
+	 */
+	CopyOnWriteData(UnaryOperator<T> copy, UnaryOperator<T> view) {
+		this.copy = copy;
+		this.view = view;
+	}
+
+	/**
+	 *
+	 * @return the view of the content, created if needed, or null if there is
+	 *         none.
+	 */
+	T current() {
+		T ret = item;
+		if (ret != null) {
+			return ret;
+		}
+		synchronized (this) {
+			if (item == null && data != null) {
+				item = view.apply(data);
+				shared = true;
+			}
+			return item;
+		}
+	}
+
+	/**
+	 *
+	 * @return the content, without creating a view, or null.
+	 */
+	synchronized T content() {
+		return item != null ? item : data;
+	}
+
+	/**
+	 *
+	 * @return the content last set if it was not modified since, otherwise the
+	 *         content.
+	 */
+	synchronized T compared() {
+		return source != null ? source : content();
+	}
+
+	/**
+	 * replace the content
+	 *
+	 * @param newSource
+	 *          the content set
+	 * @param newView
+	 *          the view of that content, given to the readers
+	 */
+	synchronized void set(T newSource, T newView) {
+		item = newView;
+		source = newSource;
+		data = null;
+		shared = false;
+	}
+
+	/**
+	 * modify the content, after copying it if it is shared.
+	 *
+	 * @param <R>
+	 *          type of the result
+	 * @param modification
+	 *          the modification to apply to the modifiable content.
+	 * @return the result of the modification
+	 */
+	synchronized <R> R edit(Function<T, R> modification) {
+		if (data == null) {
+			data = copy.apply(item);
+		} else if (shared) {
+			data = copy.apply(data);
+		}
+		shared = false;
+		item = null;
+		source = null;
+		return modification.apply(data);
+	}
+
+	/**
+	 * query the content, without creating a view of it.
+	 *
+	 * @param <R>
+	 *          type of the result
+	 * @param query
+	 *          the query over the content, which must not keep it.
+	 * @param noData
+	 *          the result when there is no content.
+	 * @return the result of the query
+	 */
+	synchronized <R> R read(Function<T, R> query, R noData) {
+		T c = content();
+		return c == null ? noData : query.apply(c);
+	}
+
+}
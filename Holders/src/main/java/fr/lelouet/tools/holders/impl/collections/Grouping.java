@@ -0,0 +1,422 @@
+package fr.lelouet.tools.holders.impl.collections;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import fr.lelouet.tools.holders.interfaces.collections.CollectionDelta;
+import fr.lelouet.tools.holders.interfaces.collections.CollectionDelta.Change;
+
+/**
+ * the items of a collection grouped by a key, maintained from the changes of
+ * the collection.
+ * <p>
+ * Each item of the collection has a slot, that remembers the key of the item.
+ * When the collection is ordered, the slots are kept in a
+ * {@link WeightedSequence} that gives the position of a slot in the collection
+ * in O(log(n)). Otherwise the slots are numbered in the order they are added.
+ * </p>
+ * <p>
+ * Each group is an immutable list of its slots, in the order of the
+ * collection. Adding or removing an item creates a new list for its group in
+ * O(log²(n)), that shares all but O(log(n)) nodes with the previous one, so the
+ * groups can be given to the followers without copy.
+ * </p>
+ * <p>
+ * Not thread safe.
+ * </p>
+ *
+ * @param <U>
+ *          the type of the items
+ * @param <K>
+ *          the type of the keys
+ */
+class Grouping<U, K> {
+
+	private static class Slot<U, K> extends WeightedSequence.Node {
+
+		final U item;
+
+		final K key;
+
+		/** order of the slot when the collection is not ordered */
+		long added;
+
+		Slot(U item, K key) {
+			super(1);
+			this.item = item;
+			this.key = key;
+		}
+
+	}
+
+	/**
+	 * immutable list of the items of a group, stored as a treap of their slots.
+	 * The modifications return a new list that shares the unmodified nodes.
+	 */
+	static final class Group<U> extends AbstractList<U> {
+
+		private static final class Node<U> {
+
+			final Slot<U, ?> slot;
+
+			final int priority;
+
+			final int size;
+
+			final Node<U> left, right;
+
+			Node(Slot<U, ?> slot, int priority, Node<U> left, Node<U> right) {
+				this.slot = slot;
+				this.priority = priority;
+				this.left = left;
+				this.right = right;
+				size = 1 + size(left) + size(right);
+			}
+
+			Node<U> with(Node<U> newLeft, Node<U> newRight) {
+				return new Node<>(slot, priority, newLeft, newRight);
+			}
+
+		}
+
+		@SuppressWarnings("rawtypes")
+		private static final Group EMPTY = new Group<>(null);
+
+		private final Node<U> root;
+
+		private Group(Node<U> root) {
+			this.root = root;
+		}
+
+		@SuppressWarnings("unchecked")
+		static <U> Group<U> empty() {
+			return EMPTY;
+		}
+
+		private static int size(Node<?> node) {
+			return node == null ? 0 : node.size;
+		}
+
+		@Override
+		public int size() {
+			return size(root);
+		}
+
+		@Override
+		public U get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("index " + index + " out of [0;" + size() + "[");
+			}
+			Node<U> node = root;
+			while (true) {
+				int leftSize = size(node.left);
+				if (index == leftSize) {
+					return node.slot.item;
+				}
+				if (index < leftSize) {
+					node = node.left;
+				} else {
+					index -= leftSize + 1;
+					node = node.right;
+				}
+			}
+		}
+
+		@Override
+		public Iterator<U> iterator() {
+			Deque<Node<U>> stack = new ArrayDeque<>();
+			for (Node<U> node = root; node != null; node = node.left) {
+				stack.push(node);
+			}
+			return new Iterator<U>() {
+
+				@Override
+				public boolean hasNext() {
+					return !stack.isEmpty();
+				}
+
+				@Override
+				public U next() {
+					if (stack.isEmpty()) {
+						throw new NoSuchElementException();
+					}
+					Node<U> ret = stack.pop();
+					for (Node<U> node = ret.right; node != null; node = node.left) {
+						stack.push(node);
+					}
+					return ret.slot.item;
+				}
+			};
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o instanceof Group) {
+				Group<?> other = (Group<?>) o;
+				if (other.root == root) {
+					return true;
+				}
+				if (other.size() != size()) {
+					return false;
+				}
+			}
+			return super.equals(o);
+		}
+
+		@Override
+		public int hashCode() {
+			return super.hashCode();
+		}
+
+		/**
+		 *
+		 * @param position
+		 *          the position of the slots
+		 * @param limit
+		 *          a position
+		 * @return the number of slots whose position is lower than the limit.
+		 */
+		int rank(ToLongFunction<Slot<U, ?>> position, long limit) {
+			int ret = 0;
+			Node<U> node = root;
+			while (node != null) {
+				if (position.applyAsLong(node.slot) < limit) {
+					ret += size(node.left) + 1;
+					node = node.right;
+				} else {
+					node = node.left;
+				}
+			}
+			return ret;
+		}
+
+		/**
+		 * @return a new group with the slot inserted at a position.
+		 */
+		Group<U> with(int index, Slot<U, ?> slot) {
+			return new Group<>(insert(root, index, slot, ThreadLocalRandom.current().nextInt()));
+		}
+
+		/**
+		 * @return a new group without the slot at a position.
+		 */
+		Group<U> without(int index) {
+			return new Group<>(remove(root, index));
+		}
+
+		private static <U> Node<U> insert(Node<U> node, int index, Slot<U, ?> slot, int priority) {
+			if (node == null) {
+				return new Node<>(slot, priority, null, null);
+			}
+			if (priority > node.priority) {
+				@SuppressWarnings("unchecked")
+				Node<U>[] split = (Node<U>[]) new Node<?>[2];
+				split(node, index, split);
+				return new Node<>(slot, priority, split[0], split[1]);
+			}
+			int leftSize = size(node.left);
+			if (index <= leftSize) {
+				return node.with(insert(node.left, index, slot, priority), node.right);
+			}
+			return node.with(node.left, insert(node.right, index - leftSize - 1, slot, priority));
+		}
+
+		/**
+		 * split a tree into the nodes before a position, set in split[0], and the
+		 * nodes after, set in split[1].
+		 */
+		private static <U> void split(Node<U> node, int index, Node<U>[] split) {
+			if (node == null) {
+				split[0] = split[1] = null;
+				return;
+			}
+			int leftSize = size(node.left);
+			if (index <= leftSize) {
+				split(node.left, index, split);
+				split[1] = node.with(split[1], node.right);
+			} else {
+				split(node.right, index - leftSize - 1, split);
+				split[0] = node.with(node.left, split[0]);
+			}
+		}
+
+		private static <U> Node<U> merge(Node<U> left, Node<U> right) {
+			if (left == null) {
+				return right;
+			}
+			if (right == null) {
+				return left;
+			}
+			if (left.priority > right.priority) {
+				return left.with(left.left, merge(left.right, right));
+			}
+			return right.with(merge(left, right.left), right.right);
+		}
+
+		private static <U> Node<U> remove(Node<U> node, int index) {
+			int leftSize = size(node.left);
+			if (index == leftSize) {
+				return merge(node.left, node.right);
+			}
+			if (index < leftSize) {
+				return node.with(remove(node.left, index), node.right);
+			}
+			return node.with(node.left, remove(node.right, index - leftSize - 1));
+		}
+
+	}
+
+	private final Function<? super U, ? extends K> indexer;
+
+	private final boolean ordered;
+
+	/** the slots of the items, in the order of the collection, when ordered */
+	private final WeightedSequence slots = new WeightedSequence();
+
+	/** the slot of each item, when not ordered */
+	private final Map<U, Slot<U, K>> unordered = new HashMap<>();
+
+	/** number of slots added, when not ordered */
+	private long added = 0;
+
+	private final Map<K, Group<U>> groups = new HashMap<>();
+
+	/** the position of a slot in the collection */
+	private final ToLongFunction<Slot<U, ?>> position;
+
+	/**
+	 *
+	 * @param indexer
+	 *          the key of an item
+	 * @param ordered
+	 *          true if the changes of the collection have an index
+	 */
+	public Grouping(Function<? super U, ? extends K> indexer, boolean ordered) {
+		this.indexer = indexer;
+		this.ordered = ordered;
+		position = ordered ? slots::index : slot -> slot.added;
+	}
+
+	/**
+	 * apply the modification of the collection.
+	 *
+	 * @param delta
+	 *          the modification of the collection
+	 * @param modified
+	 *          receives the keys whose group is modified, when the delta is not a
+	 *          reset.
+	 * @return true if the delta is a reset, so all the groups may be modified.
+	 */
+	public boolean apply(CollectionDelta<U> delta, Set<K> modified) {
+		if (delta.isReset()) {
+			reset(delta.content());
+			return true;
+		}
+		for (Change<U> change : delta.changes()) {
+			if (change.isAdd()) {
+				add(change.index(), change.item(), modified);
+			} else {
+				remove(change.index(), change.item(), modified);
+			}
+		}
+		return false;
+	}
+
+	private void reset(Collection<U> content) {
+		slots.clear();
+		unordered.clear();
+		groups.clear();
+		for (U u : content) {
+			Slot<U, K> slot = new Slot<>(u, indexer.apply(u));
+			if (ordered) {
+				slots.insert(slots.size(), slot);
+			} else {
+				slot.added = added++;
+				unordered.put(u, slot);
+			}
+			Group<U> group = group(slot.key);
+			groups.put(slot.key, group.with(group.size(), slot));
+		}
+	}
+
+	private Group<U> group(K key) {
+		Group<U> ret = groups.get(key);
+		return ret == null ? Group.empty() : ret;
+	}
+
+	private void add(int index, U item, Set<K> modified) {
+		Slot<U, K> slot = new Slot<>(item, indexer.apply(item));
+		Group<U> group = group(slot.key);
+		int rank;
+		if (ordered) {
+			// the slots after index are not moved yet
+			rank = group.rank(position, index);
+			slots.insert(index, slot);
+		} else {
+			slot.added = added++;
+			unordered.put(item, slot);
+			rank = group.size();
+		}
+		groups.put(slot.key, group.with(rank, slot));
+		modified.add(slot.key);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void remove(int index, U item, Set<K> modified) {
+		Slot<U, K> slot;
+		long pos;
+		if (ordered) {
+			slot = (Slot<U, K>) slots.node(index);
+			pos = index;
+		} else {
+			slot = unordered.remove(item);
+			if (slot == null) {
+				return;
+			}
+			pos = slot.added;
+		}
+		Group<U> group = groups.get(slot.key);
+		group = group.without(group.rank(position, pos));
+		if (ordered) {
+			slots.remove(index);
+		}
+		if (group.isEmpty()) {
+			groups.remove(slot.key);
+		} else {
+			groups.put(slot.key, group);
+		}
+		modified.add(slot.key);
+	}
+
+	/**
+	 *
+	 * @return the keys of the groups
+	 */
+	public Set<K> keys() {
+		return Collections.unmodifiableSet(groups.keySet());
+	}
+
+	/**
+	 *
+	 * @param key
+	 *          the key of a group
+	 * @return the immutable list of the items of the group, in the order of the
+	 *         collection. Empty if there is no item for this key.
+	 */
+	public List<U> items(K key) {
+		return group(key);
+	}
+
+}
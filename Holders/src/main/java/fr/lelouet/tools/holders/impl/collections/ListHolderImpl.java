@@ -2,16 +2,21 @@ package fr.lelouet.tools.holders.impl.collections;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import fr.lelouet.tools.holders.impl.Propagation;
 import fr.lelouet.tools.holders.interfaces.ObjHolder;
+import fr.lelouet.tools.holders.interfaces.collections.CollectionDelta.Change;
 import fr.lelouet.tools.holders.interfaces.collections.ListHolder;
 import fr.lelouet.tools.holders.interfaces.collections.MapHolder;
 import fr.lelouet.tools.holders.interfaces.collections.SetHolder;
@@ -25,7 +30,12 @@ import lombok.experimental.Accessors;
  * <p>
  * the {@link #set(List)} methods modifies the stored data : a null data is
  * translated to {@link Collections.#emptyList()}, while a non null map is
- * translated to {@link Collections.#unmodifiableList(List)}
+ * wrapped in a {@link ListSnapshot}, that must not be modified afterwards.
+ * </p>
+ * <p>
+ * The list can also be modified item by item with {@link #add(Object)},
+ * {@link #add(int, Object)}, {@link #remove(int)}, {@link #remove(Object)},
+ * {@link #replace(int, Object)} and {@link #replace(int, int, Collection)}.
  * </p>
  *
  * @param <U>
@@ -41,7 +51,7 @@ public class ListHolderImpl<U> extends ACollectionHolder<U, List<U>> implements
 
 	@Override
 	public void set(List<U> newitem) {
-		super.set(newitem == null ? Collections.emptyList() : Collections.unmodifiableList(newitem));
+		super.set(newitem == null ? Collections.emptyList() : newitem);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -55,6 +65,179 @@ public class ListHolderImpl<U> extends ACollectionHolder<U, List<U>> implements
 		super.set(Collections.emptyList());
 	}
 
+	@Override
+	protected List<U> modifiableCopy(List<U> source) {
+		return source == null ? new ArrayList<>() : new ArrayList<>(source);
+	}
+
+	@Override
+	protected List<U> unmodifiableView(List<U> data) {
+		return ListSnapshot.of(data);
+	}
+
+	@Override
+	protected boolean isOrdered() {
+		return true;
+	}
+
+	//
+	// modification of the items
+	//
+
+	/**
+	 * add an item at the end of the list.
+	 *
+	 * @param element
+	 *          the item to add
+	 */
+	public void add(U element) {
+		synchronized (this) {
+			int index = edit(l -> {
+				l.add(element);
+				return l.size() - 1;
+			});
+			recordAdd(index, element);
+			changed();
+		}
+		publish();
+	}
+
+	/**
+	 * insert an item in the list.
+	 *
+	 * @param index
+	 *          the position of the item once inserted
+	 * @param element
+	 *          the item to add
+	 */
+	public void add(int index, U element) {
+		synchronized (this) {
+			edit(l -> {
+				l.add(index, element);
+				return null;
+			});
+			recordAdd(index, element);
+			changed();
+		}
+		publish();
+	}
+
+	/**
+	 * add items at the end of the list.
+	 *
+	 * @param elements
+	 *          the items to add
+	 */
+	public void addAll(Collection<? extends U> elements) {
+		synchronized (this) {
+			if (elements.isEmpty()) {
+				return;
+			}
+			int start = edit(l -> {
+				int size = l.size();
+				l.addAll(elements);
+				return size;
+			});
+			for (U u : elements) {
+				recordAdd(start++, u);
+			}
+			changed();
+		}
+		publish();
+	}
+
+	/**
+	 * remove the item at a given position
+	 *
+	 * @param index
+	 *          position of the item
+	 * @return the item removed
+	 */
+	public U remove(int index) {
+		U removed;
+		synchronized (this) {
+			removed = edit(l -> l.remove(index));
+			recordRemove(index, removed);
+			changed();
+		}
+		publish();
+		return removed;
+	}
+
+	/**
+	 * remove the first occurrence of an item
+	 *
+	 * @param element
+	 *          the item to remove
+	 * @return true if the item was present.
+	 */
+	public boolean remove(U element) {
+		synchronized (this) {
+			int index = read(l -> l.indexOf(element), -1);
+			if (index < 0) {
+				return false;
+			}
+			remove(index);
+		}
+		publish();
+		return true;
+	}
+
+	/**
+	 * replace the item at a given position
+	 *
+	 * @param index
+	 *          position of the item
+	 * @param element
+	 *          the new item
+	 * @return the item replaced
+	 */
+	public U replace(int index, U element) {
+		U removed;
+		synchronized (this) {
+			removed = edit(l -> l.set(index, element));
+			recordRemove(index, removed);
+			recordAdd(index, element);
+			changed();
+		}
+		publish();
+		return removed;
+	}
+
+	/**
+	 * replace a range of items of the list with other items.
+	 *
+	 * @param from
+	 *          position of the first item replaced
+	 * @param to
+	 *          position after the last item replaced
+	 * @param elements
+	 *          the items inserted at from instead
+	 */
+	public void replace(int from, int to, Collection<? extends U> elements) {
+		synchronized (this) {
+			if (from == to && elements.isEmpty()) {
+				return;
+			}
+			List<U> removed = edit(l -> {
+				List<U> range = l.subList(from, to);
+				List<U> ret = new ArrayList<>(range);
+				range.clear();
+				l.addAll(from, elements);
+				return ret;
+			});
+			for (U u : removed) {
+				recordRemove(from, u);
+			}
+			int index = from;
+			for (U u : elements) {
+				recordAdd(index++, u);
+			}
+			changed();
+		}
+		publish();
+	}
+
 	/**
 	 * create an unmodifiable list of items
 	 *
@@ -69,12 +252,47 @@ public class ListHolderImpl<U> extends ACollectionHolder<U, List<U>> implements
 		return new ListHolderImpl<>(Arrays.asList(args));
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The predicate is only applied to the items added. The position of an item
+	 * in the returned list is the number of accepted items before it, kept in a
+	 * {@link WeightedSequence} so that each change costs O(log(n)).
+	 * </p>
+	 */
 	@Override
 	public ListHolderImpl<U> filter(Predicate<? super U> predicate) {
 		ListHolderImpl<U> ret = new ListHolderImpl<>();
-		follow((t) -> {
-			List<U> filteredList = t.stream().filter(predicate).collect(Collectors.toList());
-			ret.set(filteredList);
+		// 1 for each accepted item of this list, 0 for the others
+		WeightedSequence accepted = new WeightedSequence();
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				accepted.clear();
+				List<U> filteredList = new ArrayList<>();
+				for (U u : delta.content()) {
+					boolean accept = predicate.test(u);
+					accepted.add(accept ? 1 : 0);
+					if (accept) {
+						filteredList.add(u);
+					}
+				}
+				ret.set(filteredList);
+				return;
+			}
+			Propagation.batch(() -> {
+				for (Change<U> change : delta.changes()) {
+					int position = (int) accepted.prefix(change.index());
+					if (change.isAdd()) {
+						boolean accept = predicate.test(change.item());
+						accepted.insert(change.index(), accept ? 1 : 0);
+						if (accept) {
+							ret.add(position, change.item());
+						}
+					} else if (accepted.remove(change.index()) == 1) {
+						ret.remove(position);
+					}
+				}
+			});
 		}, ret);
 		return ret;
 	}
@@ -82,9 +300,22 @@ public class ListHolderImpl<U> extends ACollectionHolder<U, List<U>> implements
 	@Override
 	public ListHolderImpl<U> filterWhen(Function<? super U, BoolHolder> filterer) {
 		ListHolderImpl<U> ret = new ListHolderImpl<>();
-		filterWhen(filteredStream -> {
-			List<U> filteredList = filteredStream.collect(Collectors.toList());
-			ret.set(filteredList);
+		filterWhen(new ItemSink<U>() {
+
+			@Override
+			public void set(List<U> items) {
+				ret.set(items);
+			}
+
+			@Override
+			public void insert(int index, U item) {
+				ret.add(index, item);
+			}
+
+			@Override
+			public void remove(int index, U item) {
+				ret.remove(index);
+			}
 		}, filterer, ret);
 		return ret;
 	}
@@ -93,10 +324,38 @@ public class ListHolderImpl<U> extends ACollectionHolder<U, List<U>> implements
 	@Accessors(fluent = true)
 	private final SetHolder<U> distinct = makeDistinct();
 
+	/**
+	 * the set of distinct items is updated with the number of occurrences of each
+	 * item, so each change of this list costs O(1).
+	 */
 	protected SetHolder<U> makeDistinct() {
 		SetHolderImpl<U> ret = new SetHolderImpl<>();
-		follow((l) -> {
-			ret.set(new HashSet<>(l));
+		Map<U, int[]> occurrences = new HashMap<>();
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				occurrences.clear();
+				for (U u : delta.content()) {
+					occurrences.computeIfAbsent(u, o -> new int[1])[0]++;
+				}
+				ret.set(new HashSet<>(occurrences.keySet()));
+				return;
+			}
+			Propagation.batch(() -> {
+				for (Change<U> change : delta.changes()) {
+					U u = change.item();
+					if (change.isAdd()) {
+						if (occurrences.computeIfAbsent(u, o -> new int[1])[0]++ == 0) {
+							ret.add(u);
+						}
+					} else {
+						int[] count = occurrences.get(u);
+						if (--count[0] == 0) {
+							occurrences.remove(u);
+							ret.remove(u);
+						}
+					}
+				}
+			});
 		}, ret);
 		return ret;
 	}
@@ -124,6 +383,8 @@ public class ListHolderImpl<U> extends ACollectionHolder<U, List<U>> implements
 					reverse = ret;
 				}
 			}
+			// the first value of the reversed list is sent once the monitor is released
+			publish();
 		}
 		return reverse;
 	}
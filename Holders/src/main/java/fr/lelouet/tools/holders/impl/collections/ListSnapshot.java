@@ -0,0 +1,134 @@
+package fr.lelouet.tools.holders.impl.collections;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * the unmodifiable content of a {@link ListHolderImpl}.
+ * <p>
+ * The list it wraps is never modified once wrapped : the holder copies it
+ * before modifying it. So a snapshot can be kept and transmitted without
+ * copying it, and its hashcode is only computed once. Two snapshots of the same
+ * list are equal without comparing their items, and two snapshots with
+ * different hashcodes are different.
+ * </p>
+ *
+ * @param <U>
+ *          the type of the items
+ */
+public final class ListSnapshot<U> extends AbstractList<U> {
+
+	/** the collection wrapped */
+	private final List<U> items;
+
+	private final List<U> view;
+
+	private int hash;
+
+	/** true when the hash is computed and is 0 */
+	private boolean hashIsZero;
+
+	ListSnapshot(List<U> items) {
+		this.items = items;
+		view = Collections.unmodifiableList(items);
+	}
+
+	/**
+	 *
+	 * @return the list as a snapshot, without wrapping it again if it is
+	 *         already one.
+	 */
+	static <U> List<U> of(List<U> items) {
+		return items instanceof ListSnapshot ? items : new ListSnapshot<>(items);
+	}
+
+	@Override
+	public U get(int index) {
+		return view.get(index);
+	}
+
+	@Override
+	public int size() {
+		return view.size();
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return view.contains(o);
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		return view.indexOf(o);
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return view.lastIndexOf(o);
+	}
+
+	@Override
+	public Iterator<U> iterator() {
+		return view.iterator();
+	}
+
+	@Override
+	public ListIterator<U> listIterator(int index) {
+		return view.listIterator(index);
+	}
+
+	@Override
+	public List<U> subList(int fromIndex, int toIndex) {
+		return view.subList(fromIndex, toIndex);
+	}
+
+	@Override
+	public Object[] toArray() {
+		return view.toArray();
+	}
+
+	@Override
+	public <T> T[] toArray(T[] a) {
+		return view.toArray(a);
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0 && !hashIsZero) {
+			h = view.hashCode();
+			if (h == 0) {
+				hashIsZero = true;
+			} else {
+				hash = h;
+			}
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (o instanceof ListSnapshot) {
+			ListSnapshot<?> other = (ListSnapshot<?>) o;
+			if (other.items == items) {
+				return true;
+			}
+			if (other.hashCode() != hashCode()) {
+				return false;
+			}
+		}
+		return view.equals(o);
+	}
+
+	@Override
+	public String toString() {
+		return view.toString();
+	}
+
+}
@@ -1,25 +1,42 @@
 package fr.lelouet.tools.holders.impl.collections;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import fr.lelouet.tools.holders.impl.CopyOnWriteFollowers;
+import fr.lelouet.tools.holders.impl.EqualityStrategy;
 import fr.lelouet.tools.holders.impl.ObjHolderSimple;
+import fr.lelouet.tools.holders.impl.Propagation;
+import fr.lelouet.tools.holders.impl.numbers.BoolHolderImpl;
+import fr.lelouet.tools.holders.impl.numbers.IntHolderImpl;
 import fr.lelouet.tools.holders.interfaces.ObjHolder;
 import fr.lelouet.tools.holders.interfaces.collections.CollectionHolder;
 import fr.lelouet.tools.holders.interfaces.collections.ListHolder;
+import fr.lelouet.tools.holders.interfaces.collections.MapDelta;
+import fr.lelouet.tools.holders.interfaces.collections.MapDelta.Change;
+import fr.lelouet.tools.holders.interfaces.collections.MapDelta.Kind;
 import fr.lelouet.tools.holders.interfaces.collections.MapHolder;
 import fr.lelouet.tools.holders.interfaces.collections.SetHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.BoolHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.IntHolder;
+import fr.lelouet.tools.lambdaref.references.IRef;
+import fr.lelouet.tools.lambdaref.references.UsualRef;
 import lombok.Getter;
 import lombok.experimental.Accessors;
 
@@ -27,8 +44,16 @@ import lombok.experimental.Accessors;
  * implementation of the writable Map holder.
  * <p>
  * the set methods modifies the stored data : a null data is translated to
- * {@link Collections.#emptyMap()}, while a non null map is translated to
- * {@link Collections.#unmodifiableMap(Map)}.
+ * {@link Collections.#emptyMap()}, while a non null map is
+ * wrapped in a {@link MapSnapshot}, that must not be modified afterwards.
+ * </p>
+ * <p>
+ * The map can also be modified key by key with {@link #put(Object, Object)}
+ * and {@link #remove(Object)}. Those modifications are applied to a modifiable
+ * copy of the map, which is only copied again once it has been read. The
+ * followers added with {@link #followChanges(Consumer, Consumer)} receive the
+ * modifications as {@link MapDelta}. When a whole new map is set while some of
+ * those followers are present, the modified keys are computed.
  * </p>
  *
  * @param <K>
@@ -37,15 +62,200 @@ import lombok.experimental.Accessors;
 public class MapHolderImpl<K, V> extends ObjHolderSimple<Map<K, V>> implements MapHolder<K, V> {
 
 	public MapHolderImpl(Map<K, V> map) {
-		super(map);
+		set(map);
 	}
 
 	public MapHolderImpl() {
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The maps are only compared by reference, since comparing their entries
+	 * costs as much as transmitting them.
+	 * </p>
+	 */
 	@Override
-	public synchronized void set(Map<K, V> newitem) {
-		super.set(newitem == null ? Collections.emptyMap() : Collections.unmodifiableMap(newitem));
+	protected EqualityStrategy<? super Map<K, V>> defaultEquality() {
+		return EqualityStrategy.identity();
+	}
+
+	@Override
+	public void set(Map<K, V> newitem) {
+		synchronized (this) {
+			Map<K, V> given = newitem == null ? Collections.emptyMap() : newitem;
+			Map<K, V> next = MapSnapshot.of(given);
+			Map<K, V> previous = data.content();
+			if (isDataAvailable() && getEquality().same(data.compared(), given)) {
+				suppressed();
+				return;
+			}
+			data.set(given, next);
+			if (isDataAvailable() && changes.hasFollowers()) {
+				for (Entry<K, V> e : previous.entrySet()) {
+					if (!next.containsKey(e.getKey())) {
+						changes.record(new Change<>(Kind.REMOVED, e.getKey(), e.getValue(), null));
+					}
+				}
+				for (Entry<K, V> e : next.entrySet()) {
+					if (!previous.containsKey(e.getKey())) {
+						changes.record(new Change<>(Kind.ADDED, e.getKey(), null, e.getValue()));
+					} else {
+						V old = previous.get(e.getKey());
+						if (!Objects.equals(old, e.getValue())) {
+							changes.record(new Change<>(Kind.UPDATED, e.getKey(), old, e.getValue()));
+						}
+					}
+				}
+			} else {
+				changes.reset();
+			}
+			changed();
+		}
+		publish();
+	}
+
+	//
+	// modification of the data
+	//
+
+	private final CopyOnWriteData<Map<K, V>> data = new CopyOnWriteData<>(
+			m -> m == null ? new HashMap<>() : new HashMap<>(m), MapSnapshot::new);
+
+	@Override
+	protected Map<K, V> current() {
+		return data.current();
+	}
+
+	/**
+	 * map a key to a value
+	 *
+	 * @param key
+	 *          the key
+	 * @param value
+	 *          the value
+	 * @return the previous value mapped to the key, or null.
+	 */
+	public V put(K key, V value) {
+		V old;
+		synchronized (this) {
+			old = data.read(m -> m.get(key), null);
+			if (putItem(key, value)) {
+				changed();
+			}
+		}
+		publish();
+		return old;
+	}
+
+	/**
+	 * map several keys to values
+	 *
+	 * @param map
+	 *          the couples (key, value) to add.
+	 */
+	public void putAll(Map<? extends K, ? extends V> map) {
+		synchronized (this) {
+			boolean modified = false;
+			for (Entry<? extends K, ? extends V> e : map.entrySet()) {
+				modified |= putItem(e.getKey(), e.getValue());
+			}
+			if (modified) {
+				changed();
+			}
+		}
+		publish();
+	}
+
+	/**
+	 * put a couple in the data and record the change, if any
+	 *
+	 * @return true if the data was modified, or had no value yet.
+	 */
+	private boolean putItem(K key, V value) {
+		boolean present = data.read(m -> m.containsKey(key), false);
+		if (present && isDataAvailable() && Objects.equals(data.read(m -> m.get(key), null), value)) {
+			return false;
+		}
+		V old = data.edit(m -> m.put(key, value));
+		if (!present) {
+			changes.record(new Change<>(Kind.ADDED, key, null, value));
+		} else if (!Objects.equals(old, value)) {
+			changes.record(new Change<>(Kind.UPDATED, key, old, value));
+		}
+		return true;
+	}
+
+	/**
+	 * remove the mapping of a key
+	 *
+	 * @param key
+	 *          the key to remove
+	 * @return the value mapped to the key, or null.
+	 */
+	public V remove(K key) {
+		V old;
+		synchronized (this) {
+			if (!data.read(m -> m.containsKey(key), false)) {
+				return null;
+			}
+			old = data.edit(m -> m.remove(key));
+			changes.record(new Change<>(Kind.REMOVED, key, old, null));
+			changed();
+		}
+		publish();
+		return old;
+	}
+
+	private final ChangeRecorder<Change<K, V>, MapDelta<K, V>> changes = new ChangeRecorder<>(MapDelta::new);
+
+	@Override
+	public MapHolderImpl<K, V> followChanges(Consumer<MapDelta<K, V>> listener,
+			Consumer<Object> holder) {
+		synchronized (this) {
+			// the follower must be added with the first delta, so that it does not
+			// receive a change before it.
+			attach(changes.followers, listener, holder);
+			changes.followerAdded();
+			if (isDataAvailable()) {
+				MapDelta<K, V> initial = MapDelta.reset(current());
+				propagate(() -> listener.accept(initial));
+			}
+		}
+		refresh();
+		publish();
+		return this;
+	}
+
+	@Override
+	public void unfollowChanges(Consumer<MapDelta<K, V>> listener) {
+		unregister(changes.followers, listener);
+	}
+
+	@Override
+	public int contentSize() {
+		return data.read(Map::size, -1);
+	}
+
+	@Override
+	public int followers() {
+		return super.followers() + changes.followers.size();
+	}
+
+	@Override
+	protected Runnable transmission() {
+		Runnable whole = super.transmission();
+		IRef<Consumer<MapDelta<K, V>>>[] snapshot = changes.followers.snapshot();
+		MapDelta<K, V> delta = changes.take(() -> MapDelta.reset(current()));
+		if (delta == null) {
+			return whole;
+		}
+		return () -> {
+			changes.transmit(snapshot, delta);
+			if (whole != null) {
+				whole.run();
+			}
+		};
 	}
 
 	//
@@ -87,32 +297,190 @@ public class MapHolderImpl<K, V> extends ObjHolderSimple<Map<K, V>> implements M
 	/**
 	 * transforms an observable list into a map, by extracting the key from the
 	 * new elements and remaping them to a new type.
+	 * <p>
+	 * The items are grouped by key from the changes of the list, with a
+	 * {@link Grouping}, so only the keys of the items added or removed are
+	 * computed again.
+	 * </p>
 	 *
 	 * @param list
 	 * @param keyExtractor
 	 *          function to create the new keys of the map
 	 * @param remapper
 	 *          function to create the new values of the map
+	 * @param mergeFunction
+	 *          merges the values of the items with the same key, in the order of
+	 *          the list
 	 * @return
 	 */
 	public static <K, V, L> MapHolderImpl<K, L> toMap(CollectionHolder<V, ?> list, Function<V, K> keyExtractor,
 			Function<V, L> remapper, BinaryOperator<L> mergeFunction) {
 		MapHolderImpl<K, L> ret = new MapHolderImpl<>();
-		list.follow((l) -> {
-			Map<K, L> newmap = l.stream().collect(Collectors.toMap(keyExtractor, remapper, mergeFunction));
-			ret.set(newmap);
-		});
+		boolean ordered = list instanceof ACollectionHolder ? ((ACollectionHolder<?, ?>) list).isOrdered()
+				: list instanceof ListHolder;
+		Grouping<V, K> grouping = new Grouping<>(keyExtractor, ordered);
+		Function<List<V>, L> merge = items -> {
+			Iterator<V> it = items.iterator();
+			L merged = remapper.apply(it.next());
+			while (it.hasNext()) {
+				merged = mergeFunction.apply(merged, remapper.apply(it.next()));
+			}
+			return merged;
+		};
+		list.followChanges(delta -> {
+			Set<K> modified = new LinkedHashSet<>();
+			if (grouping.apply(delta, modified)) {
+				Map<K, L> newmap = new HashMap<>();
+				for (K key : grouping.keys()) {
+					newmap.put(key, merge.apply(grouping.items(key)));
+				}
+				ret.set(newmap);
+				return;
+			}
+			Propagation.batch(() -> {
+				for (K key : modified) {
+					List<V> items = grouping.items(key);
+					if (items.isEmpty()) {
+						ret.remove(key);
+					} else {
+						ret.put(key, merge.apply(items));
+					}
+				}
+			});
+		}, ret);
 		return ret;
 	}
 
+	/** marks the absence of a value from a merged map */
+	private static final Object NONE = new Object();
+
+	/**
+	 * maintains the merge of several maps.
+	 * <p>
+	 * For each key, the values of the merged maps are kept in an array, indexed
+	 * by the merged map. When a merged map changes, only the keys it modified are
+	 * merged again.
+	 * </p>
+	 */
+	private static class Merger<K, V> {
+
+		final BinaryOperator<V> merger;
+
+		final MapHolderImpl<K, V> ret;
+
+		/** for each key, the value in each merged map, or NONE */
+		final Map<K, Object[]> contributions = new HashMap<>();
+
+		final boolean[] received;
+
+		/** number of merged maps that did not receive data yet */
+		int missing;
+
+		Merger(BinaryOperator<V> merger, int size, MapHolderImpl<K, V> ret) {
+			this.merger = merger;
+			this.ret = ret;
+			received = new boolean[size];
+			missing = size;
+		}
+
+		synchronized void onDelta(int index, MapDelta<K, V> delta) {
+			Set<K> modified = new LinkedHashSet<>();
+			if (delta.isReset()) {
+				for (Iterator<Entry<K, Object[]>> it = contributions.entrySet().iterator(); it.hasNext();) {
+					Entry<K, Object[]> e = it.next();
+					if (e.getValue()[index] != NONE && !delta.content().containsKey(e.getKey())) {
+						e.getValue()[index] = NONE;
+						modified.add(e.getKey());
+					}
+				}
+				for (Entry<K, V> e : delta.content().entrySet()) {
+					contribute(index, e.getKey(), e.getValue());
+					modified.add(e.getKey());
+				}
+			} else {
+				for (Change<K, V> change : delta.changes()) {
+					if (change.kind() == Kind.REMOVED) {
+						Object[] values = contributions.get(change.key());
+						if (values != null) {
+							values[index] = NONE;
+						}
+					} else {
+						contribute(index, change.key(), change.value());
+					}
+					modified.add(change.key());
+				}
+			}
+			if (!received[index]) {
+				received[index] = true;
+				missing--;
+				if (missing == 0) {
+					Map<K, V> newmap = new HashMap<>();
+					for (Iterator<Entry<K, Object[]>> it = contributions.entrySet().iterator(); it.hasNext();) {
+						Entry<K, Object[]> e = it.next();
+						Object merged = merge(e.getValue());
+						if (merged == NONE) {
+							it.remove();
+						} else {
+							@SuppressWarnings("unchecked")
+							V v = (V) merged;
+							newmap.put(e.getKey(), v);
+						}
+					}
+					ret.set(newmap);
+					return;
+				}
+			}
+			if (missing > 0) {
+				return;
+			}
+			Propagation.batch(() -> {
+				for (K key : modified) {
+					Object[] values = contributions.get(key);
+					Object merged = values == null ? NONE : merge(values);
+					if (merged == NONE) {
+						contributions.remove(key);
+						ret.remove(key);
+					} else {
+						@SuppressWarnings("unchecked")
+						V v = (V) merged;
+						ret.put(key, v);
+					}
+				}
+			});
+		}
+
+		void contribute(int index, K key, V value) {
+			contributions.computeIfAbsent(key, k -> {
+				Object[] ret = new Object[received.length];
+				Arrays.fill(ret, NONE);
+				return ret;
+			})[index] = value;
+		}
+
+		/**
+		 * @return the merge of the values in the order of the merged maps, or NONE
+		 *         if none is present.
+		 */
+		@SuppressWarnings("unchecked")
+		Object merge(Object[] values) {
+			Object ret = NONE;
+			for (Object value : values) {
+				if (value != NONE) {
+					ret = ret == NONE ? value : merger.apply((V) ret, (V) value);
+				}
+			}
+			return ret;
+		}
+
+	}
+
 	/**
-	 * merge several maps together in bulk method (only when data is received)
+	 * merge several maps together.
 	 * <p>
-	 * The result map does not consider modifications from the merged map, only
-	 * rebuilds itself once all merged maps have received data, and whenever one
-	 * of them receives data afterwards. This is because otherwise the values of
-	 * the result could be corrupted when data is moved from one merged map to
-	 * another in an asynchronous way.
+	 * The result map is only set once all merged maps have received data.
+	 * Afterwards, the values of a key are merged again only when a merged map
+	 * modifies that key. The values of a key are merged in the order of the
+	 * maps.
 	 * </p>
 	 *
 	 * @param <K>
@@ -134,22 +502,10 @@ public class MapHolderImpl<K, V> extends ObjHolderSimple<Map<K, V>> implements M
 			return array[0];
 		}
 		MapHolderImpl<K, V> ret = new MapHolderImpl<>();
-		LinkedHashMap<Integer, Map<K, V>> alreadyreceived = new LinkedHashMap<>();
+		Merger<K, V> merge = new Merger<>(merger, array.length, ret);
 		for (int i = 0; i < array.length; i++) {
-			MapHolder<K, V> m = array[i];
 			int index = i;
-			m.follow(map -> {
-				synchronized (alreadyreceived) {
-					alreadyreceived.remove(index);
-					alreadyreceived.put(index, map);
-					if (alreadyreceived.size() == array.length) {
-						Map<K, V> newmap = alreadyreceived.values().stream().flatMap(m2 -> m2.entrySet().stream())
-								.collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue(), merger));
-						ret.set(newmap);
-					} else {
-					}
-				}
-			}, ret);
+			array[i].followChanges(delta -> merge.onDelta(index, delta), ret);
 		}
 		return ret;
 	}
@@ -160,58 +516,239 @@ public class MapHolderImpl<K, V> extends ObjHolderSimple<Map<K, V>> implements M
 		return merge(merger, this, maps);
 	}
 
+	//
+	// followers of single keys
+	//
+
+	/**
+	 * the followers of the value of each key. Guarded by itself.
+	 */
+	private final Map<K, CopyOnWriteFollowers<Consumer<Change<K, V>>>> keyFollowers = new HashMap<>();
+
+	/** transmits the changes of this to the followers of their key */
+	private final Consumer<MapDelta<K, V>> keyDispatcher = this::dispatchKeys;
+
+	/**
+	 * true while the dispatcher follows the changes of this, that is while a key
+	 * is followed. Guarded by {@link #keyFollowers}.
+	 */
+	private boolean dispatching = false;
+
+	/**
+	 * follow the value of a single key. The listener only receives the changes
+	 * of that key, so the cost of a modification of this does not depend on the
+	 * number of keys followed.
+	 * <p>
+	 * When the key is present, the listener first receives it as
+	 * {@link Kind#ADDED}, otherwise as {@link Kind#REMOVED}. So is it when a
+	 * whole new map is set while the key has no follower of the changes.
+	 * </p>
+	 *
+	 * @param key
+	 *          the key to follow
+	 * @param listener
+	 *          receives the changes of the key
+	 * @param holder
+	 *          keeps the listener alive, typically the holder of the value
+	 */
+	protected void followKey(K key, Consumer<Change<K, V>> listener, Consumer<Object> holder) {
+		synchronized (this) {
+			synchronized (keyFollowers) {
+				for (Iterator<Entry<K, CopyOnWriteFollowers<Consumer<Change<K, V>>>>> it = keyFollowers.entrySet()
+						.iterator(); it.hasNext();) {
+					CopyOnWriteFollowers<Consumer<Change<K, V>>> list = it.next().getValue();
+					list.removeCollected();
+					if (list.isEmpty()) {
+						it.remove();
+					}
+				}
+				if (!dispatching) {
+					dispatching = true;
+					changes.followers.add(new UsualRef<>(keyDispatcher));
+					changes.followerAdded();
+				}
+				// attached while locked, so that the list is not removed as empty
+				attach(keyFollowers.computeIfAbsent(key, k -> new CopyOnWriteFollowers<>()), listener, holder);
+			}
+			if (isDataAvailable()) {
+				Change<K, V> initial = data.read(m -> keyState(m, key), null);
+				propagate(() -> listener.accept(initial));
+			}
+		}
+		refresh();
+		publish();
+	}
+
+	/**
+	 * stop following the value of a key.
+	 */
+	protected void unfollowKey(K key, Consumer<Change<K, V>> listener) {
+		synchronized (keyFollowers) {
+			CopyOnWriteFollowers<Consumer<Change<K, V>>> list = keyFollowers.get(key);
+			if (list != null) {
+				unregister(list, listener);
+				removeIfEmpty(key, list);
+			}
+		}
+	}
+
+	/**
+	 * remove the followers of a key if there are none left, and stop dispatching
+	 * the changes once no key is followed. Must be called synchronized on
+	 * {@link #keyFollowers}.
+	 */
+	private void removeIfEmpty(K key, CopyOnWriteFollowers<Consumer<Change<K, V>>> list) {
+		if (list.isEmpty() && keyFollowers.remove(key, list) && keyFollowers.isEmpty() && dispatching) {
+			dispatching = false;
+			changes.followers.remove(keyDispatcher);
+		}
+	}
+
+	private static <K, V> Change<K, V> keyState(Map<K, V> map, K key) {
+		return map.containsKey(key) ? new Change<>(Kind.ADDED, key, null, map.get(key))
+				: new Change<>(Kind.REMOVED, key, null, null);
+	}
+
+	private void dispatchKeys(MapDelta<K, V> delta) {
+		if (delta.isReset()) {
+			List<Entry<K, CopyOnWriteFollowers<Consumer<Change<K, V>>>>> followed;
+			synchronized (keyFollowers) {
+				followed = new ArrayList<>(keyFollowers.entrySet());
+			}
+			for (Entry<K, CopyOnWriteFollowers<Consumer<Change<K, V>>>> e : followed) {
+				dispatchKey(e.getValue(), keyState(delta.content(), e.getKey()));
+			}
+		} else {
+			for (Change<K, V> change : delta.changes()) {
+				CopyOnWriteFollowers<Consumer<Change<K, V>>> list;
+				synchronized (keyFollowers) {
+					list = keyFollowers.get(change.key());
+				}
+				if (list != null) {
+					dispatchKey(list, change);
+				}
+			}
+		}
+	}
+
+	private void dispatchKey(CopyOnWriteFollowers<Consumer<Change<K, V>>> list, Change<K, V> change) {
+		boolean collected = false;
+		for (IRef<Consumer<Change<K, V>>> ref : list.snapshot()) {
+			Consumer<Change<K, V>> cons = ref.get();
+			if (cons == null) {
+				collected = true;
+			} else {
+				cons.accept(change);
+			}
+		}
+		if (collected) {
+			synchronized (keyFollowers) {
+				list.removeCollected();
+				removeIfEmpty(change.key(), list);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The returned holder follows the key with
+	 * {@link #followKey(Object, Consumer, Consumer)}, so it is only notified when
+	 * the value of the key changes, and when the key changes it only follows the
+	 * new key.
+	 * </p>
+	 */
 	@SuppressWarnings("unchecked")
 	@Override
 	public ObjHolder<V> at(ObjHolder<K> key, V defaultValue) {
 		ObjHolderSimple<V> ret = new ObjHolderSimple<>();
-		boolean[] receipt = new boolean[] { false, false };
-		Object[] receivedKey = new Object[1];
-		Object[] receivedMap = new Object[1];
-		Runnable updateValue = () -> {
-			if (receipt[0] && receipt[1]) {
-				K rkey = (K) receivedKey[0];
-				Map<K, V> rmap = (Map<K, V>) receivedMap[0];
-				V newval = rmap.getOrDefault(rkey, defaultValue);
-				ret.set(newval);
-			}
-		};
-		follow(t -> {
-			synchronized (receipt) {
-				receipt[0] = true;
-				receivedMap[0] = t;
-				updateValue.run();
-			}
-		}, ret);
-		key.follow((newValue) -> {
-			synchronized (receipt) {
-				receipt[1] = true;
-				receivedKey[0] = newValue;
-				updateValue.run();
+		Consumer<Change<K, V>> listener = change -> ret.set(change.kind() == Kind.REMOVED ? defaultValue : change.value());
+		Object[] followed = new Object[] { NONE };
+		key.follow(newKey -> {
+			synchronized (followed) {
+				if (followed[0] != NONE) {
+					unfollowKey((K) followed[0], listener);
+				}
+				followed[0] = newKey;
+				followKey(newKey, listener, ret);
 			}
 		}, ret);
 		return ret;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The returned holder follows the key with
+	 * {@link #followKey(Object, Consumer, Consumer)}, so it is only notified when
+	 * the value of the key changes.
+	 * </p>
+	 */
 	@Override
 	public ObjHolder<V> at(K key, V defaultValue) {
 		ObjHolderSimple<V> ret = new ObjHolderSimple<>();
-		follow(t -> {
-			ret.set(t.getOrDefault(key, defaultValue));
-		}, ret);
+		followKey(key, change -> ret.set(change.kind() == Kind.REMOVED ? defaultValue : change.value()), ret);
 		return ret;
 	}
 
 	@Getter(lazy = true)
 	@Accessors(fluent = true)
-	private final IntHolder size = mapInt(Map::size);
+	private final IntHolder size = makeSize();
+
+	protected IntHolder makeSize() {
+		IntHolderImpl ret = new IntHolderImpl();
+		int[] size = new int[1];
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				size[0] = delta.content().size();
+			} else {
+				for (Change<K, V> change : delta.changes()) {
+					if (change.kind() == Kind.ADDED) {
+						size[0]++;
+					} else if (change.kind() == Kind.REMOVED) {
+						size[0]--;
+					}
+				}
+			}
+			ret.set(size[0]);
+		}, ret);
+		return ret;
+	}
 
 	@Getter(lazy = true)
 	@Accessors(fluent = true)
-	private final BoolHolder isEmpty = test(Map::isEmpty);
+	private final BoolHolder isEmpty = makeIsEmpty();
+
+	protected BoolHolder makeIsEmpty() {
+		BoolHolderImpl ret = new BoolHolderImpl();
+		size().followInt(s -> ret.set(s == 0), ret);
+		return ret;
+	}
 
 	@Getter(lazy = true)
 	@Accessors(fluent = true)
-	private final SetHolder<K> keys = toSet(Map::keySet);
+	private final SetHolder<K> keys = makeKeys();
+
+	protected SetHolder<K> makeKeys() {
+		SetHolderImpl<K> ret = new SetHolderImpl<>();
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				// the content is a snapshot, whose keys can be shared
+				ret.set(delta.content().keySet());
+				return;
+			}
+			Propagation.batch(() -> {
+				for (Change<K, V> change : delta.changes()) {
+					if (change.kind() == Kind.ADDED) {
+						ret.add(change.key());
+					} else if (change.kind() == Kind.REMOVED) {
+						ret.remove(change.key());
+					}
+				}
+			});
+		}, ret);
+		return ret;
+	}
 
 	@Getter(lazy = true)
 	@Accessors(fluent = true)
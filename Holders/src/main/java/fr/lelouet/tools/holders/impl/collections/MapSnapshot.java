@@ -0,0 +1,125 @@
+package fr.lelouet.tools.holders.impl.collections;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * the unmodifiable content of a {@link MapHolderImpl}.
+ * <p>
+ * The map it wraps is never modified once wrapped, so a snapshot can be
+ * transmitted without copying it, and its hashcode is only computed once. Its
+ * keys are a {@link SetSnapshot}. See {@link ListSnapshot}.
+ * </p>
+ *
+ * @param <K>
+ *          the type of the keys
+ * @param <V>
+ *          the type of the values
+ */
+public final class MapSnapshot<K, V> extends AbstractMap<K, V> {
+
+	/** the collection wrapped */
+	private final Map<K, V> items;
+
+	private final Map<K, V> view;
+
+	private Set<K> keys = null;
+
+	private int hash;
+
+	/** true when the hash is computed and is 0 */
+	private boolean hashIsZero;
+
+	MapSnapshot(Map<K, V> items) {
+		this.items = items;
+		view = Collections.unmodifiableMap(items);
+	}
+
+	/**
+	 *
+	 * @return the map as a snapshot, without wrapping it again if it is already
+	 *         one.
+	 */
+	static <K, V> Map<K, V> of(Map<K, V> items) {
+		return items instanceof MapSnapshot ? items : new MapSnapshot<>(items);
+	}
+
+	@Override
+	public int size() {
+		return view.size();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return view.containsKey(key);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		return view.containsValue(value);
+	}
+
+	@Override
+	public V get(Object key) {
+		return view.get(key);
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return view.entrySet();
+	}
+
+	@Override
+	public Set<K> keySet() {
+		Set<K> ret = keys;
+		if (ret == null) {
+			ret = keys = new SetSnapshot<>(view.keySet());
+		}
+		return ret;
+	}
+
+	@Override
+	public Collection<V> values() {
+		return view.values();
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0 && !hashIsZero) {
+			h = view.hashCode();
+			if (h == 0) {
+				hashIsZero = true;
+			} else {
+				hash = h;
+			}
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (o instanceof MapSnapshot) {
+			MapSnapshot<?, ?> other = (MapSnapshot<?, ?>) o;
+			if (other.items == items) {
+				return true;
+			}
+			if (other.hashCode() != hashCode()) {
+				return false;
+			}
+		}
+		return view.equals(o);
+	}
+
+	@Override
+	public String toString() {
+		return view.toString();
+	}
+
+}
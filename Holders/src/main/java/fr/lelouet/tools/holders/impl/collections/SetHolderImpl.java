@@ -1,9 +1,14 @@
 package fr.lelouet.tools.holders.impl.collections;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
@@ -11,8 +16,11 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import fr.lelouet.tools.holders.impl.Propagation;
 import fr.lelouet.tools.holders.impl.numbers.BoolHolderImpl;
 import fr.lelouet.tools.holders.interfaces.ObjHolder;
+import fr.lelouet.tools.holders.interfaces.collections.CollectionDelta;
+import fr.lelouet.tools.holders.interfaces.collections.CollectionDelta.Change;
 import fr.lelouet.tools.holders.interfaces.collections.MapHolder;
 import fr.lelouet.tools.holders.interfaces.collections.SetHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.BoolHolder;
@@ -22,8 +30,13 @@ import fr.lelouet.tools.holders.interfaces.numbers.BoolHolder;
  * /** implementation of the writable Set holder.
  * <p>
  * the set methods modifies the stored data : a null data is translated to
- * {@link Collections.#emptySet()}, while a non null map is translated to
- * {@link Collections.#unmodifiableSet(Set)}.
+ * {@link Collections.#emptySet()}, while a non null set is
+ * wrapped in a {@link SetSnapshot}, that must not be modified afterwards.
+ * </p>
+ * <p>
+ * The set can also be modified item by item with {@link #add(Object)} and
+ * {@link #remove(Object)}. When a whole new set is set while some followers of
+ * the changes are present, the items added and removed are computed.
  * </p>
  *
  * @param <U>
@@ -39,7 +52,7 @@ public class SetHolderImpl<U> extends ACollectionHolder<U, Set<U>> implements Se
 
 	@Override
 	public void set(Set<U> newitem) {
-		super.set(newitem == null ? Collections.emptySet() : Collections.unmodifiableSet(newitem));
+		super.set(newitem == null ? Collections.emptySet() : newitem);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -62,20 +75,235 @@ public class SetHolderImpl<U> extends ACollectionHolder<U, Set<U>> implements Se
 		return new SetHolderImpl<>(new HashSet<>(Arrays.asList(items)));
 	}
 
+	/**
+	 * maintains a set computed from the number of input sets that contain each
+	 * item.
+	 * <p>
+	 * The items of each input set are kept, to compute the changes of an input
+	 * set that is reset, and the number of input sets that contain each item is
+	 * kept in a map. A change in an input set only modifies the count of its
+	 * items, and only those items are added to or removed from the result. The
+	 * result is only set once all the input sets have received data.
+	 * </p>
+	 * <p>
+	 * The result is updated through {@link Propagation#schedule(Object, Runnable)}
+	 * : when several input sets are modified by the same change or batch, it is
+	 * only updated once, after all of them.
+	 * </p>
+	 */
+	private static abstract class Combination<U> {
+
+		final SetHolderImpl<U> ret = new SetHolderImpl<>();
+
+		final List<SetHolder<U>> inputs;
+
+		/** the items of each input set, null until received */
+		final List<Set<U>> contents;
+
+		/** the number of input sets that contain each item */
+		final Map<U, int[]> counts = new HashMap<>();
+
+		/** number of input sets that did not receive data yet */
+		int missing;
+
+		/** the items whose count changed since the last update of the result */
+		Set<U> modified = new HashSet<>();
+
+		private final Runnable update = this::update;
+
+		Combination(List<SetHolder<U>> inputs) {
+			this.inputs = inputs;
+			contents = new ArrayList<>(Collections.nCopies(inputs.size(), null));
+			missing = inputs.size();
+		}
+
+		/**
+		 * follow the input sets of a combination, once it is constructed, since
+		 * an input set can transmit its data as soon as it is followed.
+		 *
+		 * @return the result of the combination
+		 */
+		static <U> SetHolderImpl<U> follow(Combination<U> combination) {
+			for (int i = 0; i < combination.inputs.size(); i++) {
+				int index = i;
+				combination.inputs.get(i).followChanges(delta -> combination.onDelta(index, delta), combination.ret);
+			}
+			return combination.ret;
+		}
+
+		/**
+		 *
+		 * @param item
+		 *          an item of at least one input set
+		 * @param count
+		 *          the number of input sets that contain the item
+		 * @return true if the item is in the result
+		 */
+		abstract boolean accept(U item, int count);
+
+		void onDelta(int index, CollectionDelta<U> delta) {
+			synchronized (this) {
+				Set<U> items = contents.get(index);
+				if (delta.isReset()) {
+					Set<U> next = new HashSet<>(delta.content());
+					if (items == null) {
+						missing--;
+					} else {
+						for (U u : items) {
+							if (!next.contains(u)) {
+								decrement(u);
+								modified.add(u);
+							}
+						}
+					}
+					for (U u : next) {
+						if (items == null || !items.contains(u)) {
+							counts.computeIfAbsent(u, o -> new int[1])[0]++;
+							modified.add(u);
+						}
+					}
+					contents.set(index, next);
+				} else if (items != null) {
+					for (Change<U> change : delta.changes()) {
+						U u = change.item();
+						if (change.isAdd()) {
+							if (items.add(u)) {
+								counts.computeIfAbsent(u, o -> new int[1])[0]++;
+								modified.add(u);
+							}
+						} else if (items.remove(u)) {
+							decrement(u);
+							modified.add(u);
+						}
+					}
+				}
+			}
+			Propagation.schedule(ret, update);
+		}
+
+		synchronized void update() {
+			if (missing > 0 || modified.isEmpty() && ret.isDataAvailable()) {
+				return;
+			}
+			Set<U> changed = modified;
+			modified = new HashSet<>();
+			if (!ret.isDataAvailable()) {
+				Set<U> newset = new HashSet<>();
+				for (Entry<U, int[]> e : counts.entrySet()) {
+					if (accept(e.getKey(), e.getValue()[0])) {
+						newset.add(e.getKey());
+					}
+				}
+				ret.set(newset);
+				return;
+			}
+			Propagation.batch(() -> {
+				for (U u : changed) {
+					int[] count = counts.get(u);
+					if (count != null && accept(u, count[0])) {
+						ret.add(u);
+					} else {
+						ret.remove(u);
+					}
+				}
+			});
+		}
+
+		void decrement(U item) {
+			int[] count = counts.get(item);
+			if (--count[0] == 0) {
+				counts.remove(item);
+			}
+		}
+
+	}
+
+	/**
+	 * create a set of the items present in at least one of several sets.
+	 * <p>
+	 * A modification of one set only adds or removes the items it modified.
+	 * </p>
+	 *
+	 * @param items
+	 *          the sets to follow
+	 * @return a new set, that is set once all the sets have received data.
+	 */
 	@SafeVarargs
 	public static <U> SetHolderImpl<U> union(SetHolder<U>... items) {
 		if (items == null || items.length == 0) {
 			return new SetHolderImpl<>();
 		}
-		return ObjHolder.reduce(List.of(items),
-		    () -> new SetHolderImpl<>(),
-		    sets -> {
-			    Set<U> union = new HashSet<>();
-			    for (Set<U> set : sets) {
-				    union.addAll(set);
-			    }
-			    return union;
-		    });
+		// copied, the varargs array is not kept
+		List<SetHolder<U>> inputs = new ArrayList<>();
+		for (SetHolder<U> item : items) {
+			inputs.add(item);
+		}
+		return Combination.follow(new Combination<>(inputs) {
+
+			@Override
+			boolean accept(U item, int count) {
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * create a set of the items present in all of several sets.
+	 * <p>
+	 * A modification of one set only adds or removes the items it modified.
+	 * </p>
+	 *
+	 * @param items
+	 *          the sets to follow
+	 * @return a new set, that is set once all the sets have received data.
+	 */
+	@SafeVarargs
+	public static <U> SetHolderImpl<U> intersection(SetHolder<U>... items) {
+		if (items == null || items.length == 0) {
+			return new SetHolderImpl<>();
+		}
+		List<SetHolder<U>> inputs = new ArrayList<>();
+		for (SetHolder<U> item : items) {
+			inputs.add(item);
+		}
+		return Combination.follow(new Combination<>(inputs) {
+
+			@Override
+			boolean accept(U item, int count) {
+				return count == contents.size();
+			}
+		});
+	}
+
+	/**
+	 * create a set of the items present in a set, and absent from several
+	 * others.
+	 * <p>
+	 * A modification of one set only adds or removes the items it modified.
+	 * </p>
+	 *
+	 * @param source
+	 *          the set of the items to keep
+	 * @param removed
+	 *          the sets of the items to remove
+	 * @return a new set, that is set once all the sets have received data.
+	 */
+	@SafeVarargs
+	public static <U> SetHolderImpl<U> difference(SetHolder<U> source, SetHolder<U>... removed) {
+		List<SetHolder<U>> inputs = new ArrayList<>();
+		inputs.add(source);
+		if (removed != null) {
+			for (SetHolder<U> item : removed) {
+				inputs.add(item);
+			}
+		}
+		return Combination.follow(new Combination<>(inputs) {
+
+			@Override
+			boolean accept(U item, int count) {
+				return count == 1 && contents.get(0).contains(item);
+			}
+		});
 	}
 
 	@Override
@@ -83,12 +311,158 @@ public class SetHolderImpl<U> extends ACollectionHolder<U, Set<U>> implements Se
 		super.set(Collections.emptySet());
 	}
 
+	@Override
+	protected Set<U> modifiableCopy(Set<U> source) {
+		return source == null ? new HashSet<>() : new HashSet<>(source);
+	}
+
+	@Override
+	protected Set<U> unmodifiableView(Set<U> data) {
+		return SetSnapshot.of(data);
+	}
+
+	@Override
+	protected boolean isOrdered() {
+		return false;
+	}
+
+	@Override
+	protected void recordReplace(Set<U> previous, Set<U> next) {
+		if (previous == null || !hasChangeFollowers()) {
+			super.recordReplace(previous, next);
+			return;
+		}
+		for (U u : previous) {
+			if (!next.contains(u)) {
+				recordRemove(-1, u);
+			}
+		}
+		for (U u : next) {
+			if (!previous.contains(u)) {
+				recordAdd(-1, u);
+			}
+		}
+	}
+
+	//
+	// modification of the items
+	//
+
+	/**
+	 * add an item in the set
+	 *
+	 * @param element
+	 *          the item to add
+	 * @return true if the item was not present
+	 */
+	public boolean add(U element) {
+		synchronized (this) {
+			if (read(set -> set.contains(element), false)) {
+				return false;
+			}
+			edit(set -> set.add(element));
+			recordAdd(-1, element);
+			changed();
+		}
+		publish();
+		return true;
+	}
+
+	/**
+	 * add several items in the set
+	 *
+	 * @param elements
+	 *          the items to add
+	 * @return true if an item was not present.
+	 */
+	public boolean addAll(Collection<? extends U> elements) {
+		boolean modified = false;
+		synchronized (this) {
+			for (U u : elements) {
+				if (edit(set -> set.add(u))) {
+					recordAdd(-1, u);
+					modified = true;
+				}
+			}
+			if (modified) {
+				changed();
+			}
+		}
+		publish();
+		return modified;
+	}
+
+	/**
+	 * remove an item from the set
+	 *
+	 * @param element
+	 *          the item to remove
+	 * @return true if the item was present
+	 */
+	public boolean remove(U element) {
+		synchronized (this) {
+			if (!read(set -> set.contains(element), false)) {
+				return false;
+			}
+			edit(set -> set.remove(element));
+			recordRemove(-1, element);
+			changed();
+		}
+		publish();
+		return true;
+	}
+
+	/**
+	 * remove several items from the set
+	 *
+	 * @param elements
+	 *          the items to remove
+	 * @return true if an item was present.
+	 */
+	public boolean removeAll(Collection<? extends U> elements) {
+		boolean modified = false;
+		synchronized (this) {
+			if (!isDataAvailable()) {
+				return false;
+			}
+			for (U u : elements) {
+				if (edit(set -> set.remove(u))) {
+					recordRemove(-1, u);
+					modified = true;
+				}
+			}
+			if (modified) {
+				changed();
+			}
+		}
+		publish();
+		return modified;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The predicate is only applied to the items added.
+	 * </p>
+	 */
 	@Override
 	public SetHolderImpl<U> filter(Predicate<? super U> predicate) {
 		SetHolderImpl<U> ret = new SetHolderImpl<>();
-		follow((t) -> {
-			Set<U> filteredSet = t.stream().filter(predicate).collect(Collectors.toSet());
-			ret.set(filteredSet);
+		followChanges(delta -> {
+			if (delta.isReset()) {
+				Set<U> filteredSet = delta.content().stream().filter(predicate).collect(Collectors.toSet());
+				ret.set(filteredSet);
+				return;
+			}
+			Propagation.batch(() -> {
+				for (Change<U> change : delta.changes()) {
+					if (!change.isAdd()) {
+						ret.remove(change.item());
+					} else if (predicate.test(change.item())) {
+						ret.add(change.item());
+					}
+				}
+			});
 		}, ret);
 		return ret;
 	}
@@ -96,9 +470,22 @@ public class SetHolderImpl<U> extends ACollectionHolder<U, Set<U>> implements Se
 	@Override
 	public SetHolderImpl<U> filterWhen(Function<? super U, BoolHolder> filterer) {
 		SetHolderImpl<U> ret = new SetHolderImpl<>();
-		filterWhen(filteredStream -> {
-			Set<U> filteredSet = filteredStream.collect(Collectors.toSet());
-			ret.set(filteredSet);
+		filterWhen(new ItemSink<U>() {
+
+			@Override
+			public void set(List<U> items) {
+				ret.set(new HashSet<>(items));
+			}
+
+			@Override
+			public void insert(int index, U item) {
+				ret.add(item);
+			}
+
+			@Override
+			public void remove(int index, U item) {
+				ret.remove(item);
+			}
 		}, filterer, ret);
 		return ret;
 	}
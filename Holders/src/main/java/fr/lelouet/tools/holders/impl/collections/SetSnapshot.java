@@ -0,0 +1,113 @@
+package fr.lelouet.tools.holders.impl.collections;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * the unmodifiable content of a {@link SetHolderImpl}, or the keys of a
+ * {@link MapSnapshot}.
+ * <p>
+ * The set it wraps is never modified once wrapped, so a snapshot can be
+ * transmitted without copying it, and its hashcode is only computed once. See
+ * {@link ListSnapshot}.
+ * </p>
+ *
+ * @param <U>
+ *          the type of the items
+ */
+public final class SetSnapshot<U> extends AbstractSet<U> {
+
+	/** the collection wrapped */
+	private final Set<U> items;
+
+	private final Set<U> view;
+
+	private int hash;
+
+	/** true when the hash is computed and is 0 */
+	private boolean hashIsZero;
+
+	SetSnapshot(Set<U> items) {
+		this.items = items;
+		view = Collections.unmodifiableSet(items);
+	}
+
+	/**
+	 *
+	 * @return the set as a snapshot, without wrapping it again if it is already
+	 *         one.
+	 */
+	static <U> Set<U> of(Set<U> items) {
+		return items instanceof SetSnapshot ? items : new SetSnapshot<>(items);
+	}
+
+	@Override
+	public int size() {
+		return view.size();
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return view.contains(o);
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		return view.containsAll(c);
+	}
+
+	@Override
+	public Iterator<U> iterator() {
+		return view.iterator();
+	}
+
+	@Override
+	public Object[] toArray() {
+		return view.toArray();
+	}
+
+	@Override
+	public <T> T[] toArray(T[] a) {
+		return view.toArray(a);
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0 && !hashIsZero) {
+			h = view.hashCode();
+			if (h == 0) {
+				hashIsZero = true;
+			} else {
+				hash = h;
+			}
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (o instanceof SetSnapshot) {
+			SetSnapshot<?> other = (SetSnapshot<?>) o;
+			if (other.items == items) {
+				return true;
+			}
+			if (other.hashCode() != hashCode()) {
+				return false;
+			}
+		}
+		return view.equals(o);
+	}
+
+	@Override
+	public String toString() {
+		return view.toString();
+	}
+
+}
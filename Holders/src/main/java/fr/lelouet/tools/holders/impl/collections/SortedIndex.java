@@ -0,0 +1,358 @@
+package fr.lelouet.tools.holders.impl.collections;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * items sorted by a comparator, that allows to insert or remove an item and get
+ * its rank in O(log(n)).
+ * <p>
+ * The items that are equal for the comparator are kept in the order they were
+ * inserted. Implemented as a treap whose nodes know the size of their subtree
+ * and their parent. The nodes of the items are also kept by identity, so an
+ * item is removed in O(log(n)) even when it was modified in place since it was
+ * inserted, and is no more at the place its comparison would give. Not thread
+ * safe.
+ * </p>
+ *
+ * @param <U>
+ *          the type of the items
+ */
+class SortedIndex<U> {
+
+	private static class Node<U> {
+
+		final U item;
+
+		final int priority;
+
+		int size = 1;
+
+		Node<U> left, right, parent;
+
+		Node(U item, int priority) {
+			this.item = item;
+			this.priority = priority;
+		}
+
+		void update() {
+			size = 1 + size(left) + size(right);
+			if (left != null) {
+				left.parent = this;
+			}
+			if (right != null) {
+				right.parent = this;
+			}
+		}
+
+		/**
+		 *
+		 * @return the number of nodes before this one in the tree.
+		 */
+		int rank() {
+			int ret = size(left);
+			for (Node<U> node = this; node.parent != null; node = node.parent) {
+				if (node.parent.right == node) {
+					ret += size(node.parent.left) + 1;
+				}
+			}
+			return ret;
+		}
+
+	}
+
+	private final Comparator<? super U> comparator;
+
+	private Node<U> root = null;
+
+	/**
+	 * the node of each item, by identity. When an item was inserted several
+	 * times, its value is the list of its nodes.
+	 */
+	private final IdentityHashMap<U, Object> nodes = new IdentityHashMap<>();
+
+	private int seed = 0x2545F491;
+
+	/**
+	 *
+	 * @param comparator
+	 *          the comparator of the items.
+	 */
+	public SortedIndex(Comparator<? super U> comparator) {
+		this.comparator = comparator;
+	}
+
+	private static int size(Node<?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private int nextPriority() {
+		// xorshift
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		return seed;
+	}
+
+	public int size() {
+		return size(root);
+	}
+
+	public void clear() {
+		root = null;
+		nodes.clear();
+	}
+
+	private void setRoot(Node<U> node) {
+		root = node;
+		if (node != null) {
+			node.parent = null;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void addNode(Node<U> node) {
+		Object previous = nodes.putIfAbsent(node.item, node);
+		if (previous instanceof List) {
+			((List<Node<U>>) previous).add(node);
+		} else if (previous != null) {
+			List<Node<U>> list = new ArrayList<>(2);
+			list.add((Node<U>) previous);
+			list.add(node);
+			nodes.put(node.item, list);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Node<U> anyNode(U item) {
+		Object o = nodes.get(item);
+		if (o instanceof List) {
+			List<Node<U>> list = (List<Node<U>>) o;
+			return list.get(list.size() - 1);
+		}
+		return (Node<U>) o;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void removeNode(Node<U> node) {
+		Object o = nodes.get(node.item);
+		if (o instanceof List) {
+			List<Node<U>> list = (List<Node<U>>) o;
+			list.remove(node);
+			if (list.size() == 1) {
+				nodes.put(node.item, list.get(0));
+			}
+		} else if (o == node) {
+			nodes.remove(node.item);
+		}
+	}
+
+	/**
+	 * add an item after the items that are lower or equal to it.
+	 *
+	 * @param item
+	 *          the item to add
+	 * @return the rank of the item once added.
+	 */
+	public int insert(U item) {
+		int rank = upperBound(item);
+		Node<U> node = new Node<>(item, nextPriority());
+		setRoot(insert(root, rank, node));
+		addNode(node);
+		return rank;
+	}
+
+	/**
+	 * remove an item. The item is first searched by identity, then among the
+	 * items equal for the comparator, and finally among all the items.
+	 *
+	 * @param item
+	 *          the item to remove
+	 * @return the rank the item had, or -1 if no item equal to it was present.
+	 */
+	public int remove(U item) {
+		Node<U> node = anyNode(item);
+		if (node == null) {
+			node = findEqual(item);
+			if (node == null) {
+				return -1;
+			}
+		}
+		int rank = node.rank();
+		setRoot(remove(root, rank));
+		removeNode(node);
+		return rank;
+	}
+
+	/**
+	 * find the node of an item equal to the given one, that is not the same
+	 * instance.
+	 */
+	private Node<U> findEqual(U item) {
+		int upper = upperBound(item);
+		for (int rank = lowerBound(item); rank < upper; rank++) {
+			Node<U> node = node(rank);
+			if (Objects.equals(node.item, item)) {
+				return node;
+			}
+		}
+		// the item was modified since it was inserted
+		Deque<Node<U>> stack = new ArrayDeque<>();
+		for (Node<U> node = root; node != null || !stack.isEmpty(); node = node.right) {
+			for (; node != null; node = node.left) {
+				stack.push(node);
+			}
+			node = stack.pop();
+			if (Objects.equals(node.item, item)) {
+				return node;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @param rank
+	 *          rank of an item, between 0 and {@link #size()} excluded
+	 * @return the item at that rank
+	 */
+	public U get(int rank) {
+		if (rank < 0 || rank >= size()) {
+			throw new IndexOutOfBoundsException("rank " + rank + " out of [0;" + size() + "[");
+		}
+		return node(rank).item;
+	}
+
+	private Node<U> node(int rank) {
+		Node<U> node = root;
+		while (true) {
+			int leftSize = size(node.left);
+			if (rank == leftSize) {
+				return node;
+			}
+			if (rank < leftSize) {
+				node = node.left;
+			} else {
+				rank -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of items strictly lower than the item.
+	 */
+	public int lowerBound(U item) {
+		int ret = 0;
+		Node<U> node = root;
+		while (node != null) {
+			if (comparator.compare(node.item, item) < 0) {
+				ret += size(node.left) + 1;
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 *
+	 * @return the number of items lower or equal to the item.
+	 */
+	public int upperBound(U item) {
+		int ret = 0;
+		Node<U> node = root;
+		while (node != null) {
+			if (comparator.compare(node.item, item) <= 0) {
+				ret += size(node.left) + 1;
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return ret;
+	}
+
+	private static <U> Node<U> insert(Node<U> node, int rank, Node<U> inserted) {
+		if (node == null) {
+			return inserted;
+		}
+		if (inserted.priority > node.priority) {
+			split(node, rank, inserted);
+			inserted.update();
+			return inserted;
+		}
+		int leftSize = size(node.left);
+		if (rank <= leftSize) {
+			node.left = insert(node.left, rank, inserted);
+		} else {
+			node.right = insert(node.right, rank - leftSize - 1, inserted);
+		}
+		node.update();
+		return node;
+	}
+
+	/**
+	 * split a tree into the nodes before a rank, set as the left of a target
+	 * node, and the nodes after, set as its right.
+	 */
+	private static <U> void split(Node<U> node, int rank, Node<U> target) {
+		if (node == null) {
+			target.left = null;
+			target.right = null;
+			return;
+		}
+		int leftSize = size(node.left);
+		if (rank <= leftSize) {
+			split(node.left, rank, target);
+			node.left = target.right;
+			node.update();
+			target.right = node;
+		} else {
+			split(node.right, rank - leftSize - 1, target);
+			node.right = target.left;
+			node.update();
+			target.left = node;
+		}
+	}
+
+	private static <U> Node<U> merge(Node<U> left, Node<U> right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			left.update();
+			return left;
+		} else {
+			right.left = merge(left, right.left);
+			right.update();
+			return right;
+		}
+	}
+
+	private static <U> Node<U> remove(Node<U> node, int rank) {
+		int leftSize = size(node.left);
+		if (rank == leftSize) {
+			return merge(node.left, node.right);
+		}
+		if (rank < leftSize) {
+			node.left = remove(node.left, rank);
+		} else {
+			node.right = remove(node.right, rank - leftSize - 1);
+		}
+		node.update();
+		return node;
+	}
+
+}
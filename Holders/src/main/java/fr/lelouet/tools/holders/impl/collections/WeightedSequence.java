@@ -0,0 +1,367 @@
+package fr.lelouet.tools.holders.impl.collections;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * sequence of int weights, that allows to insert or remove a weight at a
+ * position, and to sum the weights before a position, in O(log(n)).
+ * <p>
+ * This is used to translate a position in a source list into a position in a
+ * derived list, eg the position of an item in a filtered list is the number of
+ * accepted items before it in the source.
+ * </p>
+ * <p>
+ * The nodes can also be created by the caller, typically extended to store the
+ * element at that position, and inserted with {@link #insert(int, Node)}. The
+ * position of such a node can then be retrieved with {@link #index(Node)} in
+ * O(log(n)), so elements can be kept in the order of a list without updating
+ * their position each time an element is inserted or removed before them.
+ * </p>
+ * <p>
+ * Implemented as an implicit treap : the position of a node is the number of
+ * nodes on its left. Not thread safe.
+ * </p>
+ */
+class WeightedSequence {
+
+	/**
+	 * a weight in the sequence.
+	 */
+	static class Node {
+
+		private int priority;
+
+		private int weight;
+
+		/** number of nodes in this subtree */
+		private int size = 1;
+
+		/** sum of the weights in this subtree */
+		private long sum;
+
+		private Node left, right, parent;
+
+		Node(int weight) {
+			this.weight = weight;
+			sum = weight;
+		}
+
+		int weight() {
+			return weight;
+		}
+
+		private void update() {
+			size = 1 + size(left) + size(right);
+			sum = weight + sum(left) + sum(right);
+			if (left != null) {
+				left.parent = this;
+			}
+			if (right != null) {
+				right.parent = this;
+			}
+		}
+
+	}
+
+	private Node root = null;
+
+	private int seed = 0x2545F491;
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static long sum(Node node) {
+		return node == null ? 0 : node.sum;
+	}
+
+	private int nextPriority() {
+		// xorshift
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		return seed;
+	}
+
+	/**
+	 *
+	 * @return the number of weights in the sequence.
+	 */
+	public int size() {
+		return size(root);
+	}
+
+	/**
+	 *
+	 * @return the sum of all the weights.
+	 */
+	public long total() {
+		return sum(root);
+	}
+
+	public void clear() {
+		root = null;
+	}
+
+	private void setRoot(Node node) {
+		root = node;
+		if (node != null) {
+			node.parent = null;
+		}
+	}
+
+	/**
+	 * add a weight at the end of the sequence.
+	 */
+	public void add(int weight) {
+		insert(size(), weight);
+	}
+
+	/**
+	 * insert a weight
+	 *
+	 * @param index
+	 *          the position of the weight once inserted, between 0 and
+	 *          {@link #size()}
+	 * @param weight
+	 *          the weight to insert
+	 */
+	public void insert(int index, int weight) {
+		insert(index, new Node(weight));
+	}
+
+	/**
+	 * insert a node created by the caller
+	 *
+	 * @param index
+	 *          the position of the node once inserted, between 0 and
+	 *          {@link #size()}
+	 * @param node
+	 *          a new node, not inserted in any sequence yet
+	 */
+	public void insert(int index, Node node) {
+		checkIndex(index, size() + 1);
+		node.priority = nextPriority();
+		node.size = 1;
+		node.sum = node.weight;
+		node.left = node.right = null;
+		setRoot(insert(root, index, node));
+	}
+
+	private static Node insert(Node node, int index, Node inserted) {
+		if (node == null) {
+			return inserted;
+		}
+		if (inserted.priority > node.priority) {
+			Node[] split = split(node, index);
+			inserted.left = split[0];
+			inserted.right = split[1];
+			inserted.update();
+			return inserted;
+		}
+		int leftSize = size(node.left);
+		if (index <= leftSize) {
+			node.left = insert(node.left, index, inserted);
+		} else {
+			node.right = insert(node.right, index - leftSize - 1, inserted);
+		}
+		node.update();
+		return node;
+	}
+
+	/**
+	 * split a tree into the nodes before a position and the nodes after.
+	 */
+	private static Node[] split(Node node, int index) {
+		if (node == null) {
+			return new Node[2];
+		}
+		int leftSize = size(node.left);
+		if (index <= leftSize) {
+			Node[] split = split(node.left, index);
+			node.left = split[1];
+			node.update();
+			split[1] = node;
+			return split;
+		} else {
+			Node[] split = split(node.right, index - leftSize - 1);
+			node.right = split[0];
+			node.update();
+			split[0] = node;
+			return split;
+		}
+	}
+
+	private static Node merge(Node left, Node right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			left.update();
+			return left;
+		} else {
+			right.left = merge(left, right.left);
+			right.update();
+			return right;
+		}
+	}
+
+	/**
+	 * remove the weight at a position
+	 *
+	 * @param index
+	 *          position of the weight, between 0 and {@link #size()} excluded.
+	 * @return the weight removed
+	 */
+	public int remove(int index) {
+		checkIndex(index, size());
+		int[] removed = new int[1];
+		setRoot(remove(root, index, removed));
+		return removed[0];
+	}
+
+	private static Node remove(Node node, int index, int[] removed) {
+		int leftSize = size(node.left);
+		if (index == leftSize) {
+			removed[0] = node.weight;
+			return merge(node.left, node.right);
+		}
+		if (index < leftSize) {
+			node.left = remove(node.left, index, removed);
+		} else {
+			node.right = remove(node.right, index - leftSize - 1, removed);
+		}
+		node.update();
+		return node;
+	}
+
+	/**
+	 *
+	 * @param index
+	 *          position of the weight, between 0 and {@link #size()} excluded.
+	 * @return the weight at that position
+	 */
+	public int get(int index) {
+		return node(index).weight;
+	}
+
+	/**
+	 *
+	 * @param index
+	 *          position of the weight, between 0 and {@link #size()} excluded.
+	 * @return the node at that position
+	 */
+	public Node node(int index) {
+		checkIndex(index, size());
+		Node node = root;
+		while (true) {
+			int leftSize = size(node.left);
+			if (index == leftSize) {
+				return node;
+			}
+			if (index < leftSize) {
+				node = node.left;
+			} else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * change the weight at a position
+	 *
+	 * @param index
+	 *          position of the weight, between 0 and {@link #size()} excluded.
+	 * @param weight
+	 *          the new weight
+	 * @return the previous weight
+	 */
+	public int set(int index, int weight) {
+		checkIndex(index, size());
+		int[] previous = new int[1];
+		set(root, index, weight, previous);
+		return previous[0];
+	}
+
+	private static void set(Node node, int index, int weight, int[] previous) {
+		int leftSize = size(node.left);
+		if (index == leftSize) {
+			previous[0] = node.weight;
+			node.weight = weight;
+		} else if (index < leftSize) {
+			set(node.left, index, weight, previous);
+		} else {
+			set(node.right, index - leftSize - 1, weight, previous);
+		}
+		node.update();
+	}
+
+	/**
+	 *
+	 * @param index
+	 *          a position, between 0 and {@link #size()} included.
+	 * @return the sum of the weights strictly before the position.
+	 */
+	public long prefix(int index) {
+		checkIndex(index, size() + 1);
+		long ret = 0;
+		Node node = root;
+		while (node != null) {
+			int leftSize = size(node.left);
+			if (index <= leftSize) {
+				node = node.left;
+			} else {
+				ret += sum(node.left) + node.weight;
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 *
+	 * @param node
+	 *          a node in this sequence
+	 * @return the position of the node.
+	 */
+	public int index(Node node) {
+		int ret = size(node.left);
+		for (; node.parent != null; node = node.parent) {
+			if (node.parent.right == node) {
+				ret += size(node.parent.left) + 1;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * apply an action to the nodes, in their order in the sequence
+	 */
+	public void forEach(Consumer<? super Node> action) {
+		ArrayDeque<Node> stack = new ArrayDeque<>();
+		for (Node node = root; node != null; node = node.left) {
+			stack.push(node);
+		}
+		while (!stack.isEmpty()) {
+			Node next = stack.pop();
+			for (Node node = next.right; node != null; node = node.left) {
+				stack.push(node);
+			}
+			action.accept(next);
+		}
+	}
+
+	private static void checkIndex(int index, int bound) {
+		if (index < 0 || index >= bound) {
+			throw new IndexOutOfBoundsException("index " + index + " out of [0;" + bound + "[");
+		}
+	}
+
+}
@@ -0,0 +1,219 @@
+package fr.lelouet.tools.holders.impl.numbers;
+
+import java.util.function.Consumer;
+
+import fr.lelouet.tools.holders.impl.CopyOnWriteFollowers;
+import fr.lelouet.tools.holders.impl.Propagation;
+import fr.lelouet.tools.holders.interfaces.numbers.NumberHolder;
+import fr.lelouet.tools.lambdaref.references.IRef;
+
+/**
+ * number holder that stores a primitive value, and has followers of the
+ * primitive values.
+ * <p>
+ * The subclasses store and compare the primitive value, and apply their
+ * operators to it. This keeps the primitive followers, transmits the values to
+ * them without allocating, and combines the values of two holders.
+ * </p>
+ *
+ * @param <L>
+ *          the type of the primitive followers, eg IntConsumer
+ */
+abstract class APrimitiveNumberHolderImpl<Contained extends Number, Self extends NumberHolder<Contained, Self>, L>
+extends ANumberHolderImpl<Contained, Self> {
+
+	private final CopyOnWriteFollowers<L> primitiveFollowers = new CopyOnWriteFollowers<>();
+
+	/**
+	 * add a follower of the primitive values. It receives the current value if
+	 * there is one.
+	 *
+	 * @param listener
+	 *          the follower
+	 * @param holder
+	 *          the holder the follower modifies, see
+	 *          {@link #register(CopyOnWriteFollowers, Object, Consumer)}
+	 */
+	protected void followPrimitive(L listener, Consumer<Object> holder) {
+		IRef<L> ref = register(primitiveFollowers, listener, holder);
+		if (isDataAvailable()) {
+			synchronized (this) {
+				if (!primitiveFollowers.dispatched(ref)) {
+					propagate(sendCurrent(listener));
+				}
+			}
+			publish();
+		}
+	}
+
+	protected void unfollowPrimitive(L listener) {
+		unregister(primitiveFollowers, listener);
+	}
+
+	/**
+	 * called inside the monitor of this
+	 *
+	 * @return the transmission of the current value to a single follower.
+	 */
+	protected abstract Runnable sendCurrent(L listener);
+
+	@Override
+	public int followers() {
+		return super.followers() + primitiveFollowers.size();
+	}
+
+	/** the last transmission created, reused once it has run */
+	private Transmission reusable = null;
+
+	@Override
+	protected Runnable transmission() {
+		Runnable boxed = super.transmission();
+		IRef<L>[] snapshot = primitiveFollowers.dispatch();
+		if (snapshot.length == 0) {
+			return boxed;
+		}
+		if (reusable == null || reusable.queued) {
+			reusable = newTransmission();
+		}
+		Transmission transmission = reusable;
+		transmission.boxed = boxed;
+		transmission.snapshot = snapshot;
+		transmission.store();
+		transmission.queued = true;
+		return transmission;
+	}
+
+	/**
+	 *
+	 * @return a new transmission, that stores the primitive value of this.
+	 */
+	protected abstract Transmission newTransmission();
+
+	/**
+	 * transmission of a value to the boxed followers, then to the primitive
+	 * followers. It is reused once it has run, so that setting a value does not
+	 * allocate.
+	 */
+	protected abstract class Transmission implements Runnable {
+
+		private Runnable boxed;
+
+		private IRef<L>[] snapshot;
+
+		/** true from its creation by {@link #transmission()} until it has run */
+		private volatile boolean queued = false;
+
+		/**
+		 * store the current value of the holder. Called inside its monitor.
+		 */
+		protected abstract void store();
+
+		/**
+		 * transmit the value stored to a follower.
+		 */
+		protected abstract void deliver(L listener);
+
+		@Override
+		public void run() {
+			try {
+				if (boxed != null) {
+					boxed.run();
+				}
+				boolean collected = false;
+				for (IRef<L> ref : snapshot) {
+					L cons = ref.get();
+					if (cons == null) {
+						collected = true;
+					} else {
+						deliver(cons);
+					}
+				}
+				if (collected) {
+					primitiveFollowers.removeCollected();
+				}
+			} finally {
+				boxed = null;
+				snapshot = null;
+				queued = false;
+			}
+		}
+
+	}
+
+	/**
+	 * last values received from the two operands of a derivation. As for
+	 * {@link fr.lelouet.tools.holders.interfaces.ObjHolder#combine combine}, the
+	 * operator is only applied once per change.
+	 *
+	 * @param <L>
+	 *          the type of the primitive followers
+	 * @param <H>
+	 *          the type of the result
+	 */
+	protected abstract static class Combination<L, H extends APrimitiveNumberHolderImpl<?, ?, L>> {
+
+		protected final H target;
+
+		private final Runnable update = this::update;
+
+		private boolean hasA = false, hasB = false;
+
+		protected Combination(H target) {
+			this.target = target;
+		}
+
+		/**
+		 * @return a follower of the first operand, that stores its value then calls
+		 *         {@link #received(boolean)}
+		 */
+		protected abstract L first();
+
+		/**
+		 * @return a follower of the second operand, that stores its value then
+		 *         calls {@link #received(boolean)}
+		 */
+		protected abstract L second();
+
+		/**
+		 * set the target to the application of the operator on the two values.
+		 * Called inside the monitor of this.
+		 */
+		protected abstract void apply();
+
+		/**
+		 * schedule the update of the target once a value is stored.
+		 *
+		 * @param first
+		 *          true if the value is the one of the first operand
+		 */
+		protected void received(boolean first) {
+			synchronized (this) {
+				if (first) {
+					hasA = true;
+				} else {
+					hasB = true;
+				}
+			}
+			Propagation.schedule(target, update);
+		}
+
+		private synchronized void update() {
+			if (hasA && hasB) {
+				apply();
+			}
+		}
+
+		/**
+		 * follow the two operands
+		 *
+		 * @return the target
+		 */
+		H follow(APrimitiveNumberHolderImpl<?, ?, L> a, APrimitiveNumberHolderImpl<?, ?, L> b) {
+			a.followPrimitive(first(), target);
+			b.followPrimitive(second(), target);
+			return target;
+		}
+
+	}
+
+}
@@ -4,6 +4,10 @@ import fr.lelouet.tools.holders.impl.NotNullObjHolderImpl;
 import fr.lelouet.tools.holders.interfaces.ObjHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.BoolHolder;
 
+/**
+ * boolean holder that stores a primitive boolean. The boxed values transmitted
+ * are {@link Boolean#TRUE} and {@link Boolean#FALSE}, so no allocation is done.
+ */
 public class BoolHolderImpl extends NotNullObjHolderImpl<Boolean> implements BoolHolder {
 
 	public static BoolHolderImpl of(boolean value) {
@@ -14,7 +18,41 @@ public class BoolHolderImpl extends NotNullObjHolderImpl<Boolean> implements Boo
 	}
 
 	public BoolHolderImpl(boolean value) {
-		super(value);
+		set(value);
+	}
+
+	/** the value hold. The boxed {@link #item} is not used. */
+	protected boolean value;
+
+	@Override
+	protected Boolean current() {
+		return value;
+	}
+
+	@Override
+	public boolean getBool() {
+		waitData();
+		return value;
+	}
+
+	@Override
+	public void set(Boolean newitem) {
+		if (newitem == null) {
+			throw new UnsupportedOperationException("null item forbidden");
+		}
+		set(newitem.booleanValue());
+	}
+
+	public void set(boolean newValue) {
+		synchronized (this) {
+			if (isDataAvailable() && newValue == value) {
+				suppressed();
+				return;
+			}
+			value = newValue;
+			changed();
+		}
+		publish();
 	}
 
 	private BoolHolder not = null;
@@ -29,6 +67,8 @@ public class BoolHolderImpl extends NotNullObjHolderImpl<Boolean> implements Boo
 					not = other;
 				}
 			}
+			// the first value of the negation is sent once the monitor is released
+			publish();
 		}
 		return not;
 	}
@@ -1,11 +1,26 @@
 package fr.lelouet.tools.holders.impl.numbers;
 
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleToIntFunction;
+import java.util.function.DoubleUnaryOperator;
+
 import fr.lelouet.tools.holders.interfaces.numbers.DoubleHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.IntHolder;
 import lombok.Getter;
 import lombok.experimental.Accessors;
 
-public class DoubleHolderImpl extends ANumberHolderImpl<Double, DoubleHolder> implements DoubleHolder {
+/**
+ * Double holder that stores a primitive double.
+ * <p>
+ * The value is only boxed when it is read with {@link #get()}, or transmitted to
+ * the boxed followers. The primitive followers added with
+ * {@link #followDouble(DoubleConsumer, Consumer)}, and the arithmetic operations with a
+ * constant or another DoubleHolderImpl, don't box the values.
+ * </p>
+ */
+public class DoubleHolderImpl extends APrimitiveNumberHolderImpl<Double, DoubleHolder, DoubleConsumer> implements DoubleHolder {
 
 	public static DoubleHolderImpl of(Number value) {
 		return new DoubleHolderImpl(value.doubleValue());
@@ -15,7 +30,7 @@ public class DoubleHolderImpl extends ANumberHolderImpl<Double, DoubleHolder> im
 	}
 
 	public DoubleHolderImpl(double value) {
-		super(value);
+		set(value);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -24,14 +39,213 @@ public class DoubleHolderImpl extends ANumberHolderImpl<Double, DoubleHolder> im
 		return new DoubleHolderImpl();
 	}
 
+	/** the value hold. The boxed {@link #item} is not used. */
+	protected double value;
+
+	@Override
+	protected Double current() {
+		return value;
+	}
+
+	@Override
+	public double getDouble() {
+		waitData();
+		return value;
+	}
+
+	@Override
+	public void set(Double newitem) {
+		if (newitem == null) {
+			throw new UnsupportedOperationException("null item forbidden");
+		}
+		set(newitem.doubleValue());
+	}
+
+	public void set(double newValue) {
+		synchronized (this) {
+			if (isDataAvailable() && Double.doubleToLongBits(newValue) == Double.doubleToLongBits(value)) {
+				suppressed();
+				return;
+			}
+			value = newValue;
+			changed();
+		}
+		publish();
+	}
+
+	@Override
+	public DoubleHolderImpl followDouble(DoubleConsumer listener, Consumer<Object> holder) {
+		followPrimitive(listener, holder);
+		return this;
+	}
+
+	@Override
+	public void unfollowDouble(DoubleConsumer listener) {
+		unfollowPrimitive(listener);
+	}
+
+	@Override
+	protected Runnable sendCurrent(DoubleConsumer listener) {
+		double v = value;
+		return () -> listener.accept(v);
+	}
+
+	@Override
+	protected Transmission newTransmission() {
+		return new Transmission() {
+
+			private double stored;
+
+			@Override
+			protected void store() {
+				stored = value;
+			}
+
+			@Override
+			protected void deliver(DoubleConsumer listener) {
+				listener.accept(stored);
+			}
+		};
+	}
+
+	//
+	// derivations without boxing
+	//
+
+	/**
+	 * create a holder on the application of an operator to the values of this.
+	 *
+	 * @param op
+	 *          the operator to apply
+	 * @return a new holder
+	 */
+	protected DoubleHolderImpl derive(DoubleUnaryOperator op) {
+		DoubleHolderImpl ret = create();
+		followDouble(v -> ret.set(op.applyAsDouble(v)), ret);
+		return ret;
+	}
+
+	/**
+	 * create a holder on the application of an operator to the values of this
+	 * and another holder. As for
+	 * {@link fr.lelouet.tools.holders.interfaces.ObjHolder#combine combine}, the
+	 * operator is only applied once per change.
+	 *
+	 * @param other
+	 *          the second operand
+	 * @param op
+	 *          the operator to apply
+	 * @return a new holder
+	 */
+	protected DoubleHolderImpl derive(DoubleHolderImpl other, DoubleBinaryOperator op) {
+		return new Combination<DoubleConsumer, DoubleHolderImpl>(create()) {
+
+			private double a, b;
+
+			@Override
+			protected DoubleConsumer first() {
+				return v -> {
+					synchronized (this) {
+						a = v;
+					}
+					received(true);
+				};
+			}
+
+			@Override
+			protected DoubleConsumer second() {
+				return v -> {
+					synchronized (this) {
+						b = v;
+					}
+					received(false);
+				};
+			}
+
+			@Override
+			protected void apply() {
+				target.set(op.applyAsDouble(a, b));
+			}
+		}.follow(this, other);
+	}
+
+	@Override
+	public DoubleHolder add(Double b) {
+		double pb = b;
+		return derive(a -> a + pb);
+	}
+
+	@Override
+	public DoubleHolder sub(Double b) {
+		double pb = b;
+		return derive(a -> a - pb);
+	}
+
+	@Override
+	public DoubleHolder mult(Double b) {
+		double pb = b;
+		return derive(a -> a * pb);
+	}
+
+	@Override
+	public DoubleHolder div(Double b) {
+		double pb = b;
+		return derive(a -> a / pb);
+	}
+
+	@Override
+	public DoubleHolder add(DoubleHolder other) {
+		if (other instanceof DoubleHolderImpl) {
+			return derive((DoubleHolderImpl) other, (a, b) -> a + b);
+		}
+		return DoubleHolder.super.add(other);
+	}
+
+	@Override
+	public DoubleHolder sub(DoubleHolder other) {
+		if (other instanceof DoubleHolderImpl) {
+			return derive((DoubleHolderImpl) other, (a, b) -> a - b);
+		}
+		return DoubleHolder.super.sub(other);
+	}
+
+	@Override
+	public DoubleHolder mult(DoubleHolder other) {
+		if (other instanceof DoubleHolderImpl) {
+			return derive((DoubleHolderImpl) other, (a, b) -> a * b);
+		}
+		return DoubleHolder.super.mult(other);
+	}
+
+	@Override
+	public DoubleHolder div(DoubleHolder other) {
+		if (other instanceof DoubleHolderImpl) {
+			return derive((DoubleHolderImpl) other, (a, b) -> a / b);
+		}
+		return DoubleHolder.super.div(other);
+	}
+
+	/**
+	 * create an int holder on the application of a function to the values of
+	 * this, without boxing.
+	 *
+	 * @param op
+	 *          the function to apply
+	 * @return a new holder
+	 */
+	protected IntHolderImpl deriveInt(DoubleToIntFunction op) {
+		IntHolderImpl ret = new IntHolderImpl();
+		followDouble(v -> ret.set(op.applyAsInt(v)), ret);
+		return ret;
+	}
+
 	@Getter(lazy = true)
 	@Accessors(fluent = true)
-	private final IntHolder ceil = mapInt(d -> (int) Math.ceil(d));
+	private final IntHolder ceil = deriveInt(d -> (int) Math.ceil(d));
 
 	@Getter(lazy = true)
 	@Accessors(fluent = true)
-	private final IntHolder floor = mapInt(d -> (int) Math.floor(d));
-
+	private final IntHolder floor = deriveInt(d -> (int) Math.floor(d));
 
 	@Override
 	public Double add(Double a, Double b) {
@@ -77,4 +291,5 @@ public class DoubleHolderImpl extends ANumberHolderImpl<Double, DoubleHolder> im
 	public boolean eq(Double a, Double b) {
 		return a == b;
 	}
+
 }
@@ -1,11 +1,26 @@
 package fr.lelouet.tools.holders.impl.numbers;
 
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleToIntFunction;
+import java.util.function.DoubleUnaryOperator;
+
+import fr.lelouet.tools.holders.interfaces.numbers.FloatConsumer;
 import fr.lelouet.tools.holders.interfaces.numbers.FloatHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.IntHolder;
 import lombok.Getter;
 import lombok.experimental.Accessors;
 
-public class FloatHolderImpl extends ANumberHolderImpl<Float, FloatHolder> implements FloatHolder {
+/**
+ * Float holder that stores a primitive float.
+ * <p>
+ * The value is only boxed when it is read with {@link #get()}, or transmitted to
+ * the boxed followers. The primitive followers added with
+ * {@link #followFloat(FloatConsumer, Consumer)}, and the arithmetic operations with a
+ * constant or another FloatHolderImpl, don't box the values.
+ * </p>
+ */
+public class FloatHolderImpl extends APrimitiveNumberHolderImpl<Float, FloatHolder, FloatConsumer> implements FloatHolder {
 
 	public static FloatHolderImpl of(Number value) {
 		return new FloatHolderImpl(value.floatValue());
@@ -15,7 +30,7 @@ public class FloatHolderImpl extends ANumberHolderImpl<Float, FloatHolder> imple
 	}
 
 	public FloatHolderImpl(float value) {
-		super(value);
+		set(value);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -24,6 +39,214 @@ public class FloatHolderImpl extends ANumberHolderImpl<Float, FloatHolder> imple
 		return new FloatHolderImpl();
 	}
 
+	/** the value hold. The boxed {@link #item} is not used. */
+	protected float value;
+
+	@Override
+	protected Float current() {
+		return value;
+	}
+
+	@Override
+	public float getFloat() {
+		waitData();
+		return value;
+	}
+
+	@Override
+	public void set(Float newitem) {
+		if (newitem == null) {
+			throw new UnsupportedOperationException("null item forbidden");
+		}
+		set(newitem.floatValue());
+	}
+
+	public void set(float newValue) {
+		synchronized (this) {
+			if (isDataAvailable() && Float.floatToIntBits(newValue) == Float.floatToIntBits(value)) {
+				suppressed();
+				return;
+			}
+			value = newValue;
+			changed();
+		}
+		publish();
+	}
+
+	@Override
+	public FloatHolderImpl followFloat(FloatConsumer listener, Consumer<Object> holder) {
+		followPrimitive(listener, holder);
+		return this;
+	}
+
+	@Override
+	public void unfollowFloat(FloatConsumer listener) {
+		unfollowPrimitive(listener);
+	}
+
+	@Override
+	protected Runnable sendCurrent(FloatConsumer listener) {
+		float v = value;
+		return () -> listener.accept(v);
+	}
+
+	@Override
+	protected Transmission newTransmission() {
+		return new Transmission() {
+
+			private float stored;
+
+			@Override
+			protected void store() {
+				stored = value;
+			}
+
+			@Override
+			protected void deliver(FloatConsumer listener) {
+				listener.accept(stored);
+			}
+		};
+	}
+
+	//
+	// derivations without boxing
+	//
+
+	/**
+	 * create a holder on the application of an operator to the values of this.
+	 *
+	 * @param op
+	 *          the operator to apply
+	 * @return a new holder
+	 */
+	protected FloatHolderImpl derive(DoubleUnaryOperator op) {
+		FloatHolderImpl ret = create();
+		followFloat(v -> ret.set((float) op.applyAsDouble(v)), ret);
+		return ret;
+	}
+
+	/**
+	 * create a holder on the application of an operator to the values of this
+	 * and another holder. As for
+	 * {@link fr.lelouet.tools.holders.interfaces.ObjHolder#combine combine}, the
+	 * operator is only applied once per change.
+	 *
+	 * @param other
+	 *          the second operand
+	 * @param op
+	 *          the operator to apply
+	 * @return a new holder
+	 */
+	protected FloatHolderImpl derive(FloatHolderImpl other, DoubleBinaryOperator op) {
+		return new Combination<FloatConsumer, FloatHolderImpl>(create()) {
+
+			private float a, b;
+
+			@Override
+			protected FloatConsumer first() {
+				return v -> {
+					synchronized (this) {
+						a = v;
+					}
+					received(true);
+				};
+			}
+
+			@Override
+			protected FloatConsumer second() {
+				return v -> {
+					synchronized (this) {
+						b = v;
+					}
+					received(false);
+				};
+			}
+
+			@Override
+			protected void apply() {
+				target.set((float) op.applyAsDouble(a, b));
+			}
+		}.follow(this, other);
+	}
+
+	@Override
+	public FloatHolder add(Float b) {
+		float pb = b;
+		return derive(a -> a + pb);
+	}
+
+	@Override
+	public FloatHolder sub(Float b) {
+		float pb = b;
+		return derive(a -> a - pb);
+	}
+
+	@Override
+	public FloatHolder mult(Float b) {
+		float pb = b;
+		return derive(a -> a * pb);
+	}
+
+	@Override
+	public FloatHolder div(Float b) {
+		float pb = b;
+		return derive(a -> a / pb);
+	}
+
+	@Override
+	public FloatHolder add(FloatHolder other) {
+		if (other instanceof FloatHolderImpl) {
+			return derive((FloatHolderImpl) other, (a, b) -> a + b);
+		}
+		return FloatHolder.super.add(other);
+	}
+
+	@Override
+	public FloatHolder sub(FloatHolder other) {
+		if (other instanceof FloatHolderImpl) {
+			return derive((FloatHolderImpl) other, (a, b) -> a - b);
+		}
+		return FloatHolder.super.sub(other);
+	}
+
+	@Override
+	public FloatHolder mult(FloatHolder other) {
+		if (other instanceof FloatHolderImpl) {
+			return derive((FloatHolderImpl) other, (a, b) -> a * b);
+		}
+		return FloatHolder.super.mult(other);
+	}
+
+	@Override
+	public FloatHolder div(FloatHolder other) {
+		if (other instanceof FloatHolderImpl) {
+			return derive((FloatHolderImpl) other, (a, b) -> a / b);
+		}
+		return FloatHolder.super.div(other);
+	}
+
+	/**
+	 * create an int holder on the application of a function to the values of
+	 * this, without boxing.
+	 *
+	 * @param op
+	 *          the function to apply
+	 * @return a new holder
+	 */
+	protected IntHolderImpl deriveInt(DoubleToIntFunction op) {
+		IntHolderImpl ret = new IntHolderImpl();
+		followFloat(v -> ret.set(op.applyAsInt(v)), ret);
+		return ret;
+	}
+
+	@Getter(lazy = true)
+	@Accessors(fluent = true)
+	private final IntHolder ceil = deriveInt(d -> (int) Math.ceil(d));
+
+	@Getter(lazy = true)
+	@Accessors(fluent = true)
+	private final IntHolder floor = deriveInt(d -> (int) Math.floor(d));
+
 	@Override
 	public Float add(Float a, Float b) {
 		return a + b;
@@ -69,12 +292,4 @@ public class FloatHolderImpl extends ANumberHolderImpl<Float, FloatHolder> imple
 		return a == b;
 	}
 
-	@Getter(lazy = true)
-	@Accessors(fluent = true)
-	private final IntHolder ceil = mapInt(d -> (int) Math.ceil(d));
-
-	@Getter(lazy = true)
-	@Accessors(fluent = true)
-	private final IntHolder floor = mapInt(d -> (int) Math.floor(d));
-
 }
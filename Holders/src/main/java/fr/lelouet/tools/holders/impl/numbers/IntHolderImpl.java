@@ -1,8 +1,22 @@
 package fr.lelouet.tools.holders.impl.numbers;
 
+import java.util.function.Consumer;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
 import fr.lelouet.tools.holders.interfaces.numbers.IntHolder;
 
-public class IntHolderImpl extends ANumberHolderImpl<Integer, IntHolder> implements IntHolder {
+/**
+ * Integer holder that stores a primitive int.
+ * <p>
+ * The value is only boxed when it is read with {@link #get()}, or transmitted to
+ * the boxed followers. The primitive followers added with
+ * {@link #followInt(IntConsumer, Consumer)}, and the arithmetic operations with a
+ * constant or another IntHolderImpl, don't box the values.
+ * </p>
+ */
+public class IntHolderImpl extends APrimitiveNumberHolderImpl<Integer, IntHolder, IntConsumer> implements IntHolder {
 
 	public static IntHolderImpl of(Number value) {
 		return new IntHolderImpl(value.intValue());
@@ -12,7 +26,7 @@ public class IntHolderImpl extends ANumberHolderImpl<Integer, IntHolder> impleme
 	}
 
 	public IntHolderImpl(int value) {
-		super(value);
+		set(value);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -21,6 +35,192 @@ public class IntHolderImpl extends ANumberHolderImpl<Integer, IntHolder> impleme
 		return new IntHolderImpl();
 	}
 
+	/** the value hold. The boxed {@link #item} is not used. */
+	protected int value;
+
+	@Override
+	protected Integer current() {
+		return value;
+	}
+
+	@Override
+	public int getInt() {
+		waitData();
+		return value;
+	}
+
+	@Override
+	public void set(Integer newitem) {
+		if (newitem == null) {
+			throw new UnsupportedOperationException("null item forbidden");
+		}
+		set(newitem.intValue());
+	}
+
+	public void set(int newValue) {
+		synchronized (this) {
+			if (isDataAvailable() && newValue == value) {
+				suppressed();
+				return;
+			}
+			value = newValue;
+			changed();
+		}
+		publish();
+	}
+
+	@Override
+	public IntHolderImpl followInt(IntConsumer listener, Consumer<Object> holder) {
+		followPrimitive(listener, holder);
+		return this;
+	}
+
+	@Override
+	public void unfollowInt(IntConsumer listener) {
+		unfollowPrimitive(listener);
+	}
+
+	@Override
+	protected Runnable sendCurrent(IntConsumer listener) {
+		int v = value;
+		return () -> listener.accept(v);
+	}
+
+	@Override
+	protected Transmission newTransmission() {
+		return new Transmission() {
+
+			private int stored;
+
+			@Override
+			protected void store() {
+				stored = value;
+			}
+
+			@Override
+			protected void deliver(IntConsumer listener) {
+				listener.accept(stored);
+			}
+		};
+	}
+
+	//
+	// derivations without boxing
+	//
+
+	/**
+	 * create a holder on the application of an operator to the values of this.
+	 *
+	 * @param op
+	 *          the operator to apply
+	 * @return a new holder
+	 */
+	protected IntHolderImpl derive(IntUnaryOperator op) {
+		IntHolderImpl ret = create();
+		followInt(v -> ret.set(op.applyAsInt(v)), ret);
+		return ret;
+	}
+
+	/**
+	 * create a holder on the application of an operator to the values of this
+	 * and another holder. As for
+	 * {@link fr.lelouet.tools.holders.interfaces.ObjHolder#combine combine}, the
+	 * operator is only applied once per change.
+	 *
+	 * @param other
+	 *          the second operand
+	 * @param op
+	 *          the operator to apply
+	 * @return a new holder
+	 */
+	protected IntHolderImpl derive(IntHolderImpl other, IntBinaryOperator op) {
+		return new Combination<IntConsumer, IntHolderImpl>(create()) {
+
+			private int a, b;
+
+			@Override
+			protected IntConsumer first() {
+				return v -> {
+					synchronized (this) {
+						a = v;
+					}
+					received(true);
+				};
+			}
+
+			@Override
+			protected IntConsumer second() {
+				return v -> {
+					synchronized (this) {
+						b = v;
+					}
+					received(false);
+				};
+			}
+
+			@Override
+			protected void apply() {
+				target.set(op.applyAsInt(a, b));
+			}
+		}.follow(this, other);
+	}
+
+	@Override
+	public IntHolder add(Integer b) {
+		int pb = b;
+		return derive(a -> a + pb);
+	}
+
+	@Override
+	public IntHolder sub(Integer b) {
+		int pb = b;
+		return derive(a -> a - pb);
+	}
+
+	@Override
+	public IntHolder mult(Integer b) {
+		int pb = b;
+		return derive(a -> a * pb);
+	}
+
+	@Override
+	public IntHolder div(Integer b) {
+		int pb = b;
+		return derive(a -> a / pb);
+	}
+
+	@Override
+	public IntHolder add(IntHolder other) {
+		if (other instanceof IntHolderImpl) {
+			return derive((IntHolderImpl) other, (a, b) -> a + b);
+		}
+		return IntHolder.super.add(other);
+	}
+
+	@Override
+	public IntHolder sub(IntHolder other) {
+		if (other instanceof IntHolderImpl) {
+			return derive((IntHolderImpl) other, (a, b) -> a - b);
+		}
+		return IntHolder.super.sub(other);
+	}
+
+	@Override
+	public IntHolder mult(IntHolder other) {
+		if (other instanceof IntHolderImpl) {
+			return derive((IntHolderImpl) other, (a, b) -> a * b);
+		}
+		return IntHolder.super.mult(other);
+	}
+
+	@Override
+	public IntHolder div(IntHolder other) {
+		if (other instanceof IntHolderImpl) {
+			return derive((IntHolderImpl) other, (a, b) -> a / b);
+		}
+		return IntHolder.super.div(other);
+	}
+
 	@Override
 	public Integer add(Integer a, Integer b) {
 		return a + b;
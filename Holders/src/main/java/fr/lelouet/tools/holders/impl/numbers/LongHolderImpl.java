@@ -1,17 +1,32 @@
 package fr.lelouet.tools.holders.impl.numbers;
 
+import java.util.function.Consumer;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongUnaryOperator;
+
 import fr.lelouet.tools.holders.interfaces.numbers.LongHolder;
 
-public class LongHolderImpl extends ANumberHolderImpl<Long, LongHolder> implements LongHolder {
+/**
+ * Long holder that stores a primitive long.
+ * <p>
+ * The value is only boxed when it is read with {@link #get()}, or transmitted to
+ * the boxed followers. The primitive followers added with
+ * {@link #followLong(LongConsumer, Consumer)}, and the arithmetic operations with a
+ * constant or another LongHolderImpl, don't box the values.
+ * </p>
+ */
+public class LongHolderImpl extends APrimitiveNumberHolderImpl<Long, LongHolder, LongConsumer> implements LongHolder {
 
 	public static LongHolderImpl of(Number value) {
 		return new LongHolderImpl(value.longValue());
 	}
+
 	public LongHolderImpl() {
 	}
 
 	public LongHolderImpl(long value) {
-		super(value);
+		set(value);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -20,6 +35,192 @@ public class LongHolderImpl extends ANumberHolderImpl<Long, LongHolder> implemen
 		return new LongHolderImpl();
 	}
 
+	/** the value hold. The boxed {@link #item} is not used. */
+	protected long value;
+
+	@Override
+	protected Long current() {
+		return value;
+	}
+
+	@Override
+	public long getLong() {
+		waitData();
+		return value;
+	}
+
+	@Override
+	public void set(Long newitem) {
+		if (newitem == null) {
+			throw new UnsupportedOperationException("null item forbidden");
+		}
+		set(newitem.longValue());
+	}
+
+	public void set(long newValue) {
+		synchronized (this) {
+			if (isDataAvailable() && newValue == value) {
+				suppressed();
+				return;
+			}
+			value = newValue;
+			changed();
+		}
+		publish();
+	}
+
+	@Override
+	public LongHolderImpl followLong(LongConsumer listener, Consumer<Object> holder) {
+		followPrimitive(listener, holder);
+		return this;
+	}
+
+	@Override
+	public void unfollowLong(LongConsumer listener) {
+		unfollowPrimitive(listener);
+	}
+
+	@Override
+	protected Runnable sendCurrent(LongConsumer listener) {
+		long v = value;
+		return () -> listener.accept(v);
+	}
+
+	@Override
+	protected Transmission newTransmission() {
+		return new Transmission() {
+
+			private long stored;
+
+			@Override
+			protected void store() {
+				stored = value;
+			}
+
+			@Override
+			protected void deliver(LongConsumer listener) {
+				listener.accept(stored);
+			}
+		};
+	}
+
+	//
+	// derivations without boxing
+	//
+
+	/**
+	 * create a holder on the application of an operator to the values of this.
+	 *
+	 * @param op
+	 *          the operator to apply
+	 * @return a new holder
+	 */
+	protected LongHolderImpl derive(LongUnaryOperator op) {
+		LongHolderImpl ret = create();
+		followLong(v -> ret.set(op.applyAsLong(v)), ret);
+		return ret;
+	}
+
+	/**
+	 * create a holder on the application of an operator to the values of this
+	 * and another holder. As for
+	 * {@link fr.lelouet.tools.holders.interfaces.ObjHolder#combine combine}, the
+	 * operator is only applied once per change.
+	 *
+	 * @param other
+	 *          the second operand
+	 * @param op
+	 *          the operator to apply
+	 * @return a new holder
+	 */
+	protected LongHolderImpl derive(LongHolderImpl other, LongBinaryOperator op) {
+		return new Combination<LongConsumer, LongHolderImpl>(create()) {
+
+			private long a, b;
+
+			@Override
+			protected LongConsumer first() {
+				return v -> {
+					synchronized (this) {
+						a = v;
+					}
+					received(true);
+				};
+			}
+
+			@Override
+			protected LongConsumer second() {
+				return v -> {
+					synchronized (this) {
+						b = v;
+					}
+					received(false);
+				};
+			}
+
+			@Override
+			protected void apply() {
+				target.set(op.applyAsLong(a, b));
+			}
+		}.follow(this, other);
+	}
+
+	@Override
+	public LongHolder add(Long b) {
+		long pb = b;
+		return derive(a -> a + pb);
+	}
+
+	@Override
+	public LongHolder sub(Long b) {
+		long pb = b;
+		return derive(a -> a - pb);
+	}
+
+	@Override
+	public LongHolder mult(Long b) {
+		long pb = b;
+		return derive(a -> a * pb);
+	}
+
+	@Override
+	public LongHolder div(Long b) {
+		long pb = b;
+		return derive(a -> a / pb);
+	}
+
+	@Override
+	public LongHolder add(LongHolder other) {
+		if (other instanceof LongHolderImpl) {
+			return derive((LongHolderImpl) other, (a, b) -> a + b);
+		}
+		return LongHolder.super.add(other);
+	}
+
+	@Override
+	public LongHolder sub(LongHolder other) {
+		if (other instanceof LongHolderImpl) {
+			return derive((LongHolderImpl) other, (a, b) -> a - b);
+		}
+		return LongHolder.super.sub(other);
+	}
+
+	@Override
+	public LongHolder mult(LongHolder other) {
+		if (other instanceof LongHolderImpl) {
+			return derive((LongHolderImpl) other, (a, b) -> a * b);
+		}
+		return LongHolder.super.mult(other);
+	}
+
+	@Override
+	public LongHolder div(LongHolder other) {
+		if (other instanceof LongHolderImpl) {
+			return derive((LongHolderImpl) other, (a, b) -> a / b);
+		}
+		return LongHolder.super.div(other);
+	}
+
 	@Override
 	public Long add(Long a, Long b) {
 		return a + b;
@@ -64,4 +265,5 @@ public class LongHolderImpl extends ANumberHolderImpl<Long, LongHolder> implemen
 	public boolean eq(Long a, Long b) {
 		return a == b;
 	}
+
 }
@@ -1,9 +1,13 @@
 package fr.lelouet.tools.holders.interfaces;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -15,7 +19,9 @@ import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import fr.lelouet.tools.holders.impl.HolderPublisher;
 import fr.lelouet.tools.holders.impl.ObjHolderSimple;
+import fr.lelouet.tools.holders.impl.Propagation;
 import fr.lelouet.tools.holders.interfaces.collections.ListHolder;
 import fr.lelouet.tools.holders.interfaces.collections.MapHolder;
 import fr.lelouet.tools.holders.interfaces.collections.SetHolder;
@@ -115,9 +121,9 @@ public interface ObjHolder<U> {
 	 * <code>source.mult(2).follow(System.err::println);</code>, then there is no
 	 * way to deduce when the listener and the intermediate mult2 should be GC.
 	 * Maybe the code is started in another class loader, in another thread.
-	 * Therefore, what we do is force intermediate object mult2 to never be GC.
-	 * Any static manager would make it possible to be a total mess, therefore we
-	 * kepp it simple.
+	 * Therefore, what we do is force intermediate object mult2 to never be GC,
+	 * until the listener is unfollowed. To release such listeners in bulk, use a
+	 * Scope as holder and dispose it once the listeners are no more needed.
 	 * </p>
 	 *
 	 * @param listener
@@ -125,8 +131,10 @@ public interface ObjHolder<U> {
 	 * @param holder
 	 *          the holder that ensure the consumer is useful. Once the holder is
 	 *          no more Strong reachable, the listener may be removed from this.
-	 *          If set to null, a specific class field is used to consider the
-	 *          always strong reachable.
+	 *          If set to null, the listener and this are kept strong reachable
+	 *          by the global Scope until the listener is unfollowed. A Scope can
+	 *          be used as holder to release all its listeners at once when it is
+	 *          disposed.
 	 */
 	public ObjHolder<U> follow(Consumer<U> listener, Consumer<Object> holder);
 
@@ -339,6 +347,80 @@ public interface ObjHolder<U> {
 
 	public <V, R> ObjHolder<R> combine(ObjHolder<V> other, BiFunction<U, V, R> mapper);
 
+	/**
+	 * create a holder that only receives the values of this once they are stable
+	 * : a value is transmitted when no other value was received during the quiet
+	 * delay.
+	 *
+	 * @param quiet
+	 *          the delay without value before transmitting the last one
+	 * @param scheduler
+	 *          the executor to wait the delay on. The values are transmitted in
+	 *          its threads.
+	 * @return a new holder.
+	 */
+	ObjHolder<U> debounce(Duration quiet, ScheduledExecutorService scheduler);
+
+	/**
+	 * create a holder that receives the values of this at most once per window.
+	 * The first value is transmitted immediately and opens a window ; the last
+	 * value received during a window is transmitted at its end, and opens a new
+	 * window.
+	 *
+	 * @param window
+	 *          the minimum delay between two transmissions
+	 * @param scheduler
+	 *          the executor to wait the windows on.
+	 * @return a new holder.
+	 */
+	ObjHolder<U> throttle(Duration window, ScheduledExecutorService scheduler);
+
+	/**
+	 * create a holder that receives periodically the last value of this, if it
+	 * was modified since the previous period.
+	 *
+	 * @param period
+	 *          the period of the transmissions
+	 * @param scheduler
+	 *          the executor to run the transmissions on. The periodic task stops
+	 *          once the new holder is garbage collected.
+	 * @return a new holder.
+	 */
+	ObjHolder<U> sample(Duration period, ScheduledExecutorService scheduler);
+
+	/**
+	 * create a holder that receives the values of this on an executor. When
+	 * several values are received while the executor has not run the
+	 * transmission yet, only the last one is transmitted, so a slow executor does
+	 * not slow down the modifications of this.
+	 *
+	 * @param executor
+	 *          the executor to transmit the values on.
+	 * @return a new holder.
+	 */
+	ObjHolder<U> latestOnExecutor(Executor executor);
+
+	/**
+	 *
+	 * @return a new publisher of the values of this, that only keeps the last
+	 *         value for the slow subscribers and delivers the values on the
+	 *         common ForkJoinPool. See {@link HolderPublisher}
+	 */
+	default Flow.Publisher<U> toPublisher() {
+		return new HolderPublisher<>(this);
+	}
+
+	/**
+	 *
+	 * @param executor
+	 *          the executor to deliver the values on.
+	 * @return a new publisher of the values of this, that only keeps the last
+	 *         value for the slow subscribers. See {@link HolderPublisher}
+	 */
+	default Flow.Publisher<U> toPublisher(Executor executor) {
+		return new HolderPublisher<>(this, executor);
+	}
+
 	/**
 	 * combine this with other holder of the same type.
 	 *
@@ -392,6 +474,10 @@ public interface ObjHolder<U> {
 	/**
 	 * combine two different observable type holder into a third one. If you want
 	 * more than two items, then use {@link #reduce(Supplier, Function, List)}
+	 * <p>
+	 * When a and b are modified by the same change, the joiner is only called
+	 * once, after both are modified (see {@link Propagation}).
+	 * </p>
 	 *
 	 * @param <AType>
 	 *          type of the first object hold
@@ -419,24 +505,26 @@ public interface ObjHolder<U> {
 		boolean[] receipt = { false, false };
 		Object[] received = new Object[2];
 		Runnable update = () -> {
-			if (receipt[0] && receipt[1]) {
-				ResType joined = joiner.apply((AType) received[0], (BType) received[1]);
-				ret.set(joined);
+			synchronized (received) {
+				if (receipt[0] && receipt[1]) {
+					ResType joined = joiner.apply((AType) received[0], (BType) received[1]);
+					ret.set(joined);
+				}
 			}
 		};
 		a.follow(newa -> {
 			synchronized (received) {
 				received[0] = newa;
 				receipt[0] = true;
-				update.run();
 			}
+			Propagation.schedule(ret, update);
 		}, ret);
 		b.follow(newb -> {
 			synchronized (received) {
 				received[1] = newb;
 				receipt[1] = true;
-				update.run();
 			}
+			Propagation.schedule(ret, update);
 		}, ret);
 		return ret;
 	}
@@ -448,6 +536,10 @@ public interface ObjHolder<U> {
 	 * If the types are different in the variables, then object will be used. Be
 	 * sure to cast the items accordingly in
 	 * </p>
+	 * <p>
+	 * When several variables are modified by the same change, the reducer is
+	 * only called once (see {@link Propagation}).
+	 * </p>
 	 *
 	 * @param <U>
 	 *          the internal type of the holders that are reduced. If various
@@ -476,19 +568,23 @@ public interface ObjHolder<U> {
 		}
 		ObjHolder<U>[] holders = vars.toArray(ObjHolder[]::new);
 		HashMap<Integer, U> received = new HashMap<>();
+		Runnable update = () -> {
+			synchronized (received) {
+				if (received.size() == holders.length) {
+					V joined = reducer
+							.apply(IntStream.range(0, received.size()).mapToObj(received::get).collect(Collectors.toList()));
+					ret.set(joined);
+				}
+			}
+		};
 		for (int i = 0; i < holders.length; i++) {
 			int index = i;
 			ObjHolder<U> h = holders[i];
 			h.follow(newValue -> {
 				synchronized (received) {
 					received.put(index, newValue);
-					if (received.size() == holders.length) {
-						V joined = reducer
-								.apply(IntStream.range(0, received.size()).mapToObj(received::get).collect(Collectors.toList()));
-						ret.set(joined);
-					} else {
-					}
 				}
+				Propagation.schedule(ret, update);
 			}, ret);
 		}
 		return ret;
@@ -0,0 +1,131 @@
+package fr.lelouet.tools.holders.interfaces.collections;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * modification of the content of a {@link CollectionHolder}, transmitted to
+ * the followers added with
+ * {@link CollectionHolder#followChanges(java.util.function.Consumer, java.util.function.Consumer)
+ * followChanges}.
+ * <p>
+ * A delta is either a reset, after which the followers must rebuild their state
+ * from the {@link #content()}, or a list of {@link Change changes} to apply in
+ * order. For a list, the index of a change is the position of its item once the
+ * previous changes are applied. For other collections, the index is -1.
+ * </p>
+ *
+ * @param <U>
+ *          the type of the items of the collection
+ */
+public class CollectionDelta<U> {
+
+	/**
+	 * addition or removal of a single item.
+	 */
+	public static class Change<U> {
+
+		private final boolean add;
+
+		private final int index;
+
+		private final U item;
+
+		public Change(boolean add, int index, U item) {
+			this.add = add;
+			this.index = index;
+			this.item = item;
+		}
+
+		/**
+		 *
+		 * @return true if the item is added, false if it is removed.
+		 */
+		public boolean isAdd() {
+			return add;
+		}
+
+		/**
+		 *
+		 * @return the position of the item in the list, or -1 if the collection is
+		 *         not a list.
+		 */
+		public int index() {
+			return index;
+		}
+
+		public U item() {
+			return item;
+		}
+
+		@Override
+		public String toString() {
+			return (add ? "+" : "-") + (index >= 0 ? index + ":" : "") + item;
+		}
+
+	}
+
+	private final boolean reset;
+
+	private final Collection<U> content;
+
+	private final List<Change<U>> changes;
+
+	/**
+	 * create a delta that replaces the whole content
+	 *
+	 * @param content
+	 *          the new content of the collection
+	 * @return a new reset delta
+	 */
+	public static <U> CollectionDelta<U> reset(Collection<U> content) {
+		return new CollectionDelta<>(true, content, Collections.emptyList());
+	}
+
+	/**
+	 * create a delta of changes
+	 *
+	 * @param changes
+	 *          the changes to apply in order. Must not be modified afterwards.
+	 */
+	public CollectionDelta(List<Change<U>> changes) {
+		this(false, null, Collections.unmodifiableList(changes));
+	}
+
+	protected CollectionDelta(boolean reset, Collection<U> content, List<Change<U>> changes) {
+		this.reset = reset;
+		this.content = content;
+		this.changes = changes;
+	}
+
+	/**
+	 *
+	 * @return true if the whole content is replaced by {@link #content()}
+	 */
+	public boolean isReset() {
+		return reset;
+	}
+
+	/**
+	 *
+	 * @return the new content of the collection for a reset, null otherwise.
+	 */
+	public Collection<U> content() {
+		return content;
+	}
+
+	/**
+	 *
+	 * @return the changes to apply, empty for a reset.
+	 */
+	public List<Change<U>> changes() {
+		return changes;
+	}
+
+	@Override
+	public String toString() {
+		return reset ? "reset" + content : changes.toString();
+	}
+
+}
@@ -9,12 +9,16 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntBinaryOperator;
 import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 import fr.lelouet.tools.holders.interfaces.ObjHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.BoolHolder;
+import fr.lelouet.tools.holders.interfaces.numbers.DoubleHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.IntHolder;
+import fr.lelouet.tools.holders.interfaces.numbers.LongHolder;
 
 /**
  * common interface for set and list.
@@ -32,6 +36,35 @@ public interface CollectionHolder<U, C extends Collection<U>> extends ObjHolder<
 		return this;
 	}
 
+	/**
+	 * add a follower of the modifications of this collection. The follower first
+	 * receives a {@link CollectionDelta#reset(Collection) reset} with the current
+	 * content if there is one, then the changes of the content.
+	 * <p>
+	 * This allows to update a derived holder in proportion of the modifications,
+	 * instead of the size of the collection.
+	 * </p>
+	 *
+	 * @param listener
+	 *          the follower of the modifications
+	 * @param holder
+	 *          the holder that keeps the listener alive, or null to keep it
+	 *          forever.
+	 * @return this
+	 */
+	public CollectionHolder<U, C> followChanges(Consumer<CollectionDelta<U>> listener, Consumer<Object> holder);
+
+	public default CollectionHolder<U, C> followChanges(Consumer<CollectionDelta<U>> listener) {
+		return followChanges(listener, null);
+	}
+
+	/**
+	 * remove a follower added with {@link #followChanges(Consumer, Consumer)}
+	 *
+	 * @param listener
+	 */
+	public void unfollowChanges(Consumer<CollectionDelta<U>> listener);
+
 	/**
 	 *
 	 * get the variable for this collection's size.
@@ -189,6 +222,76 @@ public interface CollectionHolder<U, C extends Collection<U>> extends ObjHolder<
 		return mapInt(l -> l.stream().mapToInt(mapper).reduce(neutral, joiner));
 	}
 
+	/**
+	 * sum the items of this converted to int. The sum is updated with each item
+	 * added or removed, instead of being computed again.
+	 *
+	 * @param mapper
+	 *          converter of the items
+	 * @return a new holder of the sum, 0 when this is empty.
+	 */
+	public IntHolder sumInt(ToIntFunction<? super U> mapper);
+
+	/**
+	 * sum the items of this converted to long. The sum is updated with each item
+	 * added or removed, instead of being computed again.
+	 *
+	 * @param mapper
+	 *          converter of the items
+	 * @return a new holder of the sum, 0 when this is empty.
+	 */
+	public LongHolder sumLong(ToLongFunction<? super U> mapper);
+
+	/**
+	 * sum the items of this converted to double. The sum is updated with each
+	 * item added or removed, instead of being computed again.
+	 *
+	 * @param mapper
+	 *          converter of the items
+	 * @return a new holder of the sum, 0 when this is empty.
+	 */
+	public DoubleHolder sumDouble(ToDoubleFunction<? super U> mapper);
+
+	/**
+	 * count the items of this that match a predicate. The predicate is only
+	 * applied to the items added or removed.
+	 *
+	 * @param predicate
+	 *          test on the items
+	 * @return a new holder of the number of items accepted.
+	 */
+	public IntHolder count(Predicate<? super U> predicate);
+
+	/**
+	 * average the items of this converted to double. The sum and count of the
+	 * items are updated with each item added or removed.
+	 *
+	 * @param mapper
+	 *          converter of the items
+	 * @return a new holder of the average, NaN when this is empty.
+	 */
+	public DoubleHolder average(ToDoubleFunction<? super U> mapper);
+
+	/**
+	 * the lowest item of this. The items are kept ordered, so each item added or
+	 * removed costs O(log(n)).
+	 *
+	 * @param comparator
+	 *          to compare the items
+	 * @return a new holder of the lowest item, null when this is empty.
+	 */
+	public ObjHolder<U> min(Comparator<? super U> comparator);
+
+	/**
+	 * the greatest item of this. The items are kept ordered, so each item added
+	 * or removed costs O(log(n)).
+	 *
+	 * @param comparator
+	 *          to compare the items
+	 * @return a new holder of the greatest item, null when this is empty.
+	 */
+	public ObjHolder<U> max(Comparator<? super U> comparator);
+
 	/**
 	 *
 	 * @return a set containing all the elements of this collection in a single
@@ -0,0 +1,154 @@
+package fr.lelouet.tools.holders.interfaces.collections;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * modification of the content of a {@link MapHolder}, transmitted to the
+ * followers added with
+ * {@link MapHolder#followChanges(java.util.function.Consumer, java.util.function.Consumer)
+ * followChanges}.
+ * <p>
+ * A delta is either a reset, after which the followers must rebuild their state
+ * from the {@link #content()}, or a list of {@link Change changes} of single
+ * keys to apply in order.
+ * </p>
+ *
+ * @param <K>
+ *          the type of the keys
+ * @param <V>
+ *          the type of the values
+ */
+public class MapDelta<K, V> {
+
+	public static enum Kind {
+		/** the key was not present and is now mapped to the value */
+		ADDED,
+		/** the key was mapped to the previous value, and is now to the value */
+		UPDATED,
+		/** the key was mapped to the previous value, and is no more present */
+		REMOVED
+	}
+
+	/**
+	 * modification of the value mapped to a single key.
+	 */
+	public static class Change<K, V> {
+
+		private final Kind kind;
+
+		private final K key;
+
+		private final V previous;
+
+		private final V value;
+
+		public Change(Kind kind, K key, V previous, V value) {
+			this.kind = kind;
+			this.key = key;
+			this.previous = previous;
+			this.value = value;
+		}
+
+		public Kind kind() {
+			return kind;
+		}
+
+		public K key() {
+			return key;
+		}
+
+		/**
+		 *
+		 * @return the value the key was mapped to, null if the key was added.
+		 */
+		public V previous() {
+			return previous;
+		}
+
+		/**
+		 *
+		 * @return the value the key is mapped to, null if the key was removed.
+		 */
+		public V value() {
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			switch (kind) {
+			case ADDED:
+				return "+" + key + "=" + value;
+			case REMOVED:
+				return "-" + key;
+			default:
+				return key + ":" + previous + "->" + value;
+			}
+		}
+
+	}
+
+	private final boolean reset;
+
+	private final Map<K, V> content;
+
+	private final List<Change<K, V>> changes;
+
+	/**
+	 * create a delta that replaces the whole content
+	 *
+	 * @param content
+	 *          the new content of the map
+	 * @return a new reset delta
+	 */
+	public static <K, V> MapDelta<K, V> reset(Map<K, V> content) {
+		return new MapDelta<>(true, content, Collections.emptyList());
+	}
+
+	/**
+	 * create a delta of changes
+	 *
+	 * @param changes
+	 *          the changes to apply in order. Must not be modified afterwards.
+	 */
+	public MapDelta(List<Change<K, V>> changes) {
+		this(false, null, Collections.unmodifiableList(changes));
+	}
+
+	protected MapDelta(boolean reset, Map<K, V> content, List<Change<K, V>> changes) {
+		this.reset = reset;
+		this.content = content;
+		this.changes = changes;
+	}
+
+	/**
+	 *
+	 * @return true if the whole content is replaced by {@link #content()}
+	 */
+	public boolean isReset() {
+		return reset;
+	}
+
+	/**
+	 *
+	 * @return the new content of the map for a reset, null otherwise.
+	 */
+	public Map<K, V> content() {
+		return content;
+	}
+
+	/**
+	 *
+	 * @return the changes to apply, empty for a reset.
+	 */
+	public List<Change<K, V>> changes() {
+		return changes;
+	}
+
+	@Override
+	public String toString() {
+		return reset ? "reset" + content : changes.toString();
+	}
+
+}
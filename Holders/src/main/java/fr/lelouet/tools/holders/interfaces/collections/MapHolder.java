@@ -28,6 +28,31 @@ public interface MapHolder<K, V> extends ObjHolder<Map<K, V>> {
 	@Override
 	Map<K, V> get();
 
+	/**
+	 * add a follower of the modifications of this map. The follower first
+	 * receives a {@link MapDelta#reset(Map) reset} with the current content if
+	 * there is one, then the changes of the content.
+	 *
+	 * @param listener
+	 *          the follower of the modifications
+	 * @param holder
+	 *          the holder that keeps the listener alive, or null to keep it
+	 *          forever.
+	 * @return this
+	 */
+	MapHolder<K, V> followChanges(Consumer<MapDelta<K, V>> listener, Consumer<Object> holder);
+
+	default MapHolder<K, V> followChanges(Consumer<MapDelta<K, V>> listener) {
+		return followChanges(listener, null);
+	}
+
+	/**
+	 * remove a follower added with {@link #followChanges(Consumer, Consumer)}
+	 *
+	 * @param listener
+	 */
+	void unfollowChanges(Consumer<MapDelta<K, V>> listener);
+
 	/**
 	 * create a new variable bound to the value mapped to a key
 	 *
@@ -8,6 +8,13 @@ import fr.lelouet.tools.holders.interfaces.RWObjHolder;
  */
 public interface BoolHolder extends ObjHolder<Boolean> {
 
+	/**
+	 * get the value as a primitive boolean, blocking until it is available.
+	 *
+	 * @return the boolean value hold.
+	 */
+	public boolean getBool();
+
 	public <RWClass extends BoolHolder & RWObjHolder<Boolean>> RWClass create();
 
 	public default BoolHolder or(BoolHolder other) {
@@ -1,5 +1,8 @@
 package fr.lelouet.tools.holders.interfaces.numbers;
 
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
 /**
  * Double holder. It has a ceil, floor functions to translate into int value and
  * return an {@link ObservableDoubleValue} for its {@link #asObservableNumber()}
@@ -10,4 +13,36 @@ public interface DoubleHolder extends NumberHolder<Double, DoubleHolder> {
 
 	public IntHolder floor();
 
+	/**
+	 * get the value as a primitive double, blocking until it is available. The
+	 * implementations that store a primitive don't box it.
+	 *
+	 * @return the double value hold.
+	 */
+	public double getDouble();
+
+	/**
+	 * add a primitive follower, that receives the values without boxing. see
+	 * {@link #follow(Consumer, Consumer)}
+	 *
+	 * @param listener
+	 *          the listener to the values
+	 * @param holder
+	 *          the holder that keeps the listener alive, or null to keep it
+	 *          forever.
+	 * @return this
+	 */
+	public DoubleHolder followDouble(DoubleConsumer listener, Consumer<Object> holder);
+
+	public default DoubleHolder followDouble(DoubleConsumer listener) {
+		return followDouble(listener, null);
+	}
+
+	/**
+	 * remove a follower added with {@link #followDouble(DoubleConsumer, Consumer)}
+	 *
+	 * @param listener
+	 */
+	public void unfollowDouble(DoubleConsumer listener);
+
 }
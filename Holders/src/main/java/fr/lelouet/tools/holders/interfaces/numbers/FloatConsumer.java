@@ -0,0 +1,12 @@
+package fr.lelouet.tools.holders.interfaces.numbers;
+
+/**
+ * consumer of a primitive float, used to follow a {@link FloatHolder} without
+ * boxing the values.
+ */
+@FunctionalInterface
+public interface FloatConsumer {
+
+	public void accept(float value);
+
+}
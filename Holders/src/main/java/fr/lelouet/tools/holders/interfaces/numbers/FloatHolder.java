@@ -1,9 +1,43 @@
 package fr.lelouet.tools.holders.interfaces.numbers;
 
+import java.util.function.Consumer;
+
 public interface FloatHolder extends NumberHolder<Float, FloatHolder> {
 
 	public IntHolder ceil();
 
 	public IntHolder floor();
 
+	/**
+	 * get the value as a primitive float, blocking until it is available. The
+	 * implementations that store a primitive don't box it.
+	 *
+	 * @return the float value hold.
+	 */
+	public float getFloat();
+
+	/**
+	 * add a primitive follower, that receives the values without boxing. see
+	 * {@link #follow(Consumer, Consumer)}
+	 *
+	 * @param listener
+	 *          the listener to the values
+	 * @param holder
+	 *          the holder that keeps the listener alive, or null to keep it
+	 *          forever.
+	 * @return this
+	 */
+	public FloatHolder followFloat(FloatConsumer listener, Consumer<Object> holder);
+
+	public default FloatHolder followFloat(FloatConsumer listener) {
+		return followFloat(listener, null);
+	}
+
+	/**
+	 * remove a follower added with {@link #followFloat(FloatConsumer, Consumer)}
+	 *
+	 * @param listener
+	 */
+	public void unfollowFloat(FloatConsumer listener);
+
 }
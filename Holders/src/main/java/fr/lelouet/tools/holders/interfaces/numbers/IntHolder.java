@@ -1,9 +1,44 @@
 package fr.lelouet.tools.holders.interfaces.numbers;
 
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
 /**
  * Integer holder.
  *
  */
 public interface IntHolder extends NumberHolder<Integer, IntHolder> {
 
+	/**
+	 * get the value as a primitive int, blocking until it is available. The
+	 * implementations that store a primitive don't box it.
+	 *
+	 * @return the int value hold.
+	 */
+	public int getInt();
+
+	/**
+	 * add a primitive follower, that receives the values without boxing. see
+	 * {@link #follow(Consumer, Consumer)}
+	 *
+	 * @param listener
+	 *          the listener to the values
+	 * @param holder
+	 *          the holder that keeps the listener alive, or null to keep it
+	 *          forever.
+	 * @return this
+	 */
+	public IntHolder followInt(IntConsumer listener, Consumer<Object> holder);
+
+	public default IntHolder followInt(IntConsumer listener) {
+		return followInt(listener, null);
+	}
+
+	/**
+	 * remove a follower added with {@link #followInt(IntConsumer, Consumer)}
+	 *
+	 * @param listener
+	 */
+	public void unfollowInt(IntConsumer listener);
+
 }
@@ -1,9 +1,43 @@
 package fr.lelouet.tools.holders.interfaces.numbers;
 
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
 /**
  * Long holder.
  */
 public interface LongHolder extends NumberHolder<Long, LongHolder> {
 
+	/**
+	 * get the value as a primitive long, blocking until it is available. The
+	 * implementations that store a primitive don't box it.
+	 *
+	 * @return the long value hold.
+	 */
+	public long getLong();
+
+	/**
+	 * add a primitive follower, that receives the values without boxing. see
+	 * {@link #follow(Consumer, Consumer)}
+	 *
+	 * @param listener
+	 *          the listener to the values
+	 * @param holder
+	 *          the holder that keeps the listener alive, or null to keep it
+	 *          forever.
+	 * @return this
+	 */
+	public LongHolder followLong(LongConsumer listener, Consumer<Object> holder);
+
+	public default LongHolder followLong(LongConsumer listener) {
+		return followLong(listener, null);
+	}
+
+	/**
+	 * remove a follower added with {@link #followLong(LongConsumer, Consumer)}
+	 *
+	 * @param listener
+	 */
+	public void unfollowLong(LongConsumer listener);
 
 }
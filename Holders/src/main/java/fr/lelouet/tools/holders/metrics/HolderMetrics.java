@@ -0,0 +1,184 @@
+package fr.lelouet.tools.holders.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * the counters of a named holder, see {@link HolderMetricsRegistry}.
+ * <p>
+ * The durations of the transmissions are kept in a histogram whose buckets
+ * split each power of two in 8, so the percentiles are the upper bound of
+ * their bucket, at most 12.5% over the actual durations.
+ * </p>
+ */
+public class HolderMetrics implements HolderMetricsMBean {
+
+	/** number of buckets per power of two, as a shift */
+	private static final int SUB_BITS = 3;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	private final String name;
+
+	private final LongAdder changes = new LongAdder();
+
+	private final LongAdder suppressed = new LongAdder();
+
+	private final LongAdder transmissions = new LongAdder();
+
+	private final LongAdder invocations = new LongAdder();
+
+	private final LongAdder transmitNanos = new LongAdder();
+
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+	public HolderMetrics(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	public void changed() {
+		changes.increment();
+	}
+
+	public void suppressed() {
+		suppressed.increment();
+	}
+
+	/**
+	 * count a transmission
+	 *
+	 * @param listeners
+	 *          the number of listeners notified
+	 * @param nanos
+	 *          the duration of the transmission
+	 */
+	public void transmitted(int listeners, long nanos) {
+		transmissions.increment();
+		invocations.add(listeners);
+		transmitNanos.add(nanos);
+		histogram.incrementAndGet(bucket(Math.max(0, nanos)));
+	}
+
+	static int bucket(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exp - SUB_BITS + 1) << SUB_BITS | sub;
+	}
+
+	/**
+	 *
+	 * @return the highest duration of a bucket.
+	 */
+	static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exp = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+		long sub = bucket & (SUB_BUCKETS - 1);
+		long lower = (SUB_BUCKETS | sub) << (exp - SUB_BITS);
+		return lower + (1L << (exp - SUB_BITS)) - 1;
+	}
+
+	@Override
+	public long getSets() {
+		return changes.sum() + suppressed.sum();
+	}
+
+	@Override
+	public long getSuppressedSets() {
+		return suppressed.sum();
+	}
+
+	@Override
+	public long getChanges() {
+		return changes.sum();
+	}
+
+	@Override
+	public long getTransmissions() {
+		return transmissions.sum();
+	}
+
+	@Override
+	public long getListenerInvocations() {
+		return invocations.sum();
+	}
+
+	@Override
+	public long getTransmitNanos() {
+		return transmitNanos.sum();
+	}
+
+	/**
+	 *
+	 * @param percentile
+	 *          the percentile, between 0 and 100
+	 * @return the duration under which that percentile of the transmissions
+	 *         lasted, in nanoseconds, or 0 if there was no transmission.
+	 */
+	public long transmitNanosPercentile(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = histogram.get(i);
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return upperBound(i);
+			}
+		}
+		return upperBound(BUCKETS - 1);
+	}
+
+	@Override
+	public long getTransmitNanosP50() {
+		return transmitNanosPercentile(50);
+	}
+
+	@Override
+	public long getTransmitNanosP99() {
+		return transmitNanosPercentile(99);
+	}
+
+	@Override
+	public long getTransmitNanosMax() {
+		return transmitNanosPercentile(100);
+	}
+
+	@Override
+	public void reset() {
+		changes.reset();
+		suppressed.reset();
+		transmissions.reset();
+		invocations.reset();
+		transmitNanos.reset();
+		for (int i = 0; i < BUCKETS; i++) {
+			histogram.set(i, 0);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return name + "[sets=" + getSets() + ", suppressed=" + getSuppressedSets() + ", transmissions="
+				+ getTransmissions() + ", invocations=" + getListenerInvocations() + ", p50=" + getTransmitNanosP50()
+				+ "ns, p99=" + getTransmitNanosP99() + "ns]";
+	}
+
+}
@@ -0,0 +1,58 @@
+package fr.lelouet.tools.holders.metrics;
+
+/**
+ * the attributes of {@link HolderMetrics} exposed through JMX.
+ */
+public interface HolderMetricsMBean {
+
+	String getName();
+
+	/**
+	 *
+	 * @return the number of values set, including the suppressed ones.
+	 */
+	long getSets();
+
+	/**
+	 *
+	 * @return the number of values set that were the same as the value hold, and
+	 *         were not transmitted.
+	 */
+	long getSuppressedSets();
+
+	/**
+	 *
+	 * @return the number of modifications of the value, by a set or an edit.
+	 */
+	long getChanges();
+
+	/**
+	 *
+	 * @return the number of transmissions to the listeners
+	 */
+	long getTransmissions();
+
+	/**
+	 *
+	 * @return the number of listeners notified, over all the transmissions
+	 */
+	long getListenerInvocations();
+
+	/**
+	 *
+	 * @return the total time spent transmitting, in nanoseconds.
+	 */
+	long getTransmitNanos();
+
+	long getTransmitNanosP50();
+
+	long getTransmitNanosP99();
+
+	long getTransmitNanosMax();
+
+	/**
+	 * set all the counters to 0
+	 */
+	void reset();
+
+}
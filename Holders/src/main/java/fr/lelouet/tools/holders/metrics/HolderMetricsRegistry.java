@@ -0,0 +1,134 @@
+package fr.lelouet.tools.holders.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * opt-in instrumentation of the holders.
+ * <p>
+ * Once {@link #setEnabled(boolean) enabled}, the holders that have a name
+ * record in the {@link HolderMetrics} of that name the values set, the
+ * transmissions and their durations. The holders sharing a name share their
+ * metrics. While disabled, the holders only check a volatile flag.
+ * </p>
+ * <p>
+ * The metrics can be read with {@link #get(String)} and {@link #all()}, or
+ * through JMX once {@link #exposeJmx()} is called, as MBeans named
+ * {@value #DOMAIN}:type=HolderMetrics,name=&lt;name of the holder&gt;
+ * </p>
+ */
+public class HolderMetricsRegistry {
+
+	private static final Logger logger = LoggerFactory.getLogger(HolderMetricsRegistry.class);
+
+	public static final String DOMAIN = "fr.lelouet.tools.holders";
+
+	private static volatile boolean enabled = false;
+
+	private static volatile boolean jmx = false;
+
+	private static final Map<String, HolderMetrics> metrics = new ConcurrentHashMap<>();
+
+	private HolderMetricsRegistry() {
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * start or stop recording the metrics. The metrics recorded are kept when
+	 * stopped.
+	 */
+	public static void setEnabled(boolean enabled) {
+		HolderMetricsRegistry.enabled = enabled;
+	}
+
+	/**
+	 *
+	 * @param name
+	 *          the name of a holder
+	 * @return the existing or new metrics for that name.
+	 */
+	public static HolderMetrics get(String name) {
+		HolderMetrics ret = metrics.get(name);
+		if (ret == null) {
+			ret = metrics.computeIfAbsent(name, HolderMetrics::new);
+			if (jmx) {
+				register(ret);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 *
+	 * @return the metrics, sorted by name.
+	 */
+	public static Map<String, HolderMetrics> all() {
+		return Collections.unmodifiableMap(new TreeMap<>(metrics));
+	}
+
+	/**
+	 * register the metrics, and the ones created later, in the platform MBean
+	 * server. A metrics that can not be registered is logged, and still recorded.
+	 */
+	public static synchronized void exposeJmx() {
+		jmx = true;
+		for (HolderMetrics m : metrics.values()) {
+			register(m);
+		}
+	}
+
+	/**
+	 * remove all the metrics, and unregister them from JMX.
+	 */
+	public static synchronized void clear() {
+		for (HolderMetrics m : metrics.values()) {
+			unregister(m);
+		}
+		metrics.clear();
+	}
+
+	static ObjectName objectName(String name) throws JMException {
+		return new ObjectName(DOMAIN + ":type=HolderMetrics,name=" + ObjectName.quote(name));
+	}
+
+	private static void register(HolderMetrics m) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName on = objectName(m.getName());
+			synchronized (HolderMetricsRegistry.class) {
+				if (!server.isRegistered(on)) {
+					server.registerMBean(m, on);
+				}
+			}
+		} catch (JMException e) {
+			// the metrics are still recorded, only their MBean is missing
+			logger.warn("could not register the metrics of " + m.getName() + " in JMX", e);
+		}
+	}
+
+	private static void unregister(HolderMetrics m) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName on = objectName(m.getName());
+			if (server.isRegistered(on)) {
+				server.unregisterMBean(on);
+			}
+		} catch (JMException e) {
+			logger.warn("could not unregister the metrics of " + m.getName() + " from JMX", e);
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+package fr.lelouet.tools.holders.graph;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.lelouet.tools.holders.impl.ObjHolderSimple;
+import fr.lelouet.tools.holders.impl.collections.ListHolderImpl;
+import fr.lelouet.tools.holders.interfaces.ObjHolder;
+import fr.lelouet.tools.holders.interfaces.collections.ListHolder;
+import fr.lelouet.tools.holders.interfaces.numbers.IntHolder;
+
+public class HolderGraphTest {
+
+	@Test(timeOut = 500)
+	public void testGraph() {
+		ObjHolderSimple<String> source = new ObjHolderSimple<>("a");
+		source.setName("source");
+		ObjHolder<String> upper = source.map(String::toUpperCase);
+		IntHolder length = upper.mapInt(String::length);
+		ObjHolderSimple<String> other = new ObjHolderSimple<>("b");
+		other.setName("other \"quoted\"");
+		ObjHolder<String> combined = source.combine(other, (s, o) -> s + o);
+		ListHolderImpl<String> list = new ListHolderImpl<>(Arrays.asList("x", "y"));
+		ListHolder<String> sorted = list.sorted(String::compareTo);
+
+		source.set("bb");
+		Assert.assertEquals(source.changeCount(), 2L);
+		Assert.assertEquals(source.children().size(), 2);
+		Assert.assertEquals(((ObjHolderSimple<?>) combined).parents().size(), 2);
+
+		HolderGraph graph = HolderGraph.of(source);
+		Assert.assertEquals(graph.nodes().size(), 5);
+		Assert.assertEquals(graph.edges().size(), 4);
+		Assert.assertEquals(graph.nodes().get(0).name(), "source");
+		String dot = graph.toDot();
+		Assert.assertTrue(dot.startsWith("digraph holders {"));
+		Assert.assertTrue(dot.contains("n0 -> n1;"), dot);
+		Assert.assertTrue(dot.contains("other \\\"quoted\\\""), dot);
+		String json = graph.toJson();
+		Assert.assertTrue(json.contains("\"name\":\"source\""), json);
+		Assert.assertTrue(json.contains("{\"from\":0,\"to\":1}"), json);
+
+		HolderGraph listGraph = HolderGraph.of((ObjHolderSimple<?>) sorted);
+		Assert.assertEquals(listGraph.nodes().size(), 2);
+		Assert.assertEquals(listGraph.nodes().get(1).size(), 2);
+		Assert.assertTrue(listGraph.toJson().contains("\"size\":2"));
+
+		// an unfollowed holder is no more a child
+		ObjHolderSimple<String> copy = new ObjHolderSimple<>();
+		Consumer<String> listener = copy::set;
+		other.follow(listener, copy);
+		Assert.assertEquals(other.children().size(), 2);
+		other.unfollow(listener);
+		Assert.assertEquals(other.children().size(), 1);
+		Assert.assertNotNull(length);
+	}
+
+}
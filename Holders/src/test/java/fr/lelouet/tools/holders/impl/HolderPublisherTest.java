@@ -0,0 +1,201 @@
+package fr.lelouet.tools.holders.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.lelouet.tools.lambdaref.GCManage;
+import fr.lelouet.tools.lambdaref.references.Scope;
+
+public class HolderPublisherTest {
+
+	/**
+	 * a subscriber that only records the values, and lets the test request them.
+	 */
+	private static class Recorder<U> implements Flow.Subscriber<U> {
+
+		Flow.Subscription subscription;
+
+		final List<U> received = new ArrayList<>();
+
+		Throwable error = null;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(U item) {
+			received.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+		}
+	}
+
+	@Test(timeOut = 500)
+	public void testDemandAndConflation() {
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<>(1);
+		Recorder<Integer> recorder = new Recorder<>();
+		test.toPublisher(Runnable::run).subscribe(recorder);
+		Assert.assertTrue(recorder.received.isEmpty());
+		test.set(2);
+		test.set(3);
+		recorder.subscription.request(1);
+		Assert.assertEquals(recorder.received, Arrays.asList(3));
+		test.set(4);
+		Assert.assertEquals(recorder.received, Arrays.asList(3));
+		recorder.subscription.request(2);
+		Assert.assertEquals(recorder.received, Arrays.asList(3, 4));
+		test.set(5);
+		test.set(6);
+		Assert.assertEquals(recorder.received, Arrays.asList(3, 4, 5));
+		recorder.subscription.request(Long.MAX_VALUE);
+		Assert.assertEquals(recorder.received, Arrays.asList(3, 4, 5, 6));
+		test.set(7);
+		test.set(8);
+		Assert.assertEquals(recorder.received, Arrays.asList(3, 4, 5, 6, 7, 8));
+		recorder.subscription.cancel();
+		test.set(9);
+		Assert.assertEquals(recorder.received, Arrays.asList(3, 4, 5, 6, 7, 8));
+		Assert.assertEquals(test.followers(), 0);
+
+		Recorder<Integer> wrong = new Recorder<>();
+		test.toPublisher(Runnable::run).subscribe(wrong);
+		wrong.subscription.request(0);
+		Assert.assertTrue(wrong.error instanceof IllegalArgumentException);
+	}
+
+	@Test(timeOut = 500)
+	public void testCancelOnSubscribe() {
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<>(1);
+		int globalSize = Scope.GLOBAL.size();
+		for (int i = 0; i < 10; i++) {
+			test.toPublisher(Runnable::run).subscribe(new Recorder<Integer>() {
+
+				@Override
+				public void onSubscribe(Flow.Subscription subscription) {
+					subscription.cancel();
+				}
+			});
+		}
+		Assert.assertEquals(Scope.GLOBAL.size(), globalSize);
+		Assert.assertEquals(test.followers(), 0);
+
+		// the error of a wrong request is delivered by the delivery loop
+		Recorder<Integer> wrong = new Recorder<Integer>() {
+
+			@Override
+			public void onNext(Integer item) {
+				super.onNext(item);
+				subscription.request(-1);
+			}
+		};
+		test.toPublisher(Runnable::run).subscribe(wrong);
+		wrong.subscription.request(1);
+		Assert.assertEquals(wrong.received, Arrays.asList(1));
+		Assert.assertTrue(wrong.error instanceof IllegalArgumentException);
+		test.set(2);
+		Assert.assertEquals(wrong.received, Arrays.asList(1));
+		Assert.assertEquals(Scope.GLOBAL.size(), globalSize);
+	}
+
+	@Test(timeOut = 500)
+	public void testHolderToHolder() {
+		ObjHolderSimple<String> source = new ObjHolderSimple<>("a");
+		ObjHolderSimple<String> target = new ObjHolderSimple<>();
+		HolderSubscriber<String> subscriber = new HolderSubscriber<>(target);
+		source.toPublisher(Runnable::run).subscribe(subscriber);
+		Assert.assertEquals(target.get(), "a");
+		source.set("b");
+		Assert.assertEquals(target.get(), "b");
+		subscriber.cancel();
+		source.set("c");
+		Assert.assertEquals(target.get(), "b");
+		Assert.assertTrue(subscriber.isDone());
+	}
+
+	@Test(timeOut = 2000)
+	public void testKeptUntilCancel() {
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<>(1);
+		Recorder<Integer> recorder = new Recorder<Integer>() {
+
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				// the subscription is not kept
+				subscription.request(Long.MAX_VALUE);
+			}
+		};
+		test.toPublisher(Runnable::run).subscribe(recorder);
+		GCManage.force();
+		test.set(2);
+		Assert.assertEquals(recorder.received, Arrays.asList(1, 2));
+	}
+
+	@Test(timeOut = 2000)
+	public void testSlowSubscriber() throws InterruptedException {
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<>(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch last = new CountDownLatch(1);
+		test.toPublisher().subscribe(new Recorder<Integer>() {
+
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override
+			public void onNext(Integer item) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new UnsupportedOperationException("catch this", e);
+				}
+				delivered.add(item);
+				if (item == 3) {
+					last.countDown();
+				}
+			}
+		});
+		// the subscriber blocks on the first value, but set() does not wait for it
+		test.set(2);
+		test.set(3);
+		release.countDown();
+		Assert.assertTrue(last.await(1, TimeUnit.SECONDS));
+		Assert.assertEquals(delivered.get(delivered.size() - 1), (Integer) 3);
+	}
+
+	@Test(timeOut = 2000)
+	public void testSubscriber() throws InterruptedException {
+		ObjHolderSimple<Integer> target = new ObjHolderSimple<>();
+		HolderSubscriber<Integer> subscriber = new HolderSubscriber<>(target, 4);
+		try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+			publisher.subscribe(subscriber);
+			for (int i = 0; i < 100; i++) {
+				publisher.submit(i);
+			}
+		}
+		while (!subscriber.isDone()) {
+			TimeUnit.MILLISECONDS.sleep(5);
+		}
+		Assert.assertNull(subscriber.getError());
+		Assert.assertEquals(target.get(), (Integer) 99);
+	}
+
+}
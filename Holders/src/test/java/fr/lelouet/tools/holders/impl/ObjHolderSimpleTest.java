@@ -1,8 +1,23 @@
 package fr.lelouet.tools.holders.impl;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -15,6 +30,7 @@ import fr.lelouet.tools.holders.interfaces.numbers.FloatHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.IntHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.LongHolder;
 import fr.lelouet.tools.lambdaref.GCManage;
+import fr.lelouet.tools.lambdaref.references.Scope;
 
 public class ObjHolderSimpleTest {
 
@@ -147,4 +163,512 @@ public class ObjHolderSimpleTest {
 		Assert.assertEquals(res.get(), (Integer) 40);
 	}
 
+	/**
+	 * a follower that unfollows itself while receiving a value must not prevent
+	 * the other followers from receiving it.
+	 */
+	@Test(timeOut = 500)
+	public void testUnfollowDuringSet() {
+		ObjHolderSimple<String> test = new ObjHolderSimple<>();
+		List<String> received = new ArrayList<>();
+		@SuppressWarnings("unchecked")
+		Consumer<String>[] self = new Consumer[1];
+		self[0] = s -> {
+			received.add("once" + s);
+			test.unfollow(self[0]);
+		};
+		test.follow(self[0]);
+		test.follow(s -> received.add(s));
+		test.set("a");
+		test.set("b");
+		Assert.assertEquals(received, Arrays.asList("oncea", "a", "b"));
+		Assert.assertEquals(test.followers(), 1);
+	}
+
+	/**
+	 * followers added from several threads while values are set must all end up
+	 * with the last value.
+	 */
+	@Test(timeOut = 2000)
+	public void testConcurrentFollow() throws InterruptedException {
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<>(0);
+		// keeps the followers reachable
+		ObjHolderSimple<Object> keep = new ObjHolderSimple<>();
+		int nbFollowers = 200;
+		int[] last = new int[nbFollowers];
+		AtomicInteger index = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i; (i = index.getAndIncrement()) < nbFollowers;) {
+					int fi = i;
+					test.follow(v -> last[fi] = v, keep);
+				}
+			});
+			threads[t].start();
+		}
+		for (int v = 1; v <= 1000; v++) {
+			test.set(v);
+		}
+		for (Thread th : threads) {
+			th.join();
+		}
+		test.set(-1);
+		for (int i = 0; i < nbFollowers; i++) {
+			Assert.assertEquals(last[i], -1, "follower " + i);
+		}
+	}
+
+	/**
+	 * with an executor, the set must return before the followers receive the
+	 * value, and the followers must receive the values in order.
+	 */
+	@Test(timeOut = 2000)
+	public void testExecutor() throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			ObjHolderSimple<Integer> test = new ObjHolderSimple<>();
+			test.setExecutor(pool);
+			Assert.assertTrue(test.isAsync());
+			CountDownLatch release = new CountDownLatch(1);
+			List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+			ObjHolder<Integer> doubled = test.map(i -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new UnsupportedOperationException(e);
+				}
+				return i * 2;
+			});
+			doubled.follow(received::add);
+			for (int i = 0; i < 100; i++) {
+				test.set(i);
+			}
+			// the set calls did not wait for the mapping
+			Assert.assertEquals(test.get(), (Integer) 99);
+			Assert.assertTrue(received.isEmpty());
+			release.countDown();
+			CountDownLatch done = new CountDownLatch(1);
+			doubled.follow(i -> {
+				if (i == 198) {
+					done.countDown();
+				}
+			});
+			Assert.assertTrue(done.await(1, TimeUnit.SECONDS));
+			Assert.assertEquals(received, IntStream.range(0, 100).map(i -> i * 2).boxed().collect(Collectors.toList()));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test(timeOut = 500)
+	public void testFollowDuringSet() {
+		AtomicInteger setDuringFollow = new AtomicInteger();
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<Integer>(1) {
+
+			@Override
+			protected void refresh() {
+				// called by follow once the follower is added
+				if (followers() > 0 && setDuringFollow.getAndSet(0) != 0) {
+					set(2);
+				}
+			}
+		};
+		setDuringFollow.set(1);
+		List<Integer> received = new ArrayList<>();
+		test.follow(received::add);
+		Assert.assertEquals(received, Arrays.asList(2));
+	}
+
+	@Test(timeOut = 500)
+	public void testLazy() {
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<>(1);
+		test.setLazy(true);
+		AtomicInteger mapped = new AtomicInteger();
+		ObjHolder<Integer> doubled = test.map(i -> {
+			mapped.incrementAndGet();
+			return i * 2;
+		});
+		IntHolder plusOne = doubled.mapInt(i -> i + 1);
+		// the first values are computed
+		Assert.assertEquals(mapped.get(), 1);
+		Assert.assertEquals(plusOne.get(), (Integer) 3);
+
+		// not followed : only computed when requested
+		test.set(2);
+		test.set(3);
+		test.set(4);
+		Assert.assertEquals(mapped.get(), 1);
+		Assert.assertEquals(plusOne.get(), (Integer) 9);
+		Assert.assertEquals(mapped.get(), 2);
+		Assert.assertEquals(doubled.get(), (Integer) 8);
+		Assert.assertEquals(mapped.get(), 2);
+
+		// followed : computed on each change
+		test.set(5);
+		List<Integer> received = new ArrayList<>();
+		Consumer<Integer> follower = received::add;
+		plusOne.follow(follower);
+		Assert.assertEquals(mapped.get(), 3);
+		test.set(6);
+		test.set(7);
+		Assert.assertEquals(mapped.get(), 5);
+		Assert.assertEquals(received, Arrays.asList(11, 13, 15));
+
+		// suspended once no more followed
+		plusOne.unfollow(follower);
+		test.set(8);
+		test.set(9);
+		Assert.assertEquals(mapped.get(), 5);
+		Assert.assertEquals(plusOne.get(), (Integer) 19);
+		Assert.assertEquals(mapped.get(), 6);
+	}
+
+	@Test(timeOut = 5000)
+	public void testLazyConcurrent() throws InterruptedException {
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<>(0);
+		test.setLazy(true);
+		ObjHolder<Integer> middle = test.map(i -> i + 1).map(i -> i * 2);
+		ObjHolder<Integer> last = middle.map(i -> i - 1);
+		int values = 10000;
+		Thread setter = new Thread(() -> {
+			for (int i = 1; i <= values; i++) {
+				test.set(i);
+			}
+		});
+		Thread getter = new Thread(() -> {
+			// reading the middle refreshes the chain up to it, so that set() then
+			// outdates the middle and the last while last.get() refreshes them.
+			for (int i = 0; i < values; i++) {
+				(i % 2 == 0 ? middle : last).get();
+			}
+		});
+		setter.start();
+		getter.start();
+		setter.join();
+		getter.join();
+		Assert.assertEquals(last.get(), (Integer) ((values + 1) * 2 - 1));
+	}
+
+	@Test(timeOut = 500)
+	public void testEqualityStrategies() {
+		ObjHolderSimple<String> test = new ObjHolderSimple<>("a");
+		List<String> received = new ArrayList<>();
+		test.follow(received::add);
+		test.set(new String("a"));
+		Assert.assertEquals(received.size(), 1);
+
+		test.setEquality(EqualityStrategy.identity());
+		test.set(new String("a"));
+		Assert.assertEquals(received.size(), 2);
+
+		test.setEquality(EqualityStrategy.comparing(String.CASE_INSENSITIVE_ORDER));
+		test.set("A");
+		Assert.assertEquals(received.size(), 2);
+		test.set("b");
+		Assert.assertEquals(received, Arrays.asList("a", "a", "b"));
+
+		test.setEquality(EqualityStrategy.version(String::length));
+		test.set("c");
+		test.set("cc");
+		Assert.assertEquals(received, Arrays.asList("a", "a", "b", "cc"));
+
+		test.setEquality(EqualityStrategy.hashThenEquals());
+		test.set("cc");
+		test.set(null);
+		test.set(null);
+		Assert.assertEquals(received, Arrays.asList("a", "a", "b", "cc", null));
+	}
+
+	@Test(timeOut = 500)
+	public void testLatestOnExecutor() {
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<>();
+		List<Runnable> tasks = new ArrayList<>();
+		ObjHolder<Integer> latest = test.latestOnExecutor(tasks::add);
+		List<Integer> received = new ArrayList<>();
+		latest.follow(received::add);
+		test.set(1);
+		test.set(2);
+		test.set(3);
+		Assert.assertEquals(tasks.size(), 1);
+		Assert.assertTrue(received.isEmpty());
+		tasks.remove(0).run();
+		Assert.assertEquals(received, Arrays.asList(3));
+		test.set(4);
+		Assert.assertEquals(tasks.size(), 1);
+		tasks.remove(0).run();
+		Assert.assertEquals(received, Arrays.asList(3, 4));
+	}
+
+	/**
+	 * a scheduler whose tasks only run when the test advances its time.
+	 */
+	static class ManualScheduler extends ScheduledThreadPoolExecutor {
+
+		class Task implements ScheduledFuture<Object> {
+
+			final Runnable command;
+
+			long time;
+
+			final long period;
+
+			boolean cancelled = false;
+
+			Task(Runnable command, long time, long period) {
+				this.command = command;
+				this.time = time;
+				this.period = period;
+			}
+
+			@Override
+			public long getDelay(TimeUnit unit) {
+				return unit.convert(time - now, TimeUnit.NANOSECONDS);
+			}
+
+			@Override
+			public int compareTo(Delayed o) {
+				return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+			}
+
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				cancelled = true;
+				return tasks.remove(this);
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return cancelled;
+			}
+
+			@Override
+			public boolean isDone() {
+				return cancelled;
+			}
+
+			@Override
+			public Object get() {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public Object get(long timeout, TimeUnit unit) {
+				throw new UnsupportedOperationException();
+			}
+		}
+
+		long now = 0;
+
+		final List<Task> tasks = new ArrayList<>();
+
+		ManualScheduler() {
+			super(1);
+		}
+
+		@Override
+		public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+			Task task = new Task(command, now + unit.toNanos(delay), 0);
+			tasks.add(task);
+			return task;
+		}
+
+		@Override
+		public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+			Task task = new Task(command, now + unit.toNanos(initialDelay), unit.toNanos(period));
+			tasks.add(task);
+			return task;
+		}
+
+		/**
+		 * run the tasks due until a time, in the order of their time.
+		 */
+		void advance(Duration duration) {
+			long end = now + duration.toNanos();
+			while (true) {
+				Task next = tasks.stream().filter(t -> t.time <= end).min(Comparator.comparingLong(t -> t.time))
+						.orElse(null);
+				if (next == null) {
+					break;
+				}
+				now = next.time;
+				tasks.remove(next);
+				if (next.period > 0) {
+					next.time += next.period;
+					tasks.add(next);
+				}
+				next.command.run();
+			}
+			now = end;
+		}
+	}
+
+	@Test(timeOut = 500)
+	public void testRateLimit() {
+		ManualScheduler scheduler = new ManualScheduler();
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<>();
+		List<Integer> debounced = new ArrayList<>();
+		List<Integer> throttled = new ArrayList<>();
+		List<Integer> sampled = new ArrayList<>();
+		ObjHolder<Integer> debounce = Coalescer.debounce(test, Duration.ofMillis(100), scheduler, () -> scheduler.now);
+		debounce.follow(debounced::add);
+		ObjHolder<Integer> throttle = test.throttle(Duration.ofMillis(100), scheduler);
+		throttle.follow(throttled::add);
+		ObjHolder<Integer> sample = test.sample(Duration.ofMillis(200), scheduler);
+		sample.follow(sampled::add);
+		for (int i = 1; i <= 100; i++) {
+			test.set(i);
+		}
+		// one task per operator, whatever the number of values
+		Assert.assertEquals(scheduler.tasks.size(), 3);
+		Assert.assertEquals(throttled, Arrays.asList(1));
+
+		scheduler.advance(Duration.ofMillis(50));
+		test.set(101);
+		Assert.assertEquals(scheduler.tasks.size(), 3);
+		scheduler.advance(Duration.ofMillis(50));
+		// the debounce waits for 50ms more after the last value
+		Assert.assertEquals(debounced, Arrays.asList());
+		Assert.assertEquals(throttled, Arrays.asList(1, 101));
+		scheduler.advance(Duration.ofMillis(50));
+		Assert.assertEquals(debounced, Arrays.asList(101));
+		Assert.assertEquals(sampled, Arrays.asList());
+		scheduler.advance(Duration.ofMillis(50));
+		Assert.assertEquals(sampled, Arrays.asList(101));
+		Assert.assertEquals(throttled, Arrays.asList(1, 101));
+		// only the sampling is still scheduled
+		Assert.assertEquals(scheduler.tasks.size(), 1);
+		scheduler.shutdownNow();
+	}
+
+	@Test(timeOut = 2000)
+	public void testCoalescerDoesNotBlockSource() throws InterruptedException {
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<>();
+		ObjHolder<Integer> latest = test.latestOnExecutor(task -> new Thread(task).start());
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch slow = new CountDownLatch(1);
+		CountDownLatch received = new CountDownLatch(2);
+		latest.follow(i -> {
+			blocked.countDown();
+			try {
+				slow.await();
+			} catch (InterruptedException e) {
+				throw new UnsupportedOperationException("catch this", e);
+			}
+			received.countDown();
+		});
+		test.set(1);
+		Assert.assertTrue(blocked.await(1, TimeUnit.SECONDS));
+		// the follower of latest is blocked on the value 1, but the source is not
+		test.set(2);
+		test.set(3);
+		slow.countDown();
+		Assert.assertTrue(received.await(1, TimeUnit.SECONDS));
+		Assert.assertEquals(latest.get(), (Integer) 3);
+	}
+
+	@Test(timeOut = 500)
+	public void testKeepAliveReleased() {
+		ObjHolderSimple<Integer> source = new ObjHolderSimple<>();
+		ObjHolderSimple<Integer> target = new ObjHolderSimple<>();
+		Consumer<Integer> cons = target::set;
+		source.follow(cons, target);
+		Assert.assertEquals(target.keptAlive(), 1);
+		source.unfollow(cons);
+		Assert.assertEquals(target.keptAlive(), 0);
+
+		// unpack re-follows a new holder on each change
+		ObjHolderSimple<Integer> outer = new ObjHolderSimple<>();
+		ObjHolderSimple<Integer> unpacked = (ObjHolderSimple<Integer>) outer.unPack(i -> new ObjHolderSimple<>(i * 2));
+		for (int i = 0; i < 100; i++) {
+			outer.set(i);
+		}
+		Assert.assertEquals((int) unpacked.get(), 198);
+		// one for outer, one for the last inner holder
+		Assert.assertEquals(unpacked.keptAlive(), 2);
+	}
+
+	@Test(timeOut = 2000)
+	public void testScope() throws InterruptedException {
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<>(1);
+		int globalSize = Scope.GLOBAL.size();
+
+		// a follower without holder is pinned until unfollowed
+		List<Consumer<Integer>> listeners = Collections.synchronizedList(new ArrayList<>());
+		ExecutorService exec = Executors.newFixedThreadPool(4);
+		for (int i = 0; i < 100; i++) {
+			exec.execute(() -> {
+				Consumer<Integer> cons = v -> {
+				};
+				listeners.add(cons);
+				test.follow(cons);
+			});
+		}
+		exec.shutdown();
+		Assert.assertTrue(exec.awaitTermination(1, TimeUnit.SECONDS));
+		Assert.assertEquals(Scope.GLOBAL.size(), globalSize + 100);
+		for (Consumer<Integer> cons : listeners) {
+			test.unfollow(cons);
+		}
+		Assert.assertEquals(Scope.GLOBAL.size(), globalSize);
+
+		// a scope releases its followers in bulk
+		List<Integer> received = new ArrayList<>();
+		try (Scope scope = new Scope()) {
+			test.map(i -> i * 2).follow(received::add, scope);
+			Assert.assertEquals(scope.size(), 1);
+			test.set(2);
+			scope.dispose();
+			Assert.assertEquals(scope.size(), 0);
+		}
+		Assert.assertEquals(Scope.GLOBAL.size(), globalSize);
+		Assert.assertEquals(received, Arrays.asList(2, 4));
+
+		// unfollowing releases the reference held by the scope
+		try (Scope scope = new Scope()) {
+			Consumer<Integer> cons = received::add;
+			test.follow(cons, scope);
+			Assert.assertEquals(scope.size(), 1);
+			test.unfollow(cons);
+			Assert.assertEquals(scope.size(), 0);
+		}
+	}
+
+
+	/**
+	 * the followers are called once the monitor of the holder is released, so a
+	 * blocked follower does not prevent other threads from setting the value.
+	 */
+	@Test(timeOut = 2000)
+	public void testPublishOutsideMonitor() throws InterruptedException {
+		ObjHolderSimple<Integer> test = new ObjHolderSimple<>();
+		List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch released = new CountDownLatch(1);
+		test.follow(i -> {
+			Assert.assertFalse(Thread.holdsLock(test));
+			received.add(i);
+			if (i == 1) {
+				entered.countDown();
+				try {
+					released.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				// a set from a follower is transmitted after the current value
+				test.set(2);
+			}
+		});
+		Thread setter = new Thread(() -> test.set(1));
+		setter.start();
+		Assert.assertTrue(entered.await(1, TimeUnit.SECONDS));
+		// the setter thread is in the follower : the monitor must be free.
+		test.set(3);
+		released.countDown();
+		setter.join(1000);
+		Assert.assertEquals(received.get(0), (Integer) 1);
+		Assert.assertEquals((int) test.get(), 2);
+		Assert.assertEquals(received.subList(1, received.size()), Arrays.asList(3, 2));
+	}
+
 }
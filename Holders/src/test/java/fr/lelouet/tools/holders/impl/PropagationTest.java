@@ -0,0 +1,173 @@
+package fr.lelouet.tools.holders.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.lelouet.tools.holders.impl.numbers.IntHolderImpl;
+import fr.lelouet.tools.holders.interfaces.ObjHolder;
+import fr.lelouet.tools.holders.interfaces.numbers.IntHolder;
+
+public class PropagationTest {
+
+	/**
+	 * A -&gt; B, A -&gt; C, B+C -&gt; D : D must be computed once per change of A,
+	 * and never with an inconsistent couple (B, C).
+	 */
+	@Test(timeOut = 500)
+	public void testDiamond() {
+		IntHolderImpl a = new IntHolderImpl(1);
+		IntHolder b = a.add(1);
+		IntHolder c = a.mult(2);
+		List<String> computed = new ArrayList<>();
+		ObjHolder<String> d = b.combine(c, (vb, vc) -> {
+			computed.add(vb + "," + vc);
+			return vb + "," + vc;
+		});
+		Assert.assertEquals(d.get(), "2,2");
+		Assert.assertTrue(a.getDepth() < Math.min(((ObjHolderSimple<?>) b).getDepth(), ((ObjHolderSimple<?>) c).getDepth()));
+		computed.clear();
+
+		a.set(5);
+		Assert.assertEquals(computed, Arrays.asList("6,10"));
+		Assert.assertEquals(d.get(), "6,10");
+	}
+
+	/**
+	 * a reduce over several holders derived from the same source at different
+	 * depths is computed once per change.
+	 */
+	@SuppressWarnings("unchecked")
+	@Test(timeOut = 500)
+	public void testReduceDeep() {
+		IntHolderImpl a = new IntHolderImpl(1);
+		IntHolder deep = a.add(1).add(1).add(1);
+		IntHolder sum = a.add(deep);
+		int[] count = new int[1];
+		ObjHolder<Integer> reduced = a.reduce(l -> {
+			count[0]++;
+			return l.stream().mapToInt(i -> i).sum();
+		}, deep, sum, a.mult(2));
+		Assert.assertEquals(reduced.get(), (Integer) (1 + 4 + 5 + 2));
+		count[0] = 0;
+
+		a.set(2);
+		Assert.assertEquals(count[0], 1);
+		Assert.assertEquals(reduced.get(), (Integer) (2 + 5 + 7 + 4));
+	}
+
+	/**
+	 * setting many holders in a batch reduces them once, when the batch is
+	 * closed.
+	 */
+	@SuppressWarnings({ "unchecked", "try" })
+	@Test(timeOut = 500)
+	public void testBatch() {
+		IntHolderImpl[] inputs = new IntHolderImpl[50];
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i] = new IntHolderImpl(0);
+		}
+		int[] count = new int[1];
+		ObjHolder<Integer> reduced = inputs[0].reduce(l -> {
+			count[0]++;
+			return l.stream().mapToInt(i -> i).sum();
+		}, inputs[1], Arrays.copyOfRange(inputs, 2, inputs.length, ObjHolder[].class));
+		Assert.assertEquals(reduced.get(), (Integer) 0);
+		count[0] = 0;
+
+		Propagation.batch(() -> {
+			for (int i = 0; i < inputs.length; i++) {
+				inputs[i].set(i);
+				inputs[i].set(i + 1);
+			}
+			Assert.assertEquals(inputs[3].get(), (Integer) 4);
+			Assert.assertEquals(reduced.get(), (Integer) 0);
+			Assert.assertEquals(count[0], 0);
+		});
+		Assert.assertEquals(count[0], 1);
+		Assert.assertEquals(reduced.get(), (Integer) (50 * 51 / 2));
+
+		// nested batches are committed with the outermost one
+		try (Propagation.Batch ignored = Propagation.openBatch()) {
+			Propagation.batch(() -> inputs[0].set(100));
+			Assert.assertEquals(count[0], 1);
+		}
+		Assert.assertEquals(count[0], 2);
+		Assert.assertEquals(reduced.get(), (Integer) (50 * 51 / 2 + 99));
+	}
+
+	/**
+	 * a follower that throws when a batch is closed does not prevent the other
+	 * holders of the batch from transmitting their value.
+	 */
+	@Test(timeOut = 500)
+	public void testBatchThrowingFollower() {
+		IntHolderImpl a = new IntHolderImpl(0);
+		IntHolderImpl b = new IntHolderImpl(0);
+		IntHolderImpl c = new IntHolderImpl(0);
+		IntHolder doubled = b.mult(2);
+		a.follow(v -> {
+			if (v > 0) {
+				throw new IllegalStateException("a" + v);
+			}
+		});
+		c.follow(v -> {
+			if (v > 0) {
+				throw new IllegalArgumentException("c" + v);
+			}
+		});
+		List<Integer> received = new ArrayList<>();
+		b.follow(received::add);
+		try {
+			Propagation.batch(() -> {
+				a.set(1);
+				b.set(2);
+				c.set(3);
+			});
+			Assert.fail("the exception of the follower must be thrown");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals(e.getMessage(), "a1");
+			Assert.assertEquals(e.getSuppressed().length, 1);
+			Assert.assertEquals(e.getSuppressed()[0].getMessage(), "c3");
+		}
+		Assert.assertEquals(received, Arrays.asList(0, 2));
+		Assert.assertEquals(doubled.get(), (Integer) 4);
+	}
+
+	/**
+	 * a holder that follows a deeper one after it was derived pushes its derived
+	 * holders deeper, so the diamond below it is still computed once.
+	 */
+	@Test(timeOut = 500)
+	public void testReparent() {
+		IntHolderImpl b = new IntHolderImpl(0);
+		IntHolder c = b.add(1);
+		List<String> computed = new ArrayList<>();
+		ObjHolder<String> d = b.combine(c, (vb, vc) -> {
+			computed.add(vb + "," + vc);
+			return vb + "," + vc;
+		});
+		Assert.assertEquals(d.get(), "0,1");
+
+		IntHolderImpl a = new IntHolderImpl(1);
+		IntHolder deep = a.add(1).add(1).add(1);
+		deep.follow(b::set, b);
+		Assert.assertTrue(((ObjHolderSimple<?>) deep).getDepth() < b.getDepth());
+		Assert.assertTrue(b.getDepth() < ((ObjHolderSimple<?>) c).getDepth());
+		Assert.assertTrue(((ObjHolderSimple<?>) c).getDepth() < ((ObjHolderSimple<?>) d).getDepth());
+		Assert.assertEquals(d.get(), "4,5");
+		computed.clear();
+
+		a.set(5);
+		Assert.assertEquals(computed, Arrays.asList("8,9"));
+
+		// a cycle does not deepen the holders forever
+		c.follow(v -> {
+		}, b);
+		Assert.assertTrue(b.getDepth() > ((ObjHolderSimple<?>) deep).getDepth());
+	}
+
+}
@@ -1,9 +1,14 @@
 package fr.lelouet.tools.holders.impl.collections;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.testng.Assert;
@@ -11,6 +16,7 @@ import org.testng.annotations.Test;
 
 import fr.lelouet.tools.holders.impl.ObjHolderSimple;
 import fr.lelouet.tools.holders.interfaces.ObjHolder;
+import fr.lelouet.tools.holders.interfaces.collections.CollectionDelta;
 import fr.lelouet.tools.holders.interfaces.collections.CollectionHolder;
 import fr.lelouet.tools.holders.interfaces.collections.ListHolder;
 
@@ -46,6 +52,58 @@ public class ACollectionHolderTest {
 		Assert.assertEquals(flattened.get(), Arrays.asList('c', 'h', 'a', 'r', 'a', 'c', 't', 'e', 'r'));
 	}
 
+	@Test(timeOut = 2000)
+	public void testFlattenIncremental() {
+		List<ListHolderImpl<Integer>> inners = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			inners.add(ListHolderImpl.of(i, i));
+		}
+		ListHolderImpl<ListHolderImpl<Integer>> source = new ListHolderImpl<>(new ArrayList<>(inners));
+		ListHolder<Integer> flattened = source.flatten(l -> l);
+		List<CollectionDelta<Integer>> deltas = new ArrayList<>();
+		flattened.followChanges(deltas::add);
+		Runnable check = () -> Assert.assertEquals(flattened.get(),
+				inners.stream().flatMap(l -> l.get().stream()).collect(Collectors.toList()));
+		check.run();
+
+		// one inner change only modifies its segment
+		deltas.clear();
+		inners.get(50).add(1, 500);
+		check.run();
+		Assert.assertEquals(deltas.size(), 1);
+		Assert.assertEquals(deltas.get(0).changes().size(), 1);
+		Assert.assertEquals(deltas.get(0).changes().get(0).index(), 101);
+		inners.get(3).remove(0);
+		inners.get(99).set(Arrays.asList(7, 8, 9));
+		check.run();
+
+		// removing and adding items of the source
+		source.remove(inners.remove(10));
+		check.run();
+		ListHolderImpl<Integer> added = ListHolderImpl.of(-1);
+		inners.add(added);
+		source.add(added);
+		check.run();
+
+		// an inner set has no index
+		SetHolderImpl<Integer> set = SetHolderImpl.of(1, 2);
+		ListHolderImpl<SetHolderImpl<Integer>> sets = ListHolderImpl.of(set, SetHolderImpl.of(3));
+		ListHolder<Integer> flattenedSets = sets.flatten(l -> l);
+		set.remove(1);
+		set.add(4);
+		Assert.assertEquals(flattenedSets.get().subList(2, 3), Arrays.asList(3));
+		Assert.assertEquals(new HashSet<>(flattenedSets.get()), new HashSet<>(Arrays.asList(2, 3, 4)));
+
+		// the flattened list waits for all the collections to be received
+		ListHolderImpl<Integer> missing = new ListHolderImpl<>();
+		inners.add(missing);
+		source.add(missing);
+		inners.get(0).add(1000);
+		Assert.assertFalse(flattened.get().contains(1000));
+		missing.set(Arrays.asList(5));
+		check.run();
+	}
+
 	@Test(timeOut = 500)
 	public void testMapUnpack() {
 		// source is the list of ints.
@@ -63,4 +121,98 @@ public class ACollectionHolderTest {
 		Assert.assertEquals(concat.get(), "a12345");
 	}
 
+	@Test(timeOut = 2000)
+	public void testUnpackIncremental() {
+		ListHolderImpl<Integer> source = new ListHolderImpl<>();
+		Map<Integer, ObjHolderSimple<String>> backMap = new HashMap<>();
+		int[] mapped = new int[1];
+		CollectionHolder<String, ?> test = source.unpackItems(i -> {
+			mapped[0]++;
+			return backMap.computeIfAbsent(i, i2 -> new ObjHolderSimple<>("" + i2));
+		});
+		List<CollectionDelta<String>> deltas = new ArrayList<>();
+		test.followChanges(deltas::add);
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			expected.add(i);
+		}
+		source.set(new ArrayList<>(expected));
+		Assert.assertEquals(mapped[0], 1000);
+
+		// only the items added are mapped, only the items removed unfollowed
+		source.add(500, 1000);
+		expected.add(500, 1000);
+		source.remove(0);
+		expected.remove(0);
+		Assert.assertEquals(mapped[0], 1001);
+		Assert.assertEquals(backMap.get(0).followers(), 0);
+		Assert.assertEquals(backMap.get(1).followers(), 1);
+
+		// a value change only modifies its item
+		deltas.clear();
+		backMap.get(700).set("a");
+		Assert.assertEquals(deltas.size(), 1);
+		Assert.assertEquals(deltas.get(0).changes().size(), 2);
+		Assert.assertEquals(deltas.get(0).changes().get(0).index(), 700);
+		Assert.assertEquals(test.get(), expected.stream().map(i -> backMap.get(i).get()).collect(Collectors.toList()));
+
+		// the unpacked list waits for all the holders to have a value
+		backMap.put(2000, new ObjHolderSimple<>());
+		source.add(2000);
+		backMap.get(3).set("b");
+		Assert.assertEquals(new ArrayList<>(test.get()).get(2), "3");
+		backMap.get(2000).set("c");
+		expected.add(2000);
+		Assert.assertEquals(test.get(), expected.stream().map(i -> backMap.get(i).get()).collect(Collectors.toList()));
+
+		// values received after insertions and removals before their item
+		for (int i = 0; i < 100; i++) {
+			source.add(i * 3, 3000 + i);
+			expected.add(i * 3, 3000 + i);
+			source.remove(i * 5);
+			expected.remove(i * 5);
+		}
+		for (int i = 0; i < expected.size(); i += 7) {
+			backMap.get(expected.get(i)).set("d" + i);
+		}
+		Assert.assertEquals(test.get(), expected.stream().map(i -> backMap.get(i).get()).collect(Collectors.toList()));
+	}
+
+
+	/**
+	 * following the changes of a lazy collection refreshes it outside of its
+	 * monitor, while another thread outdates it from the source.
+	 */
+	@Test(timeOut = 5000)
+	public void testLazyFollowChangesConcurrent() throws InterruptedException {
+		ObjHolderSimple<Integer> source = new ObjHolderSimple<>(0);
+		source.setLazy(true);
+		ListHolder<Integer> list = source.map(i -> i + 1).toList(i -> Arrays.asList(i, i * 2));
+		int values = 2000;
+		AtomicBoolean noReset = new AtomicBoolean(false);
+		Thread setter = new Thread(() -> {
+			for (int i = 1; i <= values; i++) {
+				source.set(i);
+			}
+		});
+		Thread follower = new Thread(() -> {
+			for (int i = 0; i < values; i++) {
+				List<CollectionDelta<Integer>> received = Collections.synchronizedList(new ArrayList<>());
+				Consumer<CollectionDelta<Integer>> cons = received::add;
+				list.followChanges(cons);
+				list.unfollowChanges(cons);
+				// the setter thread may still be transmitting the first delta
+				if (!received.isEmpty() && !received.get(0).isReset()) {
+					noReset.set(true);
+				}
+			}
+		});
+		setter.start();
+		follower.start();
+		setter.join();
+		follower.join();
+		Assert.assertFalse(noReset.get());
+		Assert.assertEquals(list.get(), Arrays.asList(values + 1, (values + 1) * 2));
+	}
+
 }
@@ -1,19 +1,32 @@
 package fr.lelouet.tools.holders.impl.collections;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import fr.lelouet.tools.holders.impl.EqualityStrategy;
+import fr.lelouet.tools.holders.impl.Propagation;
+import fr.lelouet.tools.holders.impl.numbers.BoolHolderImpl;
 import fr.lelouet.tools.holders.interfaces.ObjHolder;
+import fr.lelouet.tools.holders.interfaces.collections.CollectionDelta;
 import fr.lelouet.tools.holders.interfaces.collections.ListHolder;
 import fr.lelouet.tools.holders.interfaces.collections.MapHolder;
+import fr.lelouet.tools.holders.interfaces.collections.SetHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.DoubleHolder;
 import fr.lelouet.tools.holders.interfaces.numbers.IntHolder;
+import fr.lelouet.tools.holders.interfaces.numbers.LongHolder;
 
 public class ListHolderImplTest {
 
@@ -75,6 +88,102 @@ public class ListHolderImplTest {
 
 	}
 
+	@Test(timeOut = 2000)
+	public void testGroupingIncremental() {
+		Random random = new Random(42);
+		List<String> rows = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			rows.add("s" + random.nextInt(5) + ":" + i);
+		}
+		ListHolderImpl<String> source = new ListHolderImpl<>(new ArrayList<>(rows));
+		Function<String, String> status = row -> row.substring(0, 2);
+		MapHolder<String, List<String>> grouped = source.grouping(status);
+		MapHolder<String, String> last = source.toMap(status);
+		for (int step = 0; step < 200; step++) {
+			int index = random.nextInt(rows.size());
+			String row = "s" + random.nextInt(5) + ":" + (2000 + step);
+			Map<String, List<String>> before = grouped.get();
+			String removed = rows.get(index);
+			rows.set(index, row);
+			source.replace(index, row);
+			// only the groups of the removed and added rows change
+			Map<String, List<String>> after = grouped.get();
+			for (String key : after.keySet()) {
+				if (!key.equals(status.apply(removed)) && !key.equals(status.apply(row))) {
+					Assert.assertSame(after.get(key), before.get(key));
+				}
+			}
+		}
+		source.add(7, "s9:new");
+		rows.add(7, "s9:new");
+		source.remove(0);
+		rows.remove(0);
+		Assert.assertEquals(grouped.get(), rows.stream().collect(Collectors.groupingBy(status)));
+		Assert.assertEquals(last.get(), rows.stream().collect(Collectors.toMap(status, r -> r, (a, b) -> b)));
+
+		// insertions and removals anywhere keep the order of the groups
+		for (int step = 0; step < 500; step++) {
+			int index = random.nextInt(rows.size());
+			if (random.nextBoolean()) {
+				String row = "s" + random.nextInt(5) + ":" + (3000 + step);
+				rows.add(index, row);
+				source.add(index, row);
+			} else {
+				rows.remove(index);
+				source.remove(index);
+			}
+		}
+		Assert.assertEquals(grouped.get(), rows.stream().collect(Collectors.groupingBy(status)));
+		Assert.assertEquals(last.get(), rows.stream().collect(Collectors.toMap(status, r -> r, (a, b) -> b)));
+		try {
+			grouped.get().get("s0").add("s0:modified");
+			Assert.fail("a group must not be modifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	@Test(timeOut = 2000)
+	public void testAggregates() {
+		Random random = new Random(42);
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			expected.add(random.nextInt(1000) - 500);
+		}
+		ListHolderImpl<Integer> source = new ListHolderImpl<>(new ArrayList<>(expected));
+		int[] mapped = new int[1];
+		IntHolder sum = source.sumInt(i -> {
+			mapped[0]++;
+			return i;
+		});
+		LongHolder sumLong = source.sumLong(i -> i * 1000000000L);
+		DoubleHolder sumDouble = source.sumDouble(i -> i / 10.0);
+		IntHolder positives = source.count(i -> i > 0);
+		DoubleHolder average = source.average(i -> i);
+		ObjHolder<Integer> min = source.min(Comparator.naturalOrder());
+		ObjHolder<Integer> max = source.max(Comparator.naturalOrder());
+		for (int step = 0; step < 1000; step++) {
+			int index = random.nextInt(expected.size());
+			int value = random.nextInt(2000) - 1000;
+			mapped[0] = 0;
+			expected.set(index, value);
+			source.replace(index, value);
+			// only the removed and added items are mapped
+			Assert.assertEquals(mapped[0], 2);
+		}
+		Assert.assertEquals((int) sum.get(), expected.stream().mapToInt(i -> i).sum());
+		Assert.assertEquals((long) sumLong.get(), expected.stream().mapToLong(i -> i * 1000000000L).sum());
+		Assert.assertEquals(sumDouble.get(), expected.stream().mapToDouble(i -> i / 10.0).sum(), 1e-6);
+		Assert.assertEquals((int) positives.get(), (int) expected.stream().filter(i -> i > 0).count());
+		Assert.assertEquals(average.get(), expected.stream().mapToInt(i -> i).average().getAsDouble(), 1e-9);
+		Assert.assertEquals(min.get(), Collections.min(expected));
+		Assert.assertEquals(max.get(), Collections.max(expected));
+		source.setEmpty();
+		Assert.assertEquals((int) sum.get(), 0);
+		Assert.assertTrue(Double.isNaN(average.get()));
+		Assert.assertNull(min.get());
+	}
+
 	@Test(dependsOnMethods = "testCreation", timeOut = 500)
 	public void testFilter() {
 		ListHolderImpl<String> test = new ListHolderImpl<>();
@@ -180,6 +289,43 @@ public class ListHolderImplTest {
 
 	}
 
+	@Test(timeOut = 2000)
+	public void testFilterWhenIncremental() {
+		List<BoolHolderImpl> predicates = new ArrayList<>();
+		List<Integer> items = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			predicates.add(new BoolHolderImpl(i % 2 == 0));
+			items.add(i);
+		}
+		ListHolderImpl<Integer> source = new ListHolderImpl<>(items);
+		int[] created = new int[1];
+		ListHolder<Integer> accepted = source.filterWhen(i -> {
+			created[0]++;
+			return predicates.get(i);
+		});
+		List<CollectionDelta<Integer>> deltas = new ArrayList<>();
+		accepted.followChanges(deltas::add);
+		Assert.assertEquals(accepted.get().size(), 1000);
+		Random random = new Random(42);
+		for (int step = 0; step < 1000; step++) {
+			BoolHolderImpl flipped = predicates.get(random.nextInt(predicates.size()));
+			deltas.clear();
+			flipped.set(!flipped.get());
+			// one flip is one change
+			Assert.assertEquals(deltas.size(), 1);
+			Assert.assertEquals(deltas.get(0).changes().size(), 1);
+		}
+		Assert.assertEquals(accepted.get(),
+				items.stream().filter(i -> predicates.get(i).get()).collect(Collectors.toList()));
+		// a duplicate item uses the same predicate
+		source.remove((Integer) 4);
+		source.add(6);
+		Assert.assertEquals(created[0], 2000);
+		Assert.assertEquals(predicates.get(4).followers(), 0);
+		Assert.assertEquals(accepted.get(), source.get().stream().distinct().filter(i -> predicates.get(i).get())
+				.collect(Collectors.toList()));
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test(dependsOnMethods = "testCreation", timeOut = 500)
 	public void testConcat() {
@@ -199,4 +345,229 @@ public class ListHolderImplTest {
 		Assert.assertEquals(source.pos(2, "").get(), "");
 	}
 
+	/**
+	 * modify a list item by item, and check the incremental holders are the same
+	 * as if recomputed, and the predicate is only applied to the added items.
+	 */
+	@Test(timeOut = 2000)
+	public void testIncremental() {
+		ListHolderImpl<Integer> source = new ListHolderImpl<>(new ArrayList<>(Arrays.asList(1, 2, 3)));
+		int[] tests = new int[1];
+		Predicate<Integer> even = i -> {
+			tests[0]++;
+			return i % 2 == 0;
+		};
+		ListHolder<Integer> filtered = source.filter(even);
+		ListHolder<String> mapped = source.mapItems(i -> "" + i);
+		SetHolder<Integer> distinct = source.distinct();
+		IntHolder size = source.size();
+		Assert.assertEquals(filtered.get(), Arrays.asList(2));
+		tests[0] = 0;
+
+		Random random = new Random(42);
+		List<Integer> expected = new ArrayList<>(source.get());
+		int added = 0;
+		for (int step = 0; step < 2000; step++) {
+			int value = random.nextInt(20);
+			switch (expected.isEmpty() ? 0 : random.nextInt(4)) {
+			case 0:
+				int index = random.nextInt(expected.size() + 1);
+				expected.add(index, value);
+				source.add(index, value);
+				added++;
+				break;
+			case 1:
+				expected.add(value);
+				source.add(value);
+				added++;
+				break;
+			case 2:
+				index = random.nextInt(expected.size());
+				expected.remove(index);
+				source.remove(index);
+				break;
+			default:
+				index = random.nextInt(expected.size());
+				expected.set(index, value);
+				source.replace(index, value);
+				added++;
+			}
+		}
+		Assert.assertEquals(tests[0], added);
+		Assert.assertEquals(source.get(), expected);
+		Assert.assertEquals(filtered.get(), expected.stream().filter(i -> i % 2 == 0).collect(Collectors.toList()));
+		Assert.assertEquals(mapped.get(), expected.stream().map(i -> "" + i).collect(Collectors.toList()));
+		Assert.assertEquals(distinct.get(), new HashSet<>(expected));
+		Assert.assertEquals((int) size.get(), expected.size());
+
+		// setting a whole list resets the derived holders
+		source.set(Arrays.asList(4, 5, 6));
+		Assert.assertEquals(filtered.get(), Arrays.asList(4, 6));
+		Assert.assertEquals(mapped.get(), Arrays.asList("4", "5", "6"));
+		source.remove((Integer) 5);
+		Assert.assertEquals(mapped.get(), Arrays.asList("4", "6"));
+		Assert.assertEquals((int) size.get(), 2);
+	}
+
+	@Test(timeOut = 2000)
+	public void testSortedIncremental() {
+		ListHolderImpl<Integer> source = new ListHolderImpl<>();
+		int[] comparisons = new int[1];
+		// ties between different values, as a leaderboard sorted by score
+		Comparator<Integer> byTens = (i, j) -> {
+			comparisons[0]++;
+			return Integer.compare(j / 10, i / 10);
+		};
+		ListHolder<Integer> sorted = source.sorted(byTens);
+		ListHolder<Integer> natural = source.sorted(Comparator.naturalOrder());
+		Random random = new Random(42);
+		List<Integer> initial = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			initial.add(random.nextInt(100000));
+		}
+		source.set(initial);
+		List<Integer> expected = new ArrayList<>(initial);
+		for (int step = 0; step < 1000; step++) {
+			int index = random.nextInt(expected.size());
+			int value = random.nextInt(100000);
+			comparisons[0] = 0;
+			if (random.nextBoolean()) {
+				expected.set(index, value);
+				source.replace(index, value);
+			} else {
+				expected.remove(index);
+				source.remove(index);
+				expected.add(value);
+				source.add(value);
+			}
+			// no sort of the whole list
+			Assert.assertTrue(comparisons[0] < 200, "" + comparisons[0]);
+		}
+		List<Integer> naturalExpected = new ArrayList<>(expected);
+		Collections.sort(naturalExpected);
+		Assert.assertEquals(natural.get(), naturalExpected);
+		List<Integer> byTensList = sorted.get();
+		for (int i = 1; i < byTensList.size(); i++) {
+			Assert.assertTrue(byTensList.get(i - 1) / 10 >= byTensList.get(i) / 10);
+		}
+		List<Integer> byTensSorted = new ArrayList<>(byTensList);
+		Collections.sort(byTensSorted);
+		Assert.assertEquals(byTensSorted, naturalExpected);
+
+		// removing an item does not move its equals
+		source.set(Arrays.asList(12, 25, 11, 13));
+		Assert.assertEquals(sorted.get(), Arrays.asList(25, 12, 11, 13));
+		source.remove((Integer) 11);
+		source.add(0, 14);
+		Assert.assertEquals(sorted.get(), Arrays.asList(25, 12, 13, 14));
+	}
+
+	/** a player whose score is modified in place */
+	private static class Player {
+
+		int score;
+
+		Player(int score) {
+			this.score = score;
+		}
+
+		@Override
+		public String toString() {
+			return "player" + score;
+		}
+	}
+
+	@Test(timeOut = 500)
+	public void testSortedMutatedItem() {
+		List<Player> players = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			players.add(new Player(i * 10));
+		}
+		ListHolderImpl<Player> source = new ListHolderImpl<>(new ArrayList<>(players));
+		Comparator<Player> byScore = Comparator.comparingInt(p -> -p.score);
+		ListHolder<Player> leaderboard = source.sorted(byScore);
+		ObjHolder<Player> best = source.min(byScore);
+		ObjHolder<Player> worst = source.max(byScore);
+		Assert.assertSame(best.get(), players.get(9));
+
+		// the last player now has the best score, the best one the worst
+		players.get(0).score = 1000;
+		source.replace(0, players.get(0));
+		players.get(9).score = -1;
+		source.replace(9, players.get(9));
+
+		List<Player> expected = new ArrayList<>(players);
+		expected.sort(byScore);
+		Assert.assertEquals(leaderboard.get(), expected);
+		Assert.assertSame(best.get(), players.get(0));
+		Assert.assertSame(worst.get(), players.get(9));
+	}
+
+	/**
+	 * a list that is read is not modified afterwards
+	 */
+	@Test(timeOut = 500)
+	public void testSnapshot() {
+		ListHolderImpl<Integer> source = new ListHolderImpl<>();
+		source.add(1);
+		List<Integer> first = source.get();
+		source.add(2);
+		Assert.assertEquals(first, Arrays.asList(1));
+		Assert.assertEquals(source.get(), Arrays.asList(1, 2));
+		List<List<Integer>> received = new ArrayList<>();
+		source.follow(received::add);
+		Propagation.batch(() -> {
+			source.add(3);
+			source.add(0, 0);
+		});
+		Assert.assertEquals(received, Arrays.asList(Arrays.asList(1, 2), Arrays.asList(0, 1, 2, 3)));
+	}
+
+	@Test(timeOut = 500)
+	public void testIdentityDefault() {
+		List<Integer> source = new ArrayList<>(Arrays.asList(1, 2, 3));
+		ListHolderImpl<Integer> test = new ListHolderImpl<>(source);
+		List<List<Integer>> received = new ArrayList<>();
+		test.follow(received::add);
+		// the same list is not transmitted again
+		test.set(source);
+		Assert.assertEquals(received.size(), 1);
+		// an equal list is, without comparing the items
+		test.set(new ArrayList<>(source));
+		Assert.assertEquals(received.size(), 2);
+		test.add(4);
+		Assert.assertEquals(received.size(), 3);
+		test.setEquality(EqualityStrategy.equality());
+		test.set(Arrays.asList(1, 2, 3, 4));
+		Assert.assertEquals(received.size(), 3);
+		Assert.assertEquals(test.get(), Arrays.asList(1, 2, 3, 4));
+	}
+
+	@Test(timeOut = 500)
+	public void testSnapshots() {
+		ListHolderImpl<Integer> test = new ListHolderImpl<>(Arrays.asList(1, 2, 3));
+		List<Integer> first = test.get();
+		Assert.assertTrue(first instanceof ListSnapshot);
+		Assert.assertEquals(first.hashCode(), Arrays.asList(1, 2, 3).hashCode());
+		// the snapshot is not modified by the holder
+		test.add(4);
+		Assert.assertEquals(first, Arrays.asList(1, 2, 3));
+		List<Integer> second = test.get();
+		Assert.assertEquals(second, Arrays.asList(1, 2, 3, 4));
+		Assert.assertFalse(first.equals(second));
+		Assert.assertSame(test.get(), second);
+		// a snapshot is shared with another holder without being wrapped again
+		ListHolderImpl<Integer> copy = new ListHolderImpl<>();
+		test.follow(copy::set, copy);
+		Assert.assertSame(copy.get(), second);
+		Assert.assertEquals(copy.hashCode(), test.hashCode());
+		Assert.assertEquals(copy, test);
+		try {
+			second.add(5);
+			Assert.fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
 }
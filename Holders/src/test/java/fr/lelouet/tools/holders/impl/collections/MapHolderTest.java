@@ -1,9 +1,13 @@
 package fr.lelouet.tools.holders.impl.collections;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -11,8 +15,12 @@ import org.testng.annotations.Test;
 import fr.lelouet.tools.holders.impl.ObjHolderSimple;
 import fr.lelouet.tools.holders.interfaces.ObjHolder;
 import fr.lelouet.tools.holders.interfaces.collections.CollectionHolder;
+import fr.lelouet.tools.holders.interfaces.collections.MapDelta;
+import fr.lelouet.tools.holders.interfaces.collections.MapDelta.Kind;
 import fr.lelouet.tools.holders.interfaces.collections.MapHolder;
 import fr.lelouet.tools.holders.interfaces.collections.SetHolder;
+import fr.lelouet.tools.holders.interfaces.numbers.IntHolder;
+import fr.lelouet.tools.lambdaref.GCManage;
 
 @Test(timeOut = 500)
 public class MapHolderTest {
@@ -145,4 +153,145 @@ public class MapHolderTest {
 
 	}
 
+	@Test(timeOut = 500)
+	public void testIncremental() {
+		MapHolderImpl<String, Integer> map = new MapHolderImpl<>();
+		List<MapDelta<String, Integer>> deltas = new ArrayList<>();
+		map.followChanges(deltas::add);
+		SetHolder<String> keys = map.keys();
+		IntHolder size = map.size();
+		map.put("a", 1);
+		Map<String, Integer> first = map.get();
+		map.put("b", 2);
+		map.put("b", 2);
+		map.put("a", 3);
+		Assert.assertEquals(first, Collections.singletonMap("a", 1));
+		Assert.assertEquals((int) size.get(), 2);
+		Assert.assertEquals(keys.get(), new HashSet<>(Arrays.asList("a", "b")));
+		Assert.assertEquals(map.remove("a"), (Integer) 3);
+		Assert.assertNull(map.remove("c"));
+		Assert.assertEquals(keys.get(), Collections.singleton("b"));
+		Assert.assertEquals((int) size.get(), 1);
+		Assert.assertEquals(deltas.size(), 4);
+		Assert.assertEquals(deltas.get(2).changes().get(0).kind(), Kind.UPDATED);
+		Assert.assertEquals(deltas.get(2).changes().get(0).previous(), (Integer) 1);
+		Assert.assertEquals(deltas.get(3).changes().get(0).kind(), Kind.REMOVED);
+
+		// putting the same values again does not transmit the map
+		Map<String, Integer> last = map.get();
+		map.putAll(Collections.singletonMap("b", 2));
+		Assert.assertEquals(deltas.size(), 4);
+		Assert.assertSame(map.get(), last);
+		map.putAll(Collections.singletonMap("c", 4));
+		Assert.assertEquals(deltas.size(), 5);
+	}
+
+	@Test(timeOut = 2000)
+	public void testMergeIncremental() {
+		List<MapHolderImpl<Integer, Integer>> inputs = new ArrayList<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 5; i++) {
+			Map<Integer, Integer> content = new HashMap<>();
+			for (int j = 0; j < 1000; j++) {
+				content.put(random.nextInt(2000), 1);
+			}
+			inputs.add(new MapHolderImpl<>(content));
+		}
+		int[] merges = new int[1];
+		@SuppressWarnings("unchecked")
+		MapHolder<Integer, Integer> merged = MapHolderImpl.merge((a, b) -> {
+			merges[0]++;
+			return a + b;
+		}, inputs.get(0), inputs.subList(1, inputs.size()).toArray(new MapHolder[0]));
+		Runnable check = () -> {
+			Map<Integer, Integer> expected = new HashMap<>();
+			for (MapHolderImpl<Integer, Integer> input : inputs) {
+				input.get().forEach((k, v) -> expected.merge(k, v, Integer::sum));
+			}
+			Assert.assertEquals(merged.get(), expected);
+		};
+		check.run();
+		for (int step = 0; step < 500; step++) {
+			MapHolderImpl<Integer, Integer> input = inputs.get(random.nextInt(inputs.size()));
+			int key = random.nextInt(2000);
+			merges[0] = 0;
+			if (random.nextBoolean()) {
+				input.put(key, random.nextInt(10));
+			} else {
+				input.remove(key);
+			}
+			// only the modified key is merged again
+			Assert.assertTrue(merges[0] < inputs.size());
+		}
+		check.run();
+	}
+
+	@Test(timeOut = 2000)
+	public void testAtKeyed() {
+		MapHolderImpl<Integer, String> map = new MapHolderImpl<>(new HashMap<>());
+		List<ObjHolder<String>> views = new ArrayList<>();
+		int[] notified = new int[1];
+		for (int i = 0; i < 1000; i++) {
+			ObjHolder<String> view = map.at(i, "none");
+			view.follow(v -> notified[0]++);
+			views.add(view);
+		}
+		notified[0] = 0;
+		// only the view of the modified key is notified
+		map.put(5, "five");
+		Assert.assertEquals(notified[0], 1);
+		Assert.assertEquals(views.get(5).get(), "five");
+		Assert.assertEquals(views.get(6).get(), "none");
+		map.remove(5);
+		Assert.assertEquals(notified[0], 2);
+		Assert.assertEquals(views.get(5).get(), "none");
+		Map<Integer, String> replaced = new HashMap<>();
+		replaced.put(6, "six");
+		replaced.put(2000, "other");
+		map.set(replaced);
+		Assert.assertEquals(notified[0], 3);
+		Assert.assertEquals(views.get(6).get(), "six");
+
+		// the key can change
+		ObjHolderSimple<Integer> key = new ObjHolderSimple<>(6);
+		ObjHolder<String> at = map.at(key, "none");
+		Assert.assertEquals(at.get(), "six");
+		key.set(2000);
+		Assert.assertEquals(at.get(), "other");
+		map.put(6, "six again");
+		Assert.assertEquals(at.get(), "other");
+		map.put(2000, "modified");
+		Assert.assertEquals(at.get(), "modified");
+	}
+
+
+	@Test(timeOut = 2000)
+	public void testAtReleased() {
+		MapHolderImpl<String, String> map = MapHolderImpl.of(new String[][] { { "a", "aa" } });
+		int followers = map.followers();
+		// neither kept : their key followers are removed once collected
+		map.at("a", "none");
+		map.at("b", "none");
+		Assert.assertEquals(map.followers(), followers + 1);
+		GCManage.force();
+		// the followers of a and b are removed when another key is followed
+		ObjHolder<String> at = map.at("c", "none");
+		Assert.assertEquals(at.get(), "none");
+		at = null;
+		GCManage.force();
+		// the change of a removes its followers, then the changes are no more
+		// dispatched
+		map.put("a", "ab");
+		Assert.assertEquals(map.followers(), followers + 1);
+		map.put("c", "cc");
+		Assert.assertEquals(map.followers(), followers);
+
+		// following a key again dispatches the changes again
+		at = map.at("a", "none");
+		Assert.assertEquals(at.get(), "ab");
+		map.put("a", "ac");
+		Assert.assertEquals(at.get(), "ac");
+		Assert.assertEquals(map.followers(), followers + 1);
+	}
+
 }
@@ -1,16 +1,21 @@
 package fr.lelouet.tools.holders.impl.collections;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import fr.lelouet.tools.holders.impl.ObjHolderSimple;
+import fr.lelouet.tools.holders.impl.Propagation;
 import fr.lelouet.tools.holders.impl.numbers.BoolHolderImpl;
 import fr.lelouet.tools.holders.interfaces.ObjHolder;
+import fr.lelouet.tools.holders.interfaces.collections.CollectionDelta;
 import fr.lelouet.tools.holders.interfaces.collections.MapHolder;
 
 public class SetHolderImplTest {
@@ -76,4 +81,111 @@ public class SetHolderImplTest {
 		Assert.assertEquals(accepted.get(), Collections.emptySet());
 	}
 
+	@Test(timeOut = 500)
+	public void testIncremental() {
+		SetHolderImpl<Integer> source = SetHolderImpl.of(1, 2, 3);
+		List<CollectionDelta<Integer>> deltas = new ArrayList<>();
+		source.followChanges(deltas::add);
+		int[] tests = new int[1];
+		SetHolderImpl<Integer> even = source.filter(i -> {
+			tests[0]++;
+			return i % 2 == 0;
+		});
+		Assert.assertEquals(even.get(), Collections.singleton(2));
+		Assert.assertEquals(deltas.size(), 1);
+		Assert.assertTrue(deltas.get(0).isReset());
+
+		Assert.assertTrue(source.add(4));
+		Assert.assertFalse(source.add(4));
+		Assert.assertTrue(source.remove(2));
+		Assert.assertEquals(even.get(), Collections.singleton(4));
+		Assert.assertEquals(tests[0], 4);
+		Assert.assertEquals(deltas.size(), 3);
+		Assert.assertEquals(deltas.get(2).changes().size(), 1);
+		Assert.assertFalse(deltas.get(2).changes().get(0).isAdd());
+
+		// setting a whole set transmits the difference
+		source.set(new HashSet<>(Arrays.asList(1, 3, 6)));
+		Assert.assertEquals(deltas.size(), 4);
+		Assert.assertFalse(deltas.get(3).isReset());
+		Assert.assertEquals(deltas.get(3).changes().size(), 2);
+		Assert.assertEquals(even.get(), Collections.singleton(6));
+		Assert.assertEquals(tests[0], 5);
+		Assert.assertEquals((int) source.size().get(), 3);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test(timeOut = 2000)
+	public void testSetAlgebra() {
+		Random random = new Random(42);
+		List<SetHolderImpl<Integer>> sets = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			Set<Integer> content = new HashSet<>();
+			for (int j = 0; j < 50; j++) {
+				content.add(random.nextInt(100));
+			}
+			sets.add(new SetHolderImpl<>(content));
+		}
+		SetHolderImpl<Integer>[] array = sets.toArray(new SetHolderImpl[0]);
+		SetHolderImpl<Integer> union = SetHolderImpl.union(array);
+		SetHolderImpl<Integer> intersection = SetHolderImpl.intersection(array[0], array[1]);
+		SetHolderImpl<Integer> difference = SetHolderImpl.difference(array[0], array[1], array[2]);
+		List<CollectionDelta<Integer>> deltas = new ArrayList<>();
+		union.followChanges(deltas::add);
+		for (int step = 0; step < 500; step++) {
+			SetHolderImpl<Integer> modified = sets.get(random.nextInt(sets.size()));
+			int value = random.nextInt(110);
+			deltas.clear();
+			if (random.nextBoolean()) {
+				modified.add(value);
+			} else {
+				modified.remove(value);
+			}
+			// only the modified item changes in the union
+			Assert.assertTrue(deltas.size() <= 1);
+			Assert.assertTrue(deltas.isEmpty() || deltas.get(0).changes().size() == 1);
+		}
+		Set<Integer> expected = new HashSet<>();
+		sets.forEach(set -> expected.addAll(set.get()));
+		Assert.assertEquals(union.get(), expected);
+		expected.clear();
+		expected.addAll(array[0].get());
+		expected.retainAll(array[1].get());
+		Assert.assertEquals(intersection.get(), expected);
+		expected.clear();
+		expected.addAll(array[0].get());
+		expected.removeAll(array[1].get());
+		expected.removeAll(array[2].get());
+		Assert.assertEquals(difference.get(), expected);
+
+		// a whole new set is diffed against the previous one
+		array[1].set(new HashSet<>(array[0].get()));
+		Assert.assertEquals(intersection.get(), array[0].get());
+		Assert.assertEquals(difference.get(), Collections.emptySet());
+
+		// the result waits for all the sets
+		SetHolderImpl<Integer> missing = new SetHolderImpl<>();
+		SetHolderImpl<Integer> waiting = SetHolderImpl.union(array[0], missing);
+		Assert.assertFalse(waiting.isDataAvailable());
+		missing.set(Collections.singleton(1000));
+		Assert.assertTrue(waiting.get().contains(1000));
+	}
+
+
+	@Test(timeOut = 500)
+	public void testAlgebraBatch() {
+		SetHolderImpl<Integer> a = SetHolderImpl.of(1, 2);
+		SetHolderImpl<Integer> b = SetHolderImpl.of(2, 3);
+		SetHolderImpl<Integer> intersection = SetHolderImpl.intersection(a, b);
+		List<Set<Integer>> received = new ArrayList<>();
+		intersection.follow(received::add);
+		// the intersection is only updated once both sets are modified
+		Propagation.batch(() -> {
+			a.add(3);
+			b.add(1);
+		});
+		Assert.assertEquals(received,
+				Arrays.asList(new HashSet<>(Arrays.asList(2)), new HashSet<>(Arrays.asList(1, 2, 3))));
+	}
+
 }
@@ -1,5 +1,8 @@
 package fr.lelouet.tools.holders.impl.numbers;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -63,4 +66,17 @@ public class DoubleHolderImplTest {
 		Assert.assertTrue(pi.le(four).get());
 	}
 
+	@Test(timeOut = 500)
+	public void testPrimitive() {
+		DoubleHolderImpl source = new DoubleHolderImpl(1.5);
+		List<Double> received = new ArrayList<>();
+		source.div(new DoubleHolderImpl(0.5)).followDouble(received::add);
+		source.set(Double.NaN);
+		// NaN is equal to NaN, as for Double.equals
+		source.set(Double.NaN);
+		Assert.assertEquals(received.size(), 2);
+		Assert.assertEquals(received.get(0), 3.0);
+		Assert.assertTrue(Double.isNaN(received.get(1)));
+	}
+
 }
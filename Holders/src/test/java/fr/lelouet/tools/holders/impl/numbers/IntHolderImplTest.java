@@ -1,9 +1,15 @@
 package fr.lelouet.tools.holders.impl.numbers;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import fr.lelouet.tools.holders.interfaces.numbers.BoolHolder;
+import fr.lelouet.tools.holders.interfaces.numbers.IntHolder;
 
 public class IntHolderImplTest {
 
@@ -42,4 +48,53 @@ public class IntHolderImplTest {
 				.sub(new IntHolderImpl(5)).get(), (Integer) 0);
 	}
 
+	@Test(timeOut = 500)
+	public void testPrimitive() {
+		IntHolderImpl source = new IntHolderImpl(1000);
+		IntHolder derived = source.add(1).mult(new IntHolderImpl(2));
+		List<Integer> received = new ArrayList<>();
+		derived.followInt(received::add);
+		List<Integer> boxed = new ArrayList<>();
+		derived.follow(boxed::add);
+		Assert.assertEquals(derived.getInt(), 2002);
+
+		source.set(2000);
+		source.set(Integer.valueOf(2000));
+		Assert.assertEquals(received, Arrays.asList(2002, 4002));
+		Assert.assertEquals(boxed, Arrays.asList(2002, 4002));
+		Assert.assertEquals(derived.get(), (Integer) 4002);
+	}
+
+	/**
+	 * setting a primitive holder with only primitive followers, through
+	 * arithmetic derivations, must not allocate.
+	 */
+	@Test(timeOut = 5000)
+	public void testNoAllocation() {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+			return;
+		}
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+			return;
+		}
+		IntHolderImpl source = new IntHolderImpl(0);
+		IntHolderImpl other = new IntHolderImpl(3);
+		long[] sum = new long[1];
+		source.add(1000).mult(2).sub(other).followInt(i -> sum[0] += i);
+		long threadId = Thread.currentThread().getId();
+		// warm up, until the publication of the values is compiled
+		for (int i = 0; i < 100000; i++) {
+			source.set(i);
+		}
+		long before = bean.getThreadAllocatedBytes(threadId);
+		for (int i = 100000; i < 200000; i++) {
+			source.set(i);
+		}
+		long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+		// some bytes may be allocated by the measure itself, but not one object
+		// per update.
+		Assert.assertTrue(allocated < 10000, "allocated " + allocated + " bytes");
+	}
+
 }
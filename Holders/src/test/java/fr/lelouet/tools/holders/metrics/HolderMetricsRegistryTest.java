@@ -0,0 +1,75 @@
+package fr.lelouet.tools.holders.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.lelouet.tools.holders.impl.ObjHolderSimple;
+import fr.lelouet.tools.holders.impl.collections.ListHolderImpl;
+import fr.lelouet.tools.holders.impl.numbers.IntHolderImpl;
+
+public class HolderMetricsRegistryTest {
+
+	@Test(timeOut = 2000)
+	public void testCounters() throws Exception {
+		ObjHolderSimple<String> test = new ObjHolderSimple<>();
+		test.setName("test");
+		IntHolderImpl length = (IntHolderImpl) test.mapInt(String::length);
+		length.setName("length");
+		ListHolderImpl<Integer> list = new ListHolderImpl<>();
+		list.setName("list");
+		HolderMetricsRegistry.setEnabled(true);
+		try {
+			test.set("a");
+			test.set("a");
+			test.set("b");
+			test.set("cc");
+			list.add(1);
+			list.add(2);
+
+			HolderMetrics metrics = HolderMetricsRegistry.get("test");
+			Assert.assertEquals(metrics.getSets(), 4L);
+			Assert.assertEquals(metrics.getSuppressedSets(), 1L);
+			Assert.assertEquals(metrics.getTransmissions(), 3L);
+			Assert.assertEquals(metrics.getListenerInvocations(), 3L);
+			Assert.assertTrue(metrics.getTransmitNanosP50() <= metrics.getTransmitNanosMax());
+
+			HolderMetrics lengthMetrics = HolderMetricsRegistry.get("length");
+			Assert.assertEquals(lengthMetrics.getSets(), 3L);
+			Assert.assertEquals(lengthMetrics.getSuppressedSets(), 1L);
+			Assert.assertEquals(lengthMetrics.getListenerInvocations(), 0L);
+
+			Assert.assertEquals(HolderMetricsRegistry.get("list").getChanges(), 2L);
+			Assert.assertEquals(HolderMetricsRegistry.all().keySet().size(), 3);
+
+			HolderMetricsRegistry.exposeJmx();
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			Assert.assertEquals(server.getAttribute(HolderMetricsRegistry.objectName("test"), "Sets"), 4L);
+
+			HolderMetricsRegistry.setEnabled(false);
+			test.set("d");
+			Assert.assertEquals(metrics.getSets(), 4L);
+		} finally {
+			HolderMetricsRegistry.setEnabled(false);
+			HolderMetricsRegistry.clear();
+		}
+		Assert.assertTrue(HolderMetricsRegistry.all().isEmpty());
+	}
+
+	@Test
+	public void testBuckets() {
+		long previous = -1;
+		for (long nanos : new long[] { 0, 1, 7, 8, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE }) {
+			int bucket = HolderMetrics.bucket(nanos);
+			long upper = HolderMetrics.upperBound(bucket);
+			Assert.assertTrue(upper >= nanos);
+			Assert.assertTrue(upper - nanos <= nanos / 8, "" + nanos);
+			Assert.assertTrue(upper >= previous);
+			previous = upper;
+		}
+	}
+
+}
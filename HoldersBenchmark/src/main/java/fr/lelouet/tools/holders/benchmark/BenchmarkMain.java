@@ -0,0 +1,26 @@
+package fr.lelouet.tools.holders.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * runs the benchmarks with the usual JMH command line options, adding the
+ * allocation profiler.
+ * <p>
+ * eg <code>java -jar target/benchmarks.jar ChainBenchmark -p depth=100</code>
+ * </p>
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,96 @@
+package fr.lelouet.tools.holders.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lelouet.tools.holders.impl.ObjHolderSimple;
+import fr.lelouet.tools.holders.interfaces.ObjHolder;
+
+/**
+ * cost of the propagation of a value through a chain of
+ * {@link ObjHolder#map(java.util.function.Function)}, and through a
+ * {@link ObjHolder#combine(ObjHolder, java.util.function.BiFunction)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChainBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int depth;
+
+	/** true to derive the chain lazily */
+	@Param({ "false", "true" })
+	public boolean lazy;
+
+	private ObjHolderSimple<Integer> source;
+
+	private ObjHolder<Integer> tail;
+
+	private int next = 0;
+
+	/**
+	 * the holders of {@link ChainBenchmark#combine(Combined)}, which depend on
+	 * neither the depth nor the laziness of the chain.
+	 */
+	@State(Scope.Benchmark)
+	public static class Combined {
+
+		ObjHolderSimple<Integer> left, right;
+
+		ObjHolder<Integer> combined;
+
+		int next = 0;
+
+		@Setup
+		public void setup() {
+			left = new ObjHolderSimple<>(0);
+			right = new ObjHolderSimple<>(0);
+			combined = left.combine(right, Integer::sum);
+		}
+	}
+
+	@Setup
+	public void setup() {
+		source = new ObjHolderSimple<>(0);
+		source.setLazy(lazy);
+		ObjHolder<Integer> h = source;
+		for (int i = 0; i < depth; i++) {
+			h = h.map(v -> v + 1);
+		}
+		tail = h;
+	}
+
+	@Benchmark
+	public void set() {
+		source.set(++next);
+	}
+
+	@Benchmark
+	public Integer setAndGet() {
+		source.set(++next);
+		return tail.get();
+	}
+
+	@Benchmark
+	public Integer combine(Combined state) {
+		state.left.set(++state.next);
+		state.right.set(state.next);
+		return state.combined.get();
+	}
+
+}
@@ -0,0 +1,134 @@
+package fr.lelouet.tools.holders.benchmark;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lelouet.tools.holders.impl.collections.ListHolderImpl;
+import fr.lelouet.tools.holders.impl.numbers.BoolHolderImpl;
+import fr.lelouet.tools.holders.interfaces.collections.ListHolder;
+
+/**
+ * cost of the modification of one item in a large list, when that list is
+ * sorted, filtered with {@link ListHolder#filterWhen(java.util.function.Function)}
+ * or flattened.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionBenchmark {
+
+	static ListHolderImpl<Integer> makeList(int size) {
+		List<Integer> items = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			items.add(i * 7 % size);
+		}
+		return new ListHolderImpl<>(items);
+	}
+
+	/** add an item at the middle of the list, and remove it */
+	static void addRemove(ListHolderImpl<Integer> list, int item) {
+		int index = list.get().size() / 2;
+		list.add(index, item);
+		list.remove(index);
+	}
+
+	@State(Scope.Benchmark)
+	public static class Sorted {
+
+		@Param({ "1000", "100000" })
+		public int size;
+
+		ListHolderImpl<Integer> list;
+
+		ListHolder<Integer> sorted;
+
+		int next = 0;
+
+		@Setup
+		public void setup() {
+			list = makeList(size);
+			sorted = list.sorted(Comparator.naturalOrder());
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class FilteredWhen {
+
+		@Param({ "1000", "100000" })
+		public int size;
+
+		ListHolderImpl<Integer> list;
+
+		ListHolder<Integer> filtered;
+
+		int next = 0;
+
+		@Setup
+		public void setup() {
+			list = makeList(size);
+			filtered = list.filterWhen(i -> new BoolHolderImpl(i % 2 == 0));
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Flattened {
+
+		@Param({ "1000", "100000" })
+		public int size;
+
+		ListHolderImpl<ListHolderImpl<Integer>> lists;
+
+		ListHolder<Integer> flat;
+
+		int next = 0;
+
+		@Setup
+		public void setup() {
+			List<ListHolderImpl<Integer>> items = new ArrayList<>();
+			for (int i = 0; i < size; i += 10) {
+				List<Integer> inner = new ArrayList<>();
+				for (int j = i; j < i + 10 && j < size; j++) {
+					inner.add(j);
+				}
+				items.add(new ListHolderImpl<>(inner));
+			}
+			lists = new ListHolderImpl<>(items);
+			flat = lists.flatten(l -> l);
+		}
+	}
+
+	@Benchmark
+	public void sorted(Sorted state) {
+		addRemove(state.list, state.next++);
+	}
+
+	@Benchmark
+	public void filterWhen(FilteredWhen state) {
+		addRemove(state.list, state.next++);
+	}
+
+	/** modify an inner list at the middle of the flattened list */
+	@Benchmark
+	public void flattenInner(Flattened state) {
+		ListHolderImpl<Integer> inner = state.lists.get().get(state.lists.get().size() / 2);
+		inner.add(state.next++);
+		inner.remove(inner.get().size() - 1);
+	}
+
+}
@@ -0,0 +1,82 @@
+package fr.lelouet.tools.holders.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lelouet.tools.holders.impl.ObjHolderSimple;
+
+/**
+ * cost of {@link ObjHolderSimple#set(Object)} when the value is transmitted to
+ * a number of followers, from one thread or from several threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetBenchmark {
+
+	@Param({ "0", "1", "16", "256" })
+	public int followers;
+
+	private ObjHolderSimple<Integer> holder;
+
+	/**
+	 * the followers, pinned in the global scope until they are unfollowed in
+	 * {@link #tearDown()}
+	 */
+	private final List<Consumer<Integer>> kept = new ArrayList<>();
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	public volatile int sink;
+
+	@Setup
+	public void setup() {
+		holder = new ObjHolderSimple<>(0);
+		kept.clear();
+		for (int i = 0; i < followers; i++) {
+			Consumer<Integer> follower = v -> sink = v;
+			kept.add(follower);
+			holder.follow(follower);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (Consumer<Integer> follower : kept) {
+			holder.unfollow(follower);
+		}
+		kept.clear();
+	}
+
+	@Benchmark
+	public void set() {
+		holder.set(next.incrementAndGet());
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void setContended() {
+		holder.set(next.incrementAndGet());
+	}
+
+}
@@ -0,0 +1,22 @@
+package fr.lelouet.tools.lambdaref.references;
+
+/**
+ * something that holds resources until it is explicitly disposed.
+ * <p>
+ * Being {@link AutoCloseable}, it can be used in a try-with-resources.
+ * </p>
+ */
+public interface Disposable extends AutoCloseable {
+
+	/**
+	 * release the resources held. Disposing several times has no further
+	 * effect.
+	 */
+	public void dispose();
+
+	@Override
+	default void close() {
+		dispose();
+	}
+
+}
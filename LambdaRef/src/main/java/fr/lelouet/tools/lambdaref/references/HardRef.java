@@ -1,14 +1,12 @@
 package fr.lelouet.tools.lambdaref.references;
 
-import java.util.IdentityHashMap;
-
 /**
- * a reference that is hard linked by the classloader (trough a static field)
- * until it is explicitly disposed.
+ * a reference that is hard linked by a {@link Scope} until it is explicitly
+ * disposed, or its scope is.
  * <p>
  * Note that this is the definition of a memory leak. Therefore this should
  * never be used out of a managed loop that ensures the disposal of the
- * references.
+ * references, typically a scope disposed at the end of its use.
  * </p>
  * <p>
  * This can be useful though, when the Object is stored in a weak referenced
@@ -18,17 +16,26 @@ import java.util.IdentityHashMap;
  *
  * @param <U>
  */
-public class HardRef<U> extends UsualRef<U> {
+public class HardRef<U> extends UsualRef<U> implements Disposable {
 
-	private static IdentityHashMap<HardRef<?>, Object> items = new IdentityHashMap<>();
+	private final Scope scope;
 
+	/**
+	 * create a reference held by the {@link Scope#GLOBAL} scope.
+	 */
 	public HardRef(U referent) {
+		this(referent, Scope.GLOBAL);
+	}
+
+	public HardRef(U referent, Scope scope) {
 		super(referent);
-		items.put(this, null);
+		this.scope = scope;
+		scope.add(this);
 	}
 
+	@Override
 	public void dispose() {
-		items.remove(this);
+		scope.remove(this);
 	}
 
 }
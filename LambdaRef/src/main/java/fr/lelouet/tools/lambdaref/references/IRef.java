@@ -28,4 +28,8 @@ public interface IRef<U> {
 		return new HardRef<>(item);
 	}
 
+	public static <V> IRef<V> hard(V item, Scope scope) {
+		return new HardRef<>(item, scope);
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package fr.lelouet.tools.lambdaref.references;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * owner of hard references, that releases them all at once when disposed.
+ * <p>
+ * Each {@link HardRef} belongs to a scope, which keeps it strongly reachable
+ * until the reference, or its scope, is disposed. The references are stored in
+ * a concurrent set, so holding and releasing from several threads is safe.
+ * </p>
+ * <p>
+ * A scope is also a Consumer of objects that it holds, so it can be given as
+ * the keep-alive holder of a listener : the listener is then kept until the
+ * scope is disposed, e.g. at the end of a request or of a session.
+ * </p>
+ * <p>
+ * The {@link #GLOBAL} scope is used when no scope is specified. Its references
+ * are only released when they are disposed one by one.
+ * </p>
+ */
+public class Scope implements Disposable, Consumer<Object> {
+
+	/** the scope of the references created without a scope. */
+	public static final Scope GLOBAL = new Scope();
+
+	private final Set<HardRef<?>> refs = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * create a hard reference to an item, held by this scope.
+	 *
+	 * @param <V>
+	 *          the type of the item
+	 * @param item
+	 *          the item to keep
+	 * @return a new reference to item, held until it or this is disposed.
+	 */
+	public <V> HardRef<V> hold(V item) {
+		return new HardRef<>(item, this);
+	}
+
+	@Override
+	public void accept(Object t) {
+		hold(t);
+	}
+
+	void add(HardRef<?> ref) {
+		refs.add(ref);
+	}
+
+	boolean remove(HardRef<?> ref) {
+		return refs.remove(ref);
+	}
+
+	/**
+	 *
+	 * @return the number of references this holds.
+	 */
+	public int size() {
+		return refs.size();
+	}
+
+	/**
+	 * release all the references held. The scope can still be used afterwards.
+	 */
+	@Override
+	public void dispose() {
+		for (HardRef<?> ref : new ArrayList<>(refs)) {
+			ref.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package fr.lelouet.tools.synchronization;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * executor that runs the tasks it receives one after the other, in the order
+ * they were submitted, on an underlying executor.
+ * <p>
+ * At most one task is submitted to the underlying executor at a time : that
+ * task runs all the queued tasks until the queue is empty. This allows to use
+ * a shared pool, or an executor that starts a new (virtual) thread per task,
+ * while keeping the order of the tasks.
+ * </p>
+ * <p>
+ * A task that throws an exception is logged, and does not prevent the next
+ * tasks from running. A task that throws an error lets it propagate to the
+ * underlying executor, and the next tasks are run by a new submission.
+ * </p>
+ */
+@Slf4j
+public class SerialExecutor implements Executor {
+
+	private final Executor executor;
+
+	private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+	/** true while a drain is submitted to, or running on, the executor */
+	private boolean draining = false;
+
+	/**
+	 *
+	 * @param executor
+	 *          the executor to run the tasks on. not null.
+	 */
+	public SerialExecutor(Executor executor) {
+		if (executor == null) {
+			throw new NullPointerException("executor can't be null");
+		}
+		this.executor = executor;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		synchronized (tasks) {
+			tasks.add(command);
+			if (draining) {
+				return;
+			}
+			draining = true;
+		}
+		submitDrain();
+	}
+
+	/**
+	 * submit the drain to the executor. On rejection the queued tasks are
+	 * dropped, since no drain would run them.
+	 */
+	private void submitDrain() {
+		try {
+			executor.execute(this::drain);
+		} catch (RejectedExecutionException e) {
+			synchronized (tasks) {
+				tasks.clear();
+				draining = false;
+			}
+			throw e;
+		}
+	}
+
+	protected void drain() {
+		boolean emptied = false;
+		try {
+			while (true) {
+				Runnable next;
+				synchronized (tasks) {
+					next = tasks.poll();
+					if (next == null) {
+						draining = false;
+						emptied = true;
+						return;
+					}
+				}
+				try {
+					next.run();
+				} catch (RuntimeException e) {
+					log.error("while running serial task " + next, e);
+				}
+			}
+		} finally {
+			if (!emptied) {
+				// a task threw an error, that propagates : the next tasks need another
+				// drain.
+				resubmit();
+			}
+		}
+	}
+
+	private void resubmit() {
+		synchronized (tasks) {
+			if (tasks.isEmpty()) {
+				draining = false;
+				return;
+			}
+		}
+		try {
+			submitDrain();
+		} catch (RejectedExecutionException e) {
+			log.error("could not run the serial tasks left", e);
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of tasks waiting to be run.
+	 */
+	public int pending() {
+		synchronized (tasks) {
+			return tasks.size();
+		}
+	}
+
+}
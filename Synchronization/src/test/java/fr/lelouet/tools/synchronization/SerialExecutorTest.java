@@ -0,0 +1,68 @@
+package fr.lelouet.tools.synchronization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SerialExecutorTest {
+
+	@Test(timeOut = 2000)
+	public void testOrder() throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			SerialExecutor serial = new SerialExecutor(pool);
+			List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch done = new CountDownLatch(1);
+			for (int i = 0; i < 1000; i++) {
+				int fi = i;
+				serial.execute(() -> executed.add(fi));
+			}
+			serial.execute(() -> {
+				throw new UnsupportedOperationException("expected");
+			});
+			serial.execute(done::countDown);
+			Assert.assertTrue(done.await(1, TimeUnit.SECONDS));
+			Assert.assertEquals(executed, IntStream.range(0, 1000).boxed().collect(Collectors.toList()));
+			Assert.assertEquals(serial.pending(), 0);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+
+	@Test(timeOut = 2000)
+	public void testError() throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			SerialExecutor serial = new SerialExecutor(pool);
+			List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch done = new CountDownLatch(1);
+			serial.execute(() -> executed.add(0));
+			serial.execute(() -> {
+				throw new Error("expected");
+			});
+			serial.execute(() -> executed.add(1));
+			serial.execute(done::countDown);
+			Assert.assertTrue(done.await(1, TimeUnit.SECONDS));
+			// the executor still runs the tasks submitted later
+			CountDownLatch after = new CountDownLatch(1);
+			serial.execute(() -> executed.add(2));
+			serial.execute(after::countDown);
+			Assert.assertTrue(after.await(1, TimeUnit.SECONDS));
+			Assert.assertEquals(executed, Arrays.asList(0, 1, 2));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}